@@ -2,53 +2,188 @@ package com.deviantdev.wearable.watchface
 
 import android.content.Context
 import android.graphics.Color
+import android.os.Handler
+import android.os.Looper
+import com.deviantdev.wearable.watchface.preference.StateStore
+import com.deviantdev.wearable.watchface.render.FrameScheduler
+import java.util.concurrent.CopyOnWriteArrayList
 
-class WatchFacePreferences(context: Context) {
+/**
+ * Process-wide store of the watch face settings, shared by the watch face and its configuration
+ * activities. Get it with [getInstance].
+ *
+ * Values are read from a [StateStore] once and then kept in memory. Every
+ * change increments [version]; changes made in one go are written back together, asynchronously,
+ * and reported once to the registered [OnPreferencesChangedListener]s. The watch face and its
+ * configuration activities run in one process and share this instance, so the listeners see every
+ * change. Values saved by another process are picked up by [reloadIfChanged], or as soon as they
+ * are written between [startWatching] and [stopWatching]. Must be used on the main thread.
+ */
+class WatchFacePreferences private constructor(context: Context) {
 
-    var backgroundColor = Color.BLACK
-    var watchHandHighlightColor = Color.RED
-    var watchHandAndComplicationsColor = Color.BLACK
-    var watchHandShadowColor = Color.WHITE
+    /** Notified on the main thread after one or more preferences changed, with their keys. */
+    interface OnPreferencesChangedListener {
+        fun onPreferencesChanged(preferences: WatchFacePreferences, changedKeys: Set<String>)
+    }
+
+    private val stateStore = StateStore.open(context, STATE_NAME, PREFERENCE_FILE_KEY)
+    private val mainHandler = Handler(Looper.getMainLooper())
+    private val listeners = CopyOnWriteArrayList<OnPreferencesChangedListener>()
+    private var flushPending = false
+
+    // Keys changed since the last flush, and the subset that was changed in this process.
+    private val changedKeys = LinkedHashSet<String>()
+    private val unsavedKeys = LinkedHashSet<String>()
+    private var applyingReloadedValues = false
+
+    /** Incremented with every change, so users can tell whether anything changed since they last looked. */
+    var version = 0L
+        private set
+
+    var backgroundColor = stateStore.getInt(SAVED_BACKGROUND_COLOR, Color.BLACK)
+        set(value) {
+            if (field != value) {
+                field = value
+                onChanged(SAVED_BACKGROUND_COLOR)
+            }
+        }
+
+    var watchHandHighlightColor = stateStore.getInt(SAVED_MARKERS_COLOR, Color.RED)
+        set(value) {
+            if (field != value) {
+                field = value
+                onChanged(SAVED_MARKERS_COLOR)
+            }
+        }
 
     /** User's preference for if they want visual shown to indicate unread notifications. */
-    var unreadNotifications: Boolean = true
+    var unreadNotifications: Boolean = stateStore.getBoolean(SAVED_UNREAD_NOTIFICATIONS, true)
+        set(value) {
+            if (field != value) {
+                field = value
+                onChanged(SAVED_UNREAD_NOTIFICATIONS)
+            }
+        }
+
+    /** How often the second hand moves, one of the [FrameScheduler] modes. */
+    var frameRateMode = stateStore.getInt(SAVED_FRAME_RATE_MODE, FrameScheduler.MODE_TICK)
+        set(value) {
+            if (field != value) {
+                field = value
+                onChanged(SAVED_FRAME_RATE_MODE)
+            }
+        }
 
-    init {
-        reloadSavedPreferences(context)
+    fun addListener(listener: OnPreferencesChangedListener) {
+        listeners.add(listener)
     }
 
-    fun reloadSavedPreferences(context: Context) {
-        val sharedPreferences = context.getSharedPreferences(PREFERENCE_FILE_KEY, Context.MODE_PRIVATE)
+    fun removeListener(listener: OnPreferencesChangedListener) {
+        listeners.remove(listener)
+    }
 
-        backgroundColor = sharedPreferences.getInt(SAVED_BACKGROUND_COLOR, Color.BLACK)
-        watchHandHighlightColor = sharedPreferences.getInt(SAVED_MARKERS_COLOR, Color.RED)
-        if (backgroundColor == Color.WHITE) {
-            watchHandAndComplicationsColor = Color.BLACK
-            watchHandShadowColor = Color.WHITE
-        } else {
-            watchHandAndComplicationsColor = Color.WHITE
-            watchHandShadowColor = Color.BLACK
+    private fun onChanged(key: String) {
+        version++
+        changedKeys.add(key)
+        // Values reloaded from the store were already saved by another process.
+        if (!applyingReloadedValues) {
+            unsavedKeys.add(key)
+        }
+        if (!flushPending) {
+            flushPending = true
+            mainHandler.post(flushRunnable)
         }
-        unreadNotifications = sharedPreferences.getBoolean(SAVED_UNREAD_NOTIFICATIONS, true)
     }
 
-    fun commitChangedPreferences(context: Context) {
-        val sharedPreferences = context.getSharedPreferences(PREFERENCE_FILE_KEY, Context.MODE_PRIVATE)
-        val edit = sharedPreferences.edit()
-        edit.putInt(SAVED_BACKGROUND_COLOR, backgroundColor)
-        edit.putInt(SAVED_MARKERS_COLOR, watchHandHighlightColor)
-        edit.putBoolean(SAVED_UNREAD_NOTIFICATIONS, unreadNotifications)
-        edit.apply()
+    /*
+     * Writes the changes made since the last flush in one batch and notifies the listeners once.
+     */
+    private val flushRunnable = Runnable {
+        flushPending = false
+
+        if (unsavedKeys.isNotEmpty()) {
+            for (key in unsavedKeys) {
+                when (key) {
+                    SAVED_BACKGROUND_COLOR -> stateStore.putInt(key, backgroundColor)
+                    SAVED_MARKERS_COLOR -> stateStore.putInt(key, watchHandHighlightColor)
+                    SAVED_UNREAD_NOTIFICATIONS -> stateStore.putBoolean(key, unreadNotifications)
+                    SAVED_FRAME_RATE_MODE -> stateStore.putInt(key, frameRateMode)
+                }
+            }
+            stateStore.apply()
+            unsavedKeys.clear()
+        }
+
+        val keys = LinkedHashSet(changedKeys)
+        changedKeys.clear()
+        for (listener in listeners) {
+            listener.onPreferencesChanged(this, keys)
+        }
+    }
+
+    /**
+     * Picks up values another process saved since this process last read or wrote the store. The
+     * check runs in the background; changed values are reported to the listeners as usual.
+     */
+    fun reloadIfChanged() {
+        stateStore.reloadIfChanged(applyReloadedValues)
+    }
+
+    /**
+     * Picks up values another process saves from now on as soon as they are written, until the
+     * matching [stopWatching].
+     */
+    fun startWatching() {
+        stateStore.startWatching(applyReloadedValues)
+    }
+
+    fun stopWatching() {
+        stateStore.stopWatching()
+    }
+
+    private val applyReloadedValues = Runnable {
+        applyingReloadedValues = true
+        try {
+            backgroundColor = stateStore.getInt(SAVED_BACKGROUND_COLOR, backgroundColor)
+            watchHandHighlightColor = stateStore.getInt(SAVED_MARKERS_COLOR, watchHandHighlightColor)
+            unreadNotifications = stateStore.getBoolean(SAVED_UNREAD_NOTIFICATIONS, unreadNotifications)
+            frameRateMode = stateStore.getInt(SAVED_FRAME_RATE_MODE, frameRateMode)
+        } finally {
+            applyingReloadedValues = false
+        }
     }
 
     companion object {
+        /* Name of the XML preferences file the settings were kept in before the state store. */
         const val PREFERENCE_FILE_KEY = "com.deviantdev.wearable.watchface.PREFERENCE_FILE_KEY"
+        private const val STATE_NAME = "watch_face_preferences"
 
         const val SAVED_BACKGROUND_COLOR = "saved_background_color"
         const val SAVED_MARKERS_COLOR = "saved_markers_color"
 
         const val SAVED_UNREAD_NOTIFICATIONS = "saved_unread_notifications"
 
+        const val SAVED_FRAME_RATE_MODE = "saved_frame_rate_mode"
+
+        @Volatile
+        private var instance: WatchFacePreferences? = null
+
+        /**
+         * Starts loading the saved values in the background, so a later [getInstance] finds them
+         * in memory. Does not block.
+         */
+        @JvmStatic
+        fun preload(context: Context) {
+            StateStore.open(context, STATE_NAME, PREFERENCE_FILE_KEY)
+        }
+
+        /** Returns the store of this process, loading the saved values on first use. */
+        @JvmStatic
+        fun getInstance(context: Context): WatchFacePreferences {
+            return instance ?: synchronized(this) {
+                instance ?: WatchFacePreferences(context.applicationContext).also { instance = it }
+            }
+        }
     }
 
 }
\ No newline at end of file
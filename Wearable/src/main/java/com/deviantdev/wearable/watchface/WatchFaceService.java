@@ -21,10 +21,11 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
-import android.graphics.Paint;
 import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
@@ -35,10 +36,33 @@ import android.support.wearable.watchface.WatchFaceStyle;
 import android.util.Log;
 import android.util.SparseArray;
 import android.view.SurfaceHolder;
+import android.view.WindowInsets;
 
 import com.deviantdev.wearable.watchface.WatchFaceComplicationConfiguration.Complication;
-
-import java.util.Calendar;
+import com.deviantdev.wearable.watchface.complication.BackgroundImageLoader;
+import com.deviantdev.wearable.watchface.complication.CompiledComplicationLayout;
+import com.deviantdev.wearable.watchface.complication.ComplicationHitIndex;
+import com.deviantdev.wearable.watchface.complication.ComplicationLayout;
+import com.deviantdev.wearable.watchface.complication.ComplicationRenderCache;
+import com.deviantdev.wearable.watchface.complication.ComplicationSnapshotStore;
+import com.deviantdev.wearable.watchface.complication.ComplicationUpdateFilter;
+import com.deviantdev.wearable.watchface.metrics.FrameMetrics;
+import com.deviantdev.wearable.watchface.power.BroadcastBatterySource;
+import com.deviantdev.wearable.watchface.power.PowerGovernor;
+import com.deviantdev.wearable.watchface.preference.StateStore;
+import com.deviantdev.wearable.watchface.render.DialLayer;
+import com.deviantdev.wearable.watchface.render.FrameRequestCoalescer;
+import com.deviantdev.wearable.watchface.render.FrameScheduler;
+import com.deviantdev.wearable.watchface.render.HandAngles;
+import com.deviantdev.wearable.watchface.render.ProtectedAmbientRenderer;
+import com.deviantdev.wearable.watchface.render.WatchFaceTheme;
+import com.deviantdev.wearable.watchface.render.WatchFaceThemeCache;
+import com.deviantdev.wearable.watchface.time.Clock;
+import com.deviantdev.wearable.watchface.time.WallClock;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.Set;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
 
@@ -49,18 +73,55 @@ public class WatchFaceService extends CanvasWatchFaceService {
     private static final String TAG = "AnalogWatchFace";
 
     /*
-     * Update rate in milliseconds for interactive mode. We update once a second to advance the
-     * second hand.
+     * Redraw requests that arrive within this window after a frame are merged into one frame, so
+     * e.g. several complications updating together only cause a single redraw.
      */
-    private static final long INTERACTIVE_UPDATE_RATE_MS = TimeUnit.SECONDS.toMillis(1);
+    private static final long FRAME_COALESCING_WINDOW_MS = 100;
+
+    // Shared by all engines of this service, so dumpsys reports one set of frame timings.
+    private final FrameMetrics mFrameMetrics = new FrameMetrics();
+
+    private Clock mClock = Clock.SYSTEM;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // Reads the settings while the system binds the service and creates the surface.
+        WatchFacePreferences.preload(this);
+    }
 
     @Override
     public Engine onCreateEngine() {
         return new Engine();
     }
 
-    private class Engine extends CanvasWatchFaceService.Engine {
+    /**
+     * Replaces the system clock of the engines, e.g. to render frames for a fixed time without a
+     * device.
+     */
+    void setClock(Clock clock) {
+        mClock = clock;
+    }
+
+    /**
+     * Returns the frame timings recorded by the engines of this service.
+     */
+    FrameMetrics getFrameMetrics() {
+        return mFrameMetrics;
+    }
+
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(fd, writer, args);
+        mFrameMetrics.dump(writer);
+        StateStore.dumpAll(writer);
+    }
+
+    class Engine extends CanvasWatchFaceService.Engine
+            implements FrameRequestCoalescer.Host, Drawable.Callback,
+            WatchFacePreferences.OnPreferencesChangedListener {
         private static final int MSG_UPDATE_TIME = 0;
+        private static final int MSG_COALESCED_FRAME = 1;
 
         private static final float HOUR_STROKE_WIDTH = 5f;
         private static final float MINUTE_STROKE_WIDTH = 3f;
@@ -71,13 +132,15 @@ public class WatchFaceService extends CanvasWatchFaceService {
         private static final int SHADOW_RADIUS = 6;
 
         private WatchFacePreferences watchFacePreferences;
+        // Version of the preferences the watch face was last updated for.
+        private long mAppliedPreferencesVersion;
 
-        private Calendar mCalendar;
+        private WallClock mWallClock;
         private final BroadcastReceiver mTimeZoneReceiver = new BroadcastReceiver() {
             @Override
             public void onReceive(Context context, Intent intent) {
-                mCalendar.setTimeZone(TimeZone.getDefault());
-                invalidate();
+                mWallClock.setTimeZone(TimeZone.getDefault());
+                mFrameRequestCoalescer.requestFrame(FrameRequestCoalescer.REASON_TIME_ZONE);
             }
         };
         private boolean mRegisteredTimeZoneReceiver = false;
@@ -87,14 +150,15 @@ public class WatchFaceService extends CanvasWatchFaceService {
         private float mSecondHandLength;
         private float mMinuteHandLength;
         private float mHourHandLength;
-        // Colors for all hands (hour, minute, seconds, ticks) based on photo loaded.
-        private int mWatchHandAndComplicationsColor;
-        private int mWatchHandShadowColor;
-        private Paint mHourPaint;
-        private Paint mMinutePaint;
-        private Paint mSecondAndHighlightPaint;
-        private Paint mTickAndCirclePaint;
-        private Paint mBackgroundPaint;
+        // Paints for all hands (hour, minute, seconds, ticks), one theme per watch face state.
+        private final WatchFaceThemeCache mThemes = new WatchFaceThemeCache(HOUR_STROKE_WIDTH,
+                MINUTE_STROKE_WIDTH, SECOND_TICK_STROKE_WIDTH, SHADOW_RADIUS);
+        private WatchFaceTheme mTheme;
+        // Background color and ticks, re-rendered only when the surface or the style changes.
+        private final DialLayer mDialLayer = new DialLayer();
+        // Slim, outlined and shifting dial and hands for low-bit and burn-in protected screens.
+        private final ProtectedAmbientRenderer mProtectedAmbientRenderer =
+                new ProtectedAmbientRenderer();
         /* Maps active complication ids to the data for that complication. Note: Data will only be
          * present if the user has chosen a provider via the settings activity for the watch face.
          */
@@ -103,17 +167,60 @@ public class WatchFaceService extends CanvasWatchFaceService {
          * the complication data on the watch face.
          */
         private SparseArray<ComplicationDrawable> mComplicationDrawableSparseArray;
+        // Suppresses complication updates that resend identical content.
+        private final ComplicationUpdateFilter mComplicationUpdateFilter =
+                new ComplicationUpdateFilter();
+        // Last rendering of every complication slot, redrawn only when its content changes.
+        private final ComplicationRenderCache mComplicationRenderCache =
+                new ComplicationRenderCache();
+        // Decodes and scales the background complication's image off the main thread.
+        private BackgroundImageLoader mBackgroundImageLoader;
+        // Last known complication data, shown right away after a restart.
+        private ComplicationSnapshotStore mComplicationSnapshotStore;
+        // Slot positions from res/xml/complication_layout.xml, compiled for the current screen.
+        private ComplicationLayout mComplicationLayout;
+        private CompiledComplicationLayout mCompiledComplicationLayout;
+        private boolean mRoundScreen;
+        private int mChinHeight;
+        private int mSurfaceWidth;
+        private int mSurfaceHeight;
+        // Uptime of the last handled tap whose feedback has not been drawn yet, or 0.
+        private long mPendingTapEventTime;
+        // Duration of the last drawn frame, see renderFrame().
+        private long mLastFrameCostMicros;
+        // Target of renderFrame(), pointed at the caller's bitmap for each frame.
+        private final Canvas mRenderCanvas = new Canvas();
+        private final Rect mRenderBounds = new Rect();
         private boolean mAmbient;
-        // Handler to update the time once a second in interactive mode.
+        // Whether to render like ambient mode: in ambient mode, or in the lowest power tier.
+        private boolean mAmbientStyle;
+        // Lowers the rendering quality in tiers as the battery drains.
+        private PowerGovernor mPowerGovernor;
+        // Set when a background image arrived while the power governor froze the background.
+        private boolean mBackgroundImageStale;
+        // Merges redraw requests from all sources into as few frames as possible.
+        private final FrameRequestCoalescer mFrameRequestCoalescer = new FrameRequestCoalescer(
+                this, FRAME_COALESCING_WINDOW_MS);
+        // Picks the interactive frame rate: ticking, fixed or adaptive sweep of the second hand.
+        private final FrameScheduler mFrameScheduler = new FrameScheduler();
+        // Handler to update the time at the scheduler's frame rate in interactive mode and to
+        // deliver deferred frames of the coalescer.
         @SuppressLint("HandlerLeak")
         private final Handler mUpdateTimeHandler = new Handler() {
             @Override
             public void handleMessage(Message message) {
-                invalidate();
-                if (shouldTimerBeRunning()) {
-                    long timeMs = System.currentTimeMillis();
-                    long delayMs = INTERACTIVE_UPDATE_RATE_MS - (timeMs % INTERACTIVE_UPDATE_RATE_MS);
-                    mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME, delayMs);
+                switch (message.what) {
+                    case MSG_UPDATE_TIME:
+                        mFrameRequestCoalescer.requestFrame(FrameRequestCoalescer.REASON_TIMER);
+                        if (shouldTimerBeRunning()) {
+                            long delayMs = mFrameScheduler.getDelayToNextFrame(
+                                    mClock.currentTimeMillis());
+                            mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_UPDATE_TIME, delayMs);
+                        }
+                        break;
+                    case MSG_COALESCED_FRAME:
+                        mFrameRequestCoalescer.onScheduledFrameDue();
+                        break;
                 }
             }
         };
@@ -127,57 +234,119 @@ public class WatchFaceService extends CanvasWatchFaceService {
 
             super.onCreate(holder);
 
-            mCalendar = Calendar.getInstance();
+            mWallClock = new WallClock(TimeZone.getDefault());
 
             setWatchFaceStyle(new WatchFaceStyle.Builder(WatchFaceService.this).setAcceptsTapEvents(
                     true).setHideNotificationIndicator(true).build());
 
             loadSavedPreferences();
+            mPowerGovernor = new PowerGovernor(new BroadcastBatterySource(getApplicationContext()),
+                    new PowerGovernor.Listener() {
+                        @Override
+                        public void onPowerTierChanged(int tier) {
+                            applyPowerTier();
+                        }
+                    });
             initializeComplicationsAndBackground();
-            initializeWatchFace();
+            updateTheme();
+            restoreComplicationSnapshot();
         }
 
-        // Pulls all user's preferences for watch face appearance.
+        /*
+         * Shows the complication data saved before the last shutdown until the providers send
+         * live data again. The snapshot is read off the main thread; slots that received live
+         * data in the meantime keep it.
+         */
+        private void restoreComplicationSnapshot() {
+            mComplicationSnapshotStore = new ComplicationSnapshotStore(getApplicationContext());
+            mComplicationSnapshotStore.load(mClock.currentTimeMillis(),
+                    new ComplicationSnapshotStore.Listener() {
+                        @Override
+                        public void onSnapshotLoaded(SparseArray<ComplicationData> snapshot) {
+                            for (int index = 0; index < snapshot.size(); index++) {
+                                int complicationId = snapshot.keyAt(index);
+                                if (mComplicationDrawableSparseArray.get(complicationId) != null
+                                        && mActiveComplicationDataSparseArray.get(
+                                                complicationId) == null) {
+                                    applyComplicationData(complicationId,
+                                            snapshot.valueAt(index));
+                                }
+                            }
+                        }
+                    });
+        }
+
+        // Pulls all user's preferences for watch face appearance and follows their changes.
         private void loadSavedPreferences() {
 
-            watchFacePreferences = new WatchFacePreferences(getApplicationContext());
-            watchFacePreferences.reloadSavedPreferences(getApplicationContext());
+            watchFacePreferences = WatchFacePreferences.getInstance(getApplicationContext());
+            watchFacePreferences.addListener(this);
+            mAppliedPreferencesVersion = watchFacePreferences.getVersion();
+            mFrameScheduler.setMode(watchFacePreferences.getFrameRateMode());
+        }
+
+        @Override
+        public void onPreferencesChanged(WatchFacePreferences preferences,
+                Set<String> changedKeys) {
+            if (preferences.getVersion() == mAppliedPreferencesVersion) {
+                return;
+            }
+            mAppliedPreferencesVersion = preferences.getVersion();
 
-            if (watchFacePreferences.getBackgroundColor() == Color.WHITE) {
-                mWatchHandAndComplicationsColor = Color.BLACK;
-                mWatchHandShadowColor = Color.WHITE;
-            } else {
-                mWatchHandAndComplicationsColor = Color.WHITE;
-                mWatchHandShadowColor = Color.BLACK;
+            if (changedKeys.contains(WatchFacePreferences.SAVED_FRAME_RATE_MODE)) {
+                mFrameScheduler.setMode(preferences.getFrameRateMode());
+            }
+
+            // With the rest of the watch face, we update the paint colors based on
+            // ambient/active mode callbacks, but because the ComplicationDrawable handles
+            // the active/ambient colors, we only need to update the complications' colors when
+            // the user actually makes a change to the highlight color, not when the watch goes
+            // in and out of ambient mode.
+            if (changedKeys.contains(WatchFacePreferences.SAVED_MARKERS_COLOR)) {
+                setComplicationsActiveAndAmbientColors(preferences.getWatchHandHighlightColor());
             }
+            updateTheme();
+            mFrameRequestCoalescer.requestFrame(FrameRequestCoalescer.REASON_STYLE);
         }
 
         private void initializeComplicationsAndBackground() {
             Log.d(TAG, "initializeComplications()");
 
-            // Initialize background color (in case background complication is inactive).
-            mBackgroundPaint = new Paint();
-            mBackgroundPaint.setColor(watchFacePreferences.getBackgroundColor());
-
-            mActiveComplicationDataSparseArray = new SparseArray<>(Complication.values().length);
-
-            // Creates a ComplicationDrawable for each location where the user can render a
-            // complication on the watch face. In this watch face, we create one for left, right,
-            // and background, but you could add many more.
-            ComplicationDrawable leftComplicationDrawable = new ComplicationDrawable(getApplicationContext());
-
-            ComplicationDrawable rightComplicationDrawable = new ComplicationDrawable(getApplicationContext());
+            mComplicationLayout = ComplicationLayout.inflate(getResources(),
+                    R.xml.complication_layout);
+            int slotCount = mComplicationLayout.getSlotCount();
 
-            ComplicationDrawable backgroundComplicationDrawable = new ComplicationDrawable(getApplicationContext());
+            mActiveComplicationDataSparseArray = new SparseArray<>(slotCount);
 
-            mComplicationDrawableSparseArray = new SparseArray<>(Complication.values().length);
+            mBackgroundImageLoader = new BackgroundImageLoader(getApplicationContext(),
+                    new BackgroundImageLoader.Listener() {
+                        @Override
+                        public void onBackgroundImageReady() {
+                            mFrameRequestCoalescer.requestComplicationFrame(
+                                    Complication.BACKGROUND.getId());
+                        }
+                    });
 
-            mComplicationDrawableSparseArray.put(Complication.LEFT.getId(), leftComplicationDrawable);
-            mComplicationDrawableSparseArray.put(Complication.RIGHT.getId(), rightComplicationDrawable);
-            mComplicationDrawableSparseArray.put(Complication.BACKGROUND.getId(), backgroundComplicationDrawable);
+            // Creates a ComplicationDrawable for each location where the user can render a
+            // complication on the watch face, as declared by the complication layout.
+            mComplicationDrawableSparseArray = new SparseArray<>(slotCount);
+            int[] complicationIds = new int[slotCount];
+
+            for (int slot = 0; slot < slotCount; slot++) {
+                ComplicationDrawable complicationDrawable =
+                        new ComplicationDrawable(getApplicationContext());
+                // The render cache bypasses a tapped slot for exactly as long as it is highlighted.
+                complicationDrawable.setHighlightDuration(
+                        ComplicationRenderCache.TAP_HIGHLIGHT_DURATION_MS);
+                // Icons load in the background; the drawable invalidates itself once they are in.
+                complicationDrawable.setCallback(this);
+
+                complicationIds[slot] = mComplicationLayout.getId(slot);
+                mComplicationDrawableSparseArray.put(complicationIds[slot], complicationDrawable);
+            }
 
             setComplicationsActiveAndAmbientColors(watchFacePreferences.getWatchHandHighlightColor());
-            setActiveComplications(Complication.Companion.getAllIds());
+            setActiveComplications(complicationIds);
         }
 
         /* Sets active/ambient mode colors for all complications.
@@ -190,10 +359,12 @@ public class WatchFaceService extends CanvasWatchFaceService {
         private void setComplicationsActiveAndAmbientColors(int primaryComplicationColor) {
             ComplicationDrawable complicationDrawable;
 
-            for (Complication complication : Complication.values()) {
-                complicationDrawable = mComplicationDrawableSparseArray.get(complication.getId());
+            mComplicationRenderCache.invalidateAll();
+
+            for (int index = 0; index < mComplicationDrawableSparseArray.size(); index++) {
+                complicationDrawable = mComplicationDrawableSparseArray.valueAt(index);
 
-                if (Complication.BACKGROUND.equals(complication)) {
+                if (mComplicationDrawableSparseArray.keyAt(index) == Complication.BACKGROUND.getId()) {
                     // It helps for the background color to be black in case the image used for the
                     // watch face's background takes some time to load.
                     complicationDrawable.setBackgroundColorActive(Color.BLACK);
@@ -209,40 +380,23 @@ public class WatchFaceService extends CanvasWatchFaceService {
             }
         }
 
-        private void initializeWatchFace() {
-
-            mHourPaint = new Paint();
-            mHourPaint.setColor(mWatchHandAndComplicationsColor);
-            mHourPaint.setStrokeWidth(HOUR_STROKE_WIDTH);
-            mHourPaint.setAntiAlias(true);
-            mHourPaint.setStrokeCap(Paint.Cap.ROUND);
-            mHourPaint.setShadowLayer(SHADOW_RADIUS, 0, 0, mWatchHandShadowColor);
-
-            mMinutePaint = new Paint();
-            mMinutePaint.setColor(mWatchHandAndComplicationsColor);
-            mMinutePaint.setStrokeWidth(MINUTE_STROKE_WIDTH);
-            mMinutePaint.setAntiAlias(true);
-            mMinutePaint.setStrokeCap(Paint.Cap.ROUND);
-            mMinutePaint.setShadowLayer(SHADOW_RADIUS, 0, 0, mWatchHandShadowColor);
-
-            mSecondAndHighlightPaint = new Paint();
-            mSecondAndHighlightPaint.setColor(watchFacePreferences.getWatchHandHighlightColor());
-            mSecondAndHighlightPaint.setStrokeWidth(SECOND_TICK_STROKE_WIDTH);
-            mSecondAndHighlightPaint.setAntiAlias(true);
-            mSecondAndHighlightPaint.setStrokeCap(Paint.Cap.ROUND);
-            mSecondAndHighlightPaint.setShadowLayer(SHADOW_RADIUS, 0, 0, mWatchHandShadowColor);
-
-            mTickAndCirclePaint = new Paint();
-            mTickAndCirclePaint.setColor(mWatchHandAndComplicationsColor);
-            mTickAndCirclePaint.setStrokeWidth(SECOND_TICK_STROKE_WIDTH);
-            mTickAndCirclePaint.setAntiAlias(true);
-            mTickAndCirclePaint.setStyle(Paint.Style.STROKE);
-            mTickAndCirclePaint.setShadowLayer(SHADOW_RADIUS, 0, 0, mWatchHandShadowColor);
-        }
-
         @Override
         public void onDestroy() {
             mUpdateTimeHandler.removeMessages(MSG_UPDATE_TIME);
+            mUpdateTimeHandler.removeMessages(MSG_COALESCED_FRAME);
+            for (int index = 0; index < mComplicationDrawableSparseArray.size(); index++) {
+                ComplicationDrawable complicationDrawable =
+                        mComplicationDrawableSparseArray.valueAt(index);
+                complicationDrawable.setCallback(null);
+                mUpdateTimeHandler.removeCallbacksAndMessages(complicationDrawable);
+            }
+            mDialLayer.release();
+            mProtectedAmbientRenderer.release();
+            mComplicationRenderCache.release();
+            mBackgroundImageLoader.release();
+            mComplicationSnapshotStore.release();
+            mPowerGovernor.stop();
+            watchFacePreferences.removeListener(this);
             super.onDestroy();
         }
 
@@ -258,12 +412,16 @@ public class WatchFaceService extends CanvasWatchFaceService {
             // screen's capabilities.
             ComplicationDrawable complicationDrawable;
 
-            for (Complication complication : Complication.values()) {
-                complicationDrawable = mComplicationDrawableSparseArray.get(complication.getId());
+            for (int index = 0; index < mComplicationDrawableSparseArray.size(); index++) {
+                complicationDrawable = mComplicationDrawableSparseArray.valueAt(index);
 
                 complicationDrawable.setLowBitAmbient(mLowBitAmbient);
                 complicationDrawable.setBurnInProtection(mBurnInProtection);
             }
+
+            mComplicationRenderCache.setRenderState(mAmbientStyle, mLowBitAmbient,
+                    mBurnInProtection);
+            updateTheme();
         }
 
         /*
@@ -273,14 +431,56 @@ public class WatchFaceService extends CanvasWatchFaceService {
         public void onComplicationDataUpdate(int complicationId, ComplicationData complicationData) {
             Log.d(TAG, "onComplicationDataUpdate() id: " + complicationId);
 
+            if (applyComplicationData(complicationId, complicationData)) {
+                mComplicationSnapshotStore.save(complicationId, complicationData,
+                        mClock.currentTimeMillis());
+            }
+        }
+
+        /*
+         * Shows new data for a complication. Returns false if the data was identical to the
+         * current data and nothing changed.
+         */
+        private boolean applyComplicationData(int complicationId, ComplicationData complicationData) {
+            // Providers may resend identical content, which does not need a redraw.
+            if (!mComplicationUpdateFilter.shouldApply(complicationId,
+                    mActiveComplicationDataSparseArray.get(complicationId), complicationData)) {
+                return false;
+            }
+
             // Adds/updates active complication data in the array.
             mActiveComplicationDataSparseArray.put(complicationId, complicationData);
 
+            /*
+             * The background image is not rendered by its ComplicationDrawable, but loaded off the
+             * main thread and shown once ready, which requests its own frame.
+             */
+            if (complicationId == Complication.BACKGROUND.getId()) {
+                if (mPowerGovernor.isBackgroundFrozen()) {
+                    // Keeps the current image; the latest one is loaded once unfrozen.
+                    mBackgroundImageStale = true;
+                } else {
+                    updateBackgroundImage();
+                }
+                return true;
+            }
+
             // Updates correct ComplicationDrawable with updated data.
             ComplicationDrawable complicationDrawable = mComplicationDrawableSparseArray.get(complicationId);
             complicationDrawable.setComplicationData(complicationData);
 
-            invalidate();
+            mFrameRequestCoalescer.requestComplicationFrame(complicationId);
+            return true;
+        }
+
+        private void updateBackgroundImage() {
+            mBackgroundImageStale = false;
+
+            ComplicationData backgroundData =
+                    mActiveComplicationDataSparseArray.get(Complication.BACKGROUND.getId());
+            mBackgroundImageLoader.setImage((backgroundData != null
+                    && backgroundData.getType() == ComplicationData.TYPE_LARGE_IMAGE)
+                    ? backgroundData.getLargeImage() : null);
         }
 
         @Override
@@ -288,10 +488,28 @@ public class WatchFaceService extends CanvasWatchFaceService {
             Log.d(TAG, "OnTapCommand()");
             switch (tapType) {
                 case TAP_TYPE_TAP:
-                    for (Complication complication : Complication.Companion.valuesReverse()) {
+                    if (mCompiledComplicationLayout == null) {
+                        break;
+                    }
+
+                    // Only the slots whose hit region contains the tap are asked, topmost first.
+                    ComplicationHitIndex hitIndex = mCompiledComplicationLayout.getHitIndex();
+                    long candidates = hitIndex.getCandidates(x, y);
+                    while (candidates != 0) {
+                        int slot = Long.numberOfTrailingZeros(candidates);
+                        candidates &= candidates - 1;
+                        if (!hitIndex.contains(slot, x, y)) {
+                            continue;
+                        }
+
+                        int complicationId = hitIndex.getComplicationId(slot);
                         ComplicationDrawable complicationDrawable = mComplicationDrawableSparseArray.get(
-                                complication.getId());
+                                complicationId);
                         if (complicationDrawable.onTap(x, y)) {
+                            mComplicationRenderCache.onTap(complicationId,
+                                    mClock.currentTimeMillis());
+                            mPendingTapEventTime = eventTime;
+                            mFrameRequestCoalescer.requestFrame(FrameRequestCoalescer.REASON_TAP);
                             return;
                         }
                     }
@@ -302,7 +520,7 @@ public class WatchFaceService extends CanvasWatchFaceService {
         @Override
         public void onTimeTick() {
             super.onTimeTick();
-            invalidate();
+            mFrameRequestCoalescer.requestFrame(FrameRequestCoalescer.REASON_TIME_TICK);
         }
 
         @Override
@@ -311,63 +529,77 @@ public class WatchFaceService extends CanvasWatchFaceService {
             Log.d(TAG, "onAmbientModeChanged: " + inAmbientMode);
 
             mAmbient = inAmbientMode;
+            if (!inAmbientMode) {
+                mProtectedAmbientRenderer.release();
+            }
+
+            updateAmbientStyle();
+            updateTheme();
+
+            // Check and trigger whether or not timer should be running (only in active style).
+            updateTimer();
+        }
 
-            updateWatchPaintStyles();
+        private void updateAmbientStyle() {
+            mAmbientStyle = mAmbient || mPowerGovernor.isAmbientStyle();
 
             // Update drawable complications' ambient state.
             // Note: ComplicationDrawable handles switching between active/ambient colors, we just
             // have to inform it to enter ambient mode.
             ComplicationDrawable complicationDrawable;
 
-            for (Complication complication : Complication.values()) {
-                complicationDrawable = mComplicationDrawableSparseArray.get(complication.getId());
-                complicationDrawable.setInAmbientMode(mAmbient);
+            for (int index = 0; index < mComplicationDrawableSparseArray.size(); index++) {
+                complicationDrawable = mComplicationDrawableSparseArray.valueAt(index);
+                complicationDrawable.setInAmbientMode(mAmbientStyle);
             }
-
-            // Check and trigger whether or not timer should be running (only in active mode).
-            updateTimer();
+            mComplicationRenderCache.setRenderState(mAmbientStyle, mLowBitAmbient,
+                    mBurnInProtection);
         }
 
-        private void updateWatchPaintStyles() {
-            if (mAmbient) {
-
-                mBackgroundPaint.setColor(Color.BLACK);
-
-                mHourPaint.setColor(Color.WHITE);
-                mMinutePaint.setColor(Color.WHITE);
-                mSecondAndHighlightPaint.setColor(Color.WHITE);
-                mTickAndCirclePaint.setColor(Color.WHITE);
-
-                mHourPaint.setAntiAlias(false);
-                mMinutePaint.setAntiAlias(false);
-                mSecondAndHighlightPaint.setAntiAlias(false);
-                mTickAndCirclePaint.setAntiAlias(false);
-
-                mHourPaint.clearShadowLayer();
-                mMinutePaint.clearShadowLayer();
-                mSecondAndHighlightPaint.clearShadowLayer();
-                mTickAndCirclePaint.clearShadowLayer();
-
-            } else {
-
-                mBackgroundPaint.setColor(watchFacePreferences.getBackgroundColor());
+        /*
+         * Applies the rendering tier chosen by the power governor. Each tier keeps the savings of
+         * the ones before it: no shadows, no sweeping second hand, a frozen background image and
+         * finally ambient-style rendering.
+         */
+        private void applyPowerTier() {
+            mFrameMetrics.setPowerTier(mPowerGovernor.getTier());
 
-                mHourPaint.setColor(mWatchHandAndComplicationsColor);
-                mMinutePaint.setColor(mWatchHandAndComplicationsColor);
-                mTickAndCirclePaint.setColor(mWatchHandAndComplicationsColor);
+            mFrameScheduler.setFrameRateLimit(
+                    mPowerGovernor.isSweepEnabled() ? Integer.MAX_VALUE : 1);
+            if (mBackgroundImageStale && !mPowerGovernor.isBackgroundFrozen()) {
+                updateBackgroundImage();
+            }
+            updateAmbientStyle();
+            updateTheme();
 
-                mSecondAndHighlightPaint.setColor(watchFacePreferences.getWatchHandHighlightColor());
+            // Restarts the timer at the new frame rate, or stops it for ambient style.
+            updateTimer();
+            mFrameRequestCoalescer.requestFrame(FrameRequestCoalescer.REASON_STYLE);
+        }
 
-                mHourPaint.setAntiAlias(true);
-                mMinutePaint.setAntiAlias(true);
-                mSecondAndHighlightPaint.setAntiAlias(true);
-                mTickAndCirclePaint.setAntiAlias(true);
+        /*
+         * Switches to the theme for the current state. Themes are built once per state and never
+         * modified, so the result does not depend on the order in which the state changed.
+         */
+        private void updateTheme() {
+            mThemes.setColors(watchFacePreferences.getBackgroundColor(),
+                    watchFacePreferences.getWatchHandHighlightColor());
+
+            int state = (mAmbientStyle ? WatchFaceTheme.STATE_AMBIENT : 0)
+                    | (mLowBitAmbient ? WatchFaceTheme.STATE_LOW_BIT_AMBIENT : 0)
+                    | (mBurnInProtection ? WatchFaceTheme.STATE_BURN_IN_PROTECTION : 0)
+                    | (mMuteMode ? WatchFaceTheme.STATE_MUTE : 0)
+                    | (mPowerGovernor.isShadowEnabled() ? 0 : WatchFaceTheme.STATE_NO_SHADOWS);
+            WatchFaceTheme theme = mThemes.get(state);
+            if (theme == mTheme) {
+                return;
+            }
 
-                mHourPaint.setShadowLayer(SHADOW_RADIUS, 0, 0, mWatchHandShadowColor);
-                mMinutePaint.setShadowLayer(SHADOW_RADIUS, 0, 0, mWatchHandShadowColor);
-                mSecondAndHighlightPaint.setShadowLayer(SHADOW_RADIUS, 0, 0, mWatchHandShadowColor);
-                mTickAndCirclePaint.setShadowLayer(SHADOW_RADIUS, 0, 0, mWatchHandShadowColor);
+            // The dial layer bakes in the tick paint's alpha, which mute mode leaves alone.
+            if (!theme.hasSameDial(mTheme)) {
+                mDialLayer.invalidate();
             }
+            mTheme = theme;
         }
 
         @Override
@@ -378,10 +610,8 @@ public class WatchFaceService extends CanvasWatchFaceService {
             /* Dim display in mute mode. */
             if (mMuteMode != inMuteMode) {
                 mMuteMode = inMuteMode;
-                mHourPaint.setAlpha(inMuteMode ? 100 : 255);
-                mMinutePaint.setAlpha(inMuteMode ? 100 : 255);
-                mSecondAndHighlightPaint.setAlpha(inMuteMode ? 80 : 255);
-                invalidate();
+                updateTheme();
+                mFrameRequestCoalescer.requestFrame(FrameRequestCoalescer.REASON_STYLE);
             }
         }
 
@@ -397,66 +627,174 @@ public class WatchFaceService extends CanvasWatchFaceService {
             mCenterX = width / 2f;
             mCenterY = height / 2f;
 
+            mDialLayer.invalidate();
+
             /*
              * Calculate lengths of different hands based on watch screen size.
              */
             mSecondHandLength = (float) (mCenterX * 0.875);
             mMinuteHandLength = (float) (mCenterX * 0.75);
             mHourHandLength = (float) (mCenterX * 0.5);
+            mProtectedAmbientRenderer.setHandGeometry(CENTER_GAP_AND_CIRCLE_RADIUS,
+                    mHourHandLength, mMinuteHandLength);
 
-            /*
-             * Calculates location bounds for right and left circular complications. Please note,
-             * we are not demonstrating a long text complication in this watch face.
-             *
-             * We suggest using at least 1/4 of the screen width for circular (or squared)
-             * complications and 2/3 of the screen width for wide rectangular complications for
-             * better readability.
-             */
-
-            // For most Wear devices, width and height are the same, so we just chose one (width).
-            int sizeOfComplication = width / 4;
-            int midpointOfScreen = width / 2;
-
-            int horizontalOffset = (midpointOfScreen - sizeOfComplication) / 2;
-            int verticalOffset = midpointOfScreen - (sizeOfComplication / 2);
+            mSurfaceWidth = width;
+            mSurfaceHeight = height;
+            applyComplicationLayout();
 
-            Rect leftBounds =
-                    // Left, Top, Right, Bottom
-                    new Rect(horizontalOffset, verticalOffset, (horizontalOffset + sizeOfComplication),
-                            (verticalOffset + sizeOfComplication));
+            mBackgroundImageLoader.setSurfaceSize(width, height);
+        }
 
-            ComplicationDrawable leftComplicationDrawable = mComplicationDrawableSparseArray.get(
-                    Complication.LEFT.getId());
-            leftComplicationDrawable.setBounds(leftBounds);
+        @Override
+        public void onApplyWindowInsets(WindowInsets insets) {
+            super.onApplyWindowInsets(insets);
 
-            Rect rightBounds =
-                    // Left, Top, Right, Bottom
-                    new Rect((midpointOfScreen + horizontalOffset), verticalOffset,
-                            (midpointOfScreen + horizontalOffset + sizeOfComplication),
-                            (verticalOffset + sizeOfComplication));
+            // On round screens with a "chin", the bottom inset is the height of the flat part.
+            mRoundScreen = insets.isRound();
+            mChinHeight = insets.getSystemWindowInsetBottom();
+            applyComplicationLayout();
+        }
 
-            ComplicationDrawable rightComplicationDrawable = mComplicationDrawableSparseArray.get(
-                    Complication.RIGHT.getId());
-            rightComplicationDrawable.setBounds(rightBounds);
+        /*
+         * Places the complication slots for the current screen. Layouts are compiled once per
+         * screen configuration, so this is cheap when switching back to a known one.
+         */
+        private void applyComplicationLayout() {
+            if (mSurfaceWidth == 0 || mSurfaceHeight == 0) {
+                return;
+            }
 
-            Rect screenForBackgroundBound =
-                    // Left, Top, Right, Bottom
-                    new Rect(0, 0, width, height);
+            CompiledComplicationLayout layout = mComplicationLayout.compile(mSurfaceWidth,
+                    mSurfaceHeight, mRoundScreen, mChinHeight);
+            if (layout == mCompiledComplicationLayout) {
+                return;
+            }
+            mCompiledComplicationLayout = layout;
 
-            ComplicationDrawable backgroundComplicationDrawable = mComplicationDrawableSparseArray.get(
-                    Complication.BACKGROUND.getId());
-            backgroundComplicationDrawable.setBounds(screenForBackgroundBound);
+            for (int slot = 0; slot < layout.getSlotCount(); slot++) {
+                mComplicationDrawableSparseArray.get(layout.getId(slot)).setBounds(
+                        layout.getLeft(slot), layout.getTop(slot), layout.getRight(slot),
+                        layout.getBottom(slot));
+            }
+            mFrameRequestCoalescer.requestFrame(FrameRequestCoalescer.REASON_STYLE);
         }
 
         @Override
         public void onDraw(Canvas canvas, Rect bounds) {
-            long now = System.currentTimeMillis();
-            mCalendar.setTimeInMillis(now);
+            int metricsMode = mAmbient ? FrameMetrics.MODE_AMBIENT : FrameMetrics.MODE_INTERACTIVE;
+            long frameStart = mFrameMetrics.beginStage(FrameMetrics.STAGE_FRAME);
+            mFrameRequestCoalescer.onFrameDrawn();
+            if (mPendingTapEventTime != 0) {
+                mFrameMetrics.recordTapLatency(TimeUnit.MILLISECONDS.toMicros(
+                        mClock.uptimeMillis() - mPendingTapEventTime));
+                mPendingTapEventTime = 0;
+            }
+
+            long now = mClock.currentTimeMillis();
+            drawFrame(canvas, now, metricsMode);
+
+            long frameCostMicros = mFrameMetrics.endStage(metricsMode, FrameMetrics.STAGE_FRAME,
+                    frameStart);
+            mLastFrameCostMicros = frameCostMicros;
+            if (!mAmbient) {
+                mFrameScheduler.onFrameDrawn(frameCostMicros);
+            }
+        }
+
+        /**
+         * Draws a frame for the current time of the clock into the given bitmap instead of the
+         * surface, going through the same path as {@link #onDraw(Canvas, Rect)}. Returns the time
+         * the frame took in microseconds. Used to render the face headless, e.g. to compare it
+         * with reference images and to track frame times.
+         */
+        long renderFrame(Bitmap bitmap) {
+            mRenderCanvas.setBitmap(bitmap);
+            mRenderBounds.set(0, 0, bitmap.getWidth(), bitmap.getHeight());
+            onDraw(mRenderCanvas, mRenderBounds);
+            mRenderCanvas.setBitmap(null);
+            return mLastFrameCostMicros;
+        }
+
+        private void drawFrame(Canvas canvas, long currentTimeMillis, int metricsMode) {
+            mWallClock.setTimeInMillis(currentTimeMillis);
+            if (mAmbient && (mLowBitAmbient || mBurnInProtection)) {
+                drawProtectedAmbientFrame(canvas, currentTimeMillis, metricsMode);
+                return;
+            }
+
+            /*
+             * When no background image is shown, the background color and ticks come from the
+             * cached dial layer. A background image covers the whole screen, so in that case the
+             * ticks still have to be drawn on top of it.
+             */
+            long stageStart = mFrameMetrics.beginStage(FrameMetrics.STAGE_BACKGROUND);
+            Bitmap backgroundImage = getBackgroundImage();
+            boolean useDialLayer = (backgroundImage == null);
+            if (useDialLayer) {
+                mDialLayer.draw(canvas, mTheme.getBackgroundColor(), mCenterX, mCenterY,
+                        mTheme.getTickAndCirclePaint());
+            } else {
+                canvas.drawBitmap(backgroundImage, 0, 0, null);
+            }
+            mFrameMetrics.endStage(metricsMode, FrameMetrics.STAGE_BACKGROUND, stageStart);
+
+            stageStart = mFrameMetrics.beginStage(FrameMetrics.STAGE_COMPLICATIONS);
+            drawComplications(canvas, currentTimeMillis);
+            mFrameMetrics.endStage(metricsMode, FrameMetrics.STAGE_COMPLICATIONS, stageStart);
 
-            drawBackground(canvas);
-            drawComplications(canvas, now);
+            stageStart = mFrameMetrics.beginStage(FrameMetrics.STAGE_UNREAD_NOTIFICATION_ICON);
             drawUnreadNotificationIcon(canvas);
-            drawWatchFace(canvas);
+            mFrameMetrics.endStage(metricsMode, FrameMetrics.STAGE_UNREAD_NOTIFICATION_ICON,
+                    stageStart);
+
+            stageStart = mFrameMetrics.beginStage(FrameMetrics.STAGE_WATCH_FACE);
+            drawWatchFace(canvas, !useDialLayer);
+            mFrameMetrics.endStage(metricsMode, FrameMetrics.STAGE_WATCH_FACE, stageStart);
+        }
+
+        /*
+         * Low-bit and burn-in protected screens get slim ticks and outlined hands instead of the
+         * dial layer and shadowed hands, shifted by a few pixels every minute. Complications and the
+         * unread indicator are shifted along with them.
+         */
+        private void drawProtectedAmbientFrame(Canvas canvas, long currentTimeMillis,
+                int metricsMode) {
+            mProtectedAmbientRenderer.beginFrame(canvas, currentTimeMillis,
+                    mTheme.getTickAndCirclePaint().getColor());
+
+            long stageStart = mFrameMetrics.beginStage(FrameMetrics.STAGE_BACKGROUND);
+            mProtectedAmbientRenderer.drawDial(canvas);
+            mFrameMetrics.endStage(metricsMode, FrameMetrics.STAGE_BACKGROUND, stageStart);
+
+            stageStart = mFrameMetrics.beginStage(FrameMetrics.STAGE_COMPLICATIONS);
+            drawComplications(canvas, currentTimeMillis);
+            mFrameMetrics.endStage(metricsMode, FrameMetrics.STAGE_COMPLICATIONS, stageStart);
+
+            stageStart = mFrameMetrics.beginStage(FrameMetrics.STAGE_UNREAD_NOTIFICATION_ICON);
+            drawUnreadNotificationIcon(canvas);
+            mFrameMetrics.endStage(metricsMode, FrameMetrics.STAGE_UNREAD_NOTIFICATION_ICON,
+                    stageStart);
+
+            stageStart = mFrameMetrics.beginStage(FrameMetrics.STAGE_WATCH_FACE);
+            float minutesRotation = HandAngles.getMinuteRotation(mWallClock.getMinute());
+            float hoursRotation =
+                    HandAngles.getHourRotation(mWallClock.getHour(), mWallClock.getMinute());
+            mProtectedAmbientRenderer.drawHands(canvas, hoursRotation, minutesRotation);
+            mFrameMetrics.endStage(metricsMode, FrameMetrics.STAGE_WATCH_FACE, stageStart);
+
+            mProtectedAmbientRenderer.endFrame(canvas);
+        }
+
+        /*
+         * Returns the loaded background complication image for the current mode, or null if the
+         * plain background color should be shown. Images are never shown on low-bit or burn-in
+         * protected screens in ambient mode.
+         */
+        private Bitmap getBackgroundImage() {
+            if (mAmbientStyle && (mLowBitAmbient || mBurnInProtection)) {
+                return null;
+            }
+            return mBackgroundImageLoader.getBitmap(mAmbientStyle);
         }
 
         private void drawUnreadNotificationIcon(Canvas canvas) {
@@ -466,69 +804,58 @@ public class WatchFaceService extends CanvasWatchFaceService {
                 int width = canvas.getWidth();
                 int height = canvas.getHeight();
 
-                canvas.drawCircle(width / 2, height - 40, 10, mTickAndCirclePaint);
+                canvas.drawCircle(width / 2, height - 40, 10, mTheme.getTickAndCirclePaint());
 
                 /*
                  * Ensure center highlight circle is only drawn in interactive mode. This ensures
                  * we don't burn the screen with a solid circle in ambient mode.
                  */
-                if (!mAmbient) {
-                    canvas.drawCircle(width / 2, height - 40, 4, mSecondAndHighlightPaint);
+                if (!mAmbientStyle) {
+                    canvas.drawCircle(width / 2, height - 40, 4,
+                            mTheme.getSecondAndHighlightPaint());
                 }
             }
         }
 
-        private void drawBackground(Canvas canvas) {
-
-            if (mAmbient && (mLowBitAmbient || mBurnInProtection)) {
-                canvas.drawColor(Color.BLACK);
-
-            } else {
-                canvas.drawColor(watchFacePreferences.getBackgroundColor());
+        private void drawComplications(Canvas canvas, long currentTimeMillis) {
+            CompiledComplicationLayout layout = mCompiledComplicationLayout;
+            if (layout == null) {
+                return;
             }
-        }
 
-        private void drawComplications(Canvas canvas, long currentTimeMillis) {
             int complicationId;
             ComplicationDrawable complicationDrawable;
 
-            for (Complication complication : Complication.values()) {
-                complicationId = complication.getId();
+            for (int slot = 0; slot < layout.getSlotCount(); slot++) {
+                complicationId = layout.getId(slot);
+                if (complicationId == Complication.BACKGROUND.getId()) {
+                    // The background image is drawn by the background stage.
+                    continue;
+                }
                 complicationDrawable = mComplicationDrawableSparseArray.get(complicationId);
 
-                complicationDrawable.draw(canvas, currentTimeMillis);
+                mComplicationRenderCache.draw(canvas, complicationId, complicationDrawable,
+                        mActiveComplicationDataSparseArray.get(complicationId),
+                        mComplicationUpdateFilter.getVersion(complicationId), currentTimeMillis);
             }
         }
 
-        private void drawWatchFace(Canvas canvas) {
+        private void drawWatchFace(Canvas canvas, boolean drawTicks) {
             /*
              * Draw ticks. Usually you will want to bake this directly into the photo, but in
              * cases where you want to allow users to select their own photos, this dynamically
-             * creates them on top of the photo.
+             * creates them on top of the photo. Without a photo they are already part of the
+             * cached dial layer.
              */
-            float innerTickRadius = mCenterX - 10;
-            float outerTickRadius = mCenterX;
-            for (int tickIndex = 0; tickIndex < 12; tickIndex++) {
-                float tickRot = (float) (tickIndex * Math.PI * 2 / 12);
-                float innerX = (float) Math.sin(tickRot) * innerTickRadius;
-                float innerY = (float) -Math.cos(tickRot) * innerTickRadius;
-                float outerX = (float) Math.sin(tickRot) * outerTickRadius;
-                float outerY = (float) -Math.cos(tickRot) * outerTickRadius;
-                canvas.drawLine(mCenterX + innerX, mCenterY + innerY, mCenterX + outerX, mCenterY + outerY,
-                        mTickAndCirclePaint);
+            if (drawTicks) {
+                DialLayer.drawTicks(canvas, mCenterX, mCenterY, mTheme.getTickAndCirclePaint());
             }
 
-            /*
-             * These calculations reflect the rotation in degrees per unit of time, e.g.,
-             * 360 / 60 = 6 and 360 / 12 = 30.
-             */
-            final float seconds = (mCalendar.get(Calendar.SECOND) + mCalendar.get(Calendar.MILLISECOND) / 1000f);
-            final float secondsRotation = seconds * 6f;
-
-            final float minutesRotation = mCalendar.get(Calendar.MINUTE) * 6f;
-
-            final float hourHandOffset = mCalendar.get(Calendar.MINUTE) / 2f;
-            final float hoursRotation = (mCalendar.get(Calendar.HOUR) * 30) + hourHandOffset;
+            final float secondsRotation = HandAngles.getSecondRotation(mWallClock.getSecond(),
+                    mWallClock.getMillisecond());
+            final float minutesRotation = HandAngles.getMinuteRotation(mWallClock.getMinute());
+            final float hoursRotation =
+                    HandAngles.getHourRotation(mWallClock.getHour(), mWallClock.getMinute());
 
             /*
              * Save the canvas state before we can begin to rotate it.
@@ -537,22 +864,23 @@ public class WatchFaceService extends CanvasWatchFaceService {
 
             canvas.rotate(hoursRotation, mCenterX, mCenterY);
             canvas.drawLine(mCenterX, mCenterY - CENTER_GAP_AND_CIRCLE_RADIUS, mCenterX, mCenterY - mHourHandLength,
-                    mHourPaint);
+                    mTheme.getHourPaint());
 
             canvas.rotate(minutesRotation - hoursRotation, mCenterX, mCenterY);
             canvas.drawLine(mCenterX, mCenterY - CENTER_GAP_AND_CIRCLE_RADIUS, mCenterX, mCenterY - mMinuteHandLength,
-                    mMinutePaint);
+                    mTheme.getMinutePaint());
 
             /*
              * Ensure the "seconds" hand is drawn only when we are in interactive mode.
              * Otherwise, we only update the watch face once a minute.
              */
-            if (!mAmbient) {
+            if (!mAmbientStyle) {
                 canvas.rotate(secondsRotation - minutesRotation, mCenterX, mCenterY);
                 canvas.drawLine(mCenterX, mCenterY - CENTER_GAP_AND_CIRCLE_RADIUS, mCenterX,
-                        mCenterY - mSecondHandLength, mSecondAndHighlightPaint);
+                        mCenterY - mSecondHandLength, mTheme.getSecondAndHighlightPaint());
             }
-            canvas.drawCircle(mCenterX, mCenterY, CENTER_GAP_AND_CIRCLE_RADIUS, mTickAndCirclePaint);
+            canvas.drawCircle(mCenterX, mCenterY, CENTER_GAP_AND_CIRCLE_RADIUS,
+                    mTheme.getTickAndCirclePaint());
 
             /* Restore the canvas' original orientation. */
             canvas.restore();
@@ -563,25 +891,28 @@ public class WatchFaceService extends CanvasWatchFaceService {
             super.onVisibilityChanged(visible);
 
             if (visible) {
-
-                // Preferences might have changed since last time watch face was visible.
-                watchFacePreferences.reloadSavedPreferences(getApplicationContext());
-
-                // With the rest of the watch face, we update the paint colors based on
-                // ambient/active mode callbacks, but because the ComplicationDrawable handles
-                // the active/ambient colors, we only need to update the complications' colors when
-                // the user actually makes a change to the highlight color, not when the watch goes
-                // in and out of ambient mode.
-                setComplicationsActiveAndAmbientColors(watchFacePreferences.getWatchHandHighlightColor());
-                updateWatchPaintStyles();
+                // Changes made in this process are pushed through onPreferencesChanged(); those of
+                // other processes are picked up now and, while visible, as they are written.
+                watchFacePreferences.reloadIfChanged();
+                watchFacePreferences.startWatching();
+                mPowerGovernor.start();
 
                 registerReceiver();
-                // Update time zone in case it changed while we weren't visible.
-                mCalendar.setTimeZone(TimeZone.getDefault());
-                invalidate();
+                /*
+                 * Update time zone in case it changed while we weren't visible. Switching drops
+                 * the cached offset, so only do so if it actually changed.
+                 */
+                TimeZone timeZone = TimeZone.getDefault();
+                if (!timeZone.getID().equals(mWallClock.getTimeZone().getID())) {
+                    mWallClock.setTimeZone(timeZone);
+                }
+                mFrameRequestCoalescer.requestFrame(FrameRequestCoalescer.REASON_VISIBILITY);
             } else {
                 unregisterReceiver();
+                watchFacePreferences.stopWatching();
+                mPowerGovernor.stop();
             }
+            mFrameRequestCoalescer.onVisibilityChanged(visible);
 
             /* Check and trigger whether or not timer should be running (only in active mode). */
             updateTimer();
@@ -595,7 +926,7 @@ public class WatchFaceService extends CanvasWatchFaceService {
 
                 if (mNumberOfUnreadNotifications != count) {
                     mNumberOfUnreadNotifications = count;
-                    invalidate();
+                    mFrameRequestCoalescer.requestFrame(FrameRequestCoalescer.REASON_UNREAD_COUNT);
                 }
             }
         }
@@ -629,10 +960,61 @@ public class WatchFaceService extends CanvasWatchFaceService {
 
         /**
          * Returns whether the {@link #mUpdateTimeHandler} timer should be running. The timer should
-         * only run in active mode.
+         * only run in active mode, and not while the power governor renders it like ambient mode:
+         * without a second hand, onTimeTick() updates the face once a minute.
          */
         private boolean shouldTimerBeRunning() {
-            return isVisible() && !mAmbient;
+            return isVisible() && !mAmbientStyle;
+        }
+
+        @Override
+        public long uptimeMillis() {
+            return mClock.uptimeMillis();
+        }
+
+        @Override
+        public void scheduleFrame(long delayMillis) {
+            mUpdateTimeHandler.sendEmptyMessageDelayed(MSG_COALESCED_FRAME, delayMillis);
+        }
+
+        @Override
+        public void cancelScheduledFrame() {
+            mUpdateTimeHandler.removeMessages(MSG_COALESCED_FRAME);
+        }
+
+        /*
+         * A complication drawable changed on its own, e.g. an icon finished loading. Its cached
+         * rendering is stale, so render it again in a frame.
+         */
+        @Override
+        public void invalidateDrawable(Drawable who) {
+            int index = mComplicationDrawableSparseArray.indexOfValue((ComplicationDrawable) who);
+            if (index < 0) {
+                return;
+            }
+            int complicationId = mComplicationDrawableSparseArray.keyAt(index);
+            mComplicationRenderCache.invalidate(complicationId);
+            mFrameRequestCoalescer.requestComplicationFrame(complicationId);
+        }
+
+        @Override
+        public void scheduleDrawable(Drawable who, Runnable what, long when) {
+            mUpdateTimeHandler.postAtTime(what, who, when);
+        }
+
+        @Override
+        public void unscheduleDrawable(Drawable who, Runnable what) {
+            mUpdateTimeHandler.removeCallbacks(what, who);
+        }
+
+        @Override
+        protected void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+            super.dump(prefix, fd, writer, args);
+            mFrameRequestCoalescer.dump(writer);
+            mFrameScheduler.dump(writer);
+            mPowerGovernor.dump(writer);
+            mProtectedAmbientRenderer.dump(writer);
+            mComplicationUpdateFilter.dump(writer);
         }
     }
 }
@@ -0,0 +1,227 @@
+package com.deviantdev.wearable.watchface.complication;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
+import android.graphics.Paint;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.Icon;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Loads the image of the background complication ({@code TYPE_LARGE_IMAGE}) off the main thread
+ * and keeps it scaled to the exact surface size, together with a grayscale, dimmed variant for
+ * ambient mode.
+ *
+ * The images on screen are only swapped once a new image is completely ready, so frames never
+ * wait for a decode: until then the previous image, or the plain background color, stays on
+ * screen. The bitmaps that get replaced are reused for the next load.
+ */
+public class BackgroundImageLoader {
+
+    private static final String TAG = "BackgroundImageLoader";
+
+    /* The ambient variant is shown at this fraction of the original brightness. */
+    private static final float AMBIENT_BRIGHTNESS = 0.5f;
+
+    /**
+     * Notified on the main thread when a new image is ready to be drawn.
+     */
+    public interface Listener {
+        void onBackgroundImageReady();
+    }
+
+    private final Context mContext;
+    private final Listener mListener;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+
+    private final Paint mAmbientPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    // All fields below are only accessed on the main thread.
+    private Icon mIcon;
+    private int mWidth;
+    private int mHeight;
+    // Incremented with every load, so results of outdated loads can be told apart.
+    private int mGeneration;
+
+    private Bitmap mActiveBitmap;
+    private Bitmap mAmbientBitmap;
+    private Bitmap mSpareActiveBitmap;
+    private Bitmap mSpareAmbientBitmap;
+
+    public BackgroundImageLoader(Context context, Listener listener) {
+        mContext = context;
+        mListener = listener;
+
+        ColorMatrix ambientMatrix = new ColorMatrix();
+        ambientMatrix.setSaturation(0);
+        ColorMatrix dimMatrix = new ColorMatrix();
+        dimMatrix.setScale(AMBIENT_BRIGHTNESS, AMBIENT_BRIGHTNESS, AMBIENT_BRIGHTNESS, 1f);
+        ambientMatrix.postConcat(dimMatrix);
+        mAmbientPaint.setColorFilter(new ColorMatrixColorFilter(ambientMatrix));
+    }
+
+    /**
+     * Sets the surface size the image is scaled to, reloading the current image if it changed.
+     */
+    public void setSurfaceSize(int width, int height) {
+        if (width == mWidth && height == mHeight) {
+            return;
+        }
+        mWidth = width;
+        mHeight = height;
+        load();
+    }
+
+    /**
+     * Starts loading a new image, or clears the image if null.
+     */
+    public void setImage(Icon icon) {
+        mIcon = icon;
+        load();
+    }
+
+    /**
+     * Returns the image for the given mode, or null if none is ready.
+     */
+    public Bitmap getBitmap(boolean ambient) {
+        return ambient ? mAmbientBitmap : mActiveBitmap;
+    }
+
+    public void release() {
+        mGeneration++;
+        mExecutor.shutdownNow();
+        mMainHandler.removeCallbacksAndMessages(null);
+        mActiveBitmap = recycle(mActiveBitmap);
+        mAmbientBitmap = recycle(mAmbientBitmap);
+        mSpareActiveBitmap = recycle(mSpareActiveBitmap);
+        mSpareAmbientBitmap = recycle(mSpareAmbientBitmap);
+    }
+
+    private void load() {
+        final int generation = ++mGeneration;
+        final Icon icon = mIcon;
+        final int width = mWidth;
+        final int height = mHeight;
+
+        if (icon == null) {
+            keepAsSpare(mActiveBitmap, mAmbientBitmap);
+            mActiveBitmap = null;
+            mAmbientBitmap = null;
+            mListener.onBackgroundImageReady();
+            return;
+        }
+        if (width == 0 || height == 0) {
+            // Loaded once the surface size is known.
+            return;
+        }
+
+        // The spare bitmaps belong to the worker until its result comes back.
+        final Bitmap activeTarget = mSpareActiveBitmap;
+        final Bitmap ambientTarget = mSpareAmbientBitmap;
+        mSpareActiveBitmap = null;
+        mSpareAmbientBitmap = null;
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                Drawable drawable = icon.loadDrawable(mContext);
+                if (drawable == null) {
+                    Log.w(TAG, "Unable to load background image.");
+                    postResult(generation, activeTarget, ambientTarget, false);
+                    return;
+                }
+
+                Bitmap active = obtainBitmap(activeTarget, width, height);
+                renderScaled(drawable, active);
+
+                Bitmap ambient = obtainBitmap(ambientTarget, width, height);
+                new Canvas(ambient).drawBitmap(active, 0, 0, mAmbientPaint);
+
+                postResult(generation, active, ambient, true);
+            }
+        });
+    }
+
+    private void postResult(final int generation, final Bitmap active, final Bitmap ambient,
+            final boolean loaded) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!loaded || generation != mGeneration) {
+                    keepAsSpare(active, ambient);
+                    return;
+                }
+
+                keepAsSpare(mActiveBitmap, mAmbientBitmap);
+                mActiveBitmap = active;
+                mAmbientBitmap = ambient;
+                mListener.onBackgroundImageReady();
+            }
+        });
+    }
+
+    private void keepAsSpare(Bitmap active, Bitmap ambient) {
+        if (mSpareActiveBitmap == null) {
+            mSpareActiveBitmap = active;
+        } else {
+            recycle(active);
+        }
+        if (mSpareAmbientBitmap == null) {
+            mSpareAmbientBitmap = ambient;
+        } else {
+            recycle(ambient);
+        }
+    }
+
+    /*
+     * Scales the image to fill the whole surface (center crop) on a black background, as the
+     * background ComplicationDrawable does.
+     */
+    private static void renderScaled(Drawable drawable, Bitmap target) {
+        int width = target.getWidth();
+        int height = target.getHeight();
+        int imageWidth = drawable.getIntrinsicWidth();
+        int imageHeight = drawable.getIntrinsicHeight();
+
+        Canvas canvas = new Canvas(target);
+        canvas.drawColor(Color.BLACK);
+
+        if (imageWidth <= 0 || imageHeight <= 0) {
+            drawable.setBounds(0, 0, width, height);
+        } else {
+            float scale = Math.max((float) width / imageWidth, (float) height / imageHeight);
+            int scaledWidth = Math.round(imageWidth * scale);
+            int scaledHeight = Math.round(imageHeight * scale);
+            int left = (width - scaledWidth) / 2;
+            int top = (height - scaledHeight) / 2;
+            drawable.setBounds(left, top, left + scaledWidth, top + scaledHeight);
+        }
+        drawable.draw(canvas);
+    }
+
+    private static Bitmap obtainBitmap(Bitmap bitmap, int width, int height) {
+        if (bitmap != null && !bitmap.isRecycled() && bitmap.getWidth() == width
+                && bitmap.getHeight() == height) {
+            return bitmap;
+        }
+        recycle(bitmap);
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    private static Bitmap recycle(Bitmap bitmap) {
+        if (bitmap != null) {
+            bitmap.recycle();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,85 @@
+package com.deviantdev.wearable.watchface.complication;
+
+/**
+ * Pixel bounds of all complication slots for one screen configuration, produced by
+ * {@link ComplicationLayout#compile(int, int, boolean, int)}.
+ *
+ * Slots are indexed in drawing order. Bounds are kept in flat arrays, and the hit-test index for
+ * taps is built together with them, so neither drawing nor tap handling computes any geometry.
+ */
+public class CompiledComplicationLayout {
+
+    private final int mWidth;
+    private final int mHeight;
+    private final int[] mIds;
+    private final int[] mShapes;
+    private final int[] mLeft;
+    private final int[] mTop;
+    private final int[] mRight;
+    private final int[] mBottom;
+
+    private final ComplicationHitIndex mHitIndex = new ComplicationHitIndex();
+
+    CompiledComplicationLayout(int width, int height, int[] ids, int[] shapes, int[] left,
+            int[] top, int[] right, int[] bottom) {
+        mWidth = width;
+        mHeight = height;
+        mIds = ids;
+        mShapes = shapes;
+        mLeft = left;
+        mTop = top;
+        mRight = right;
+        mBottom = bottom;
+
+        // Taps go to the topmost slot, so slots are indexed in reverse drawing order.
+        mHitIndex.reset(width, height);
+        for (int slot = ids.length - 1; slot >= 0; slot--) {
+            if (shapes[slot] == ComplicationLayout.SHAPE_CIRCLE) {
+                mHitIndex.addCircle(ids[slot], left[slot], top[slot], right[slot], bottom[slot]);
+            } else {
+                mHitIndex.addRectangle(ids[slot], left[slot], top[slot], right[slot],
+                        bottom[slot]);
+            }
+        }
+    }
+
+    public int getWidth() {
+        return mWidth;
+    }
+
+    public int getHeight() {
+        return mHeight;
+    }
+
+    public int getSlotCount() {
+        return mIds.length;
+    }
+
+    public int getId(int slot) {
+        return mIds[slot];
+    }
+
+    public int getShape(int slot) {
+        return mShapes[slot];
+    }
+
+    public int getLeft(int slot) {
+        return mLeft[slot];
+    }
+
+    public int getTop(int slot) {
+        return mTop[slot];
+    }
+
+    public int getRight(int slot) {
+        return mRight[slot];
+    }
+
+    public int getBottom(int slot) {
+        return mBottom[slot];
+    }
+
+    public ComplicationHitIndex getHitIndex() {
+        return mHitIndex;
+    }
+}
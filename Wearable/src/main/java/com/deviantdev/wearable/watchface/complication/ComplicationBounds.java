@@ -0,0 +1,76 @@
+package com.deviantdev.wearable.watchface.complication;
+
+/**
+ * Turns the resolution independent slot descriptors of a {@link ComplicationLayout} into pixel
+ * bounds for one screen size and shape.
+ *
+ * Slots are given as flat arrays indexed by slot. Centers and sizes are fractions of the screen,
+ * sizes of its shorter side. On round screens slots are pulled towards the center until they fit
+ * into the circle, and on every screen they are kept clear of the chin.
+ */
+public final class ComplicationBounds {
+
+    public static final int SHAPE_FILL = 0;
+    public static final int SHAPE_CIRCLE = 1;
+    public static final int SHAPE_RECTANGLE = 2;
+
+    private ComplicationBounds() {
+    }
+
+    /**
+     * Writes the bounds of every slot to {@code left}, {@code top}, {@code right} and
+     * {@code bottom}, which need one entry per slot.
+     */
+    public static void compute(int[] shapes, float[] centerXs, float[] centerYs, float[] sizes,
+            float[] aspectRatios, int width, int height, boolean round, int chinHeight,
+            int[] left, int[] top, int[] right, int[] bottom) {
+        float screenCenterX = width / 2f;
+        float screenCenterY = height / 2f;
+        float screenRadius = Math.min(width, height) / 2f;
+        int shorterSide = Math.min(width, height);
+        int visibleBottom = height - Math.max(chinHeight, 0);
+
+        for (int slot = 0; slot < shapes.length; slot++) {
+            if (shapes[slot] == SHAPE_FILL) {
+                left[slot] = 0;
+                top[slot] = 0;
+                right[slot] = width;
+                bottom[slot] = height;
+                continue;
+            }
+
+            int slotHeight = (int) (sizes[slot] * shorterSide);
+            int slotWidth = (shapes[slot] == SHAPE_CIRCLE)
+                    ? slotHeight : (int) (slotHeight * aspectRatios[slot]);
+            float centerX = centerXs[slot] * width;
+            float centerY = centerYs[slot] * height;
+
+            if (round) {
+                // Distance from the screen center to the farthest point of the slot.
+                float extent = (shapes[slot] == SHAPE_CIRCLE)
+                        ? slotWidth / 2f
+                        : (float) Math.hypot(slotWidth / 2f, slotHeight / 2f);
+                float offsetX = centerX - screenCenterX;
+                float offsetY = centerY - screenCenterY;
+                float distance = (float) Math.hypot(offsetX, offsetY);
+                if (distance > 0 && distance + extent > screenRadius) {
+                    float scale = Math.max(screenRadius - extent, 0) / distance;
+                    centerX = screenCenterX + offsetX * scale;
+                    centerY = screenCenterY + offsetY * scale;
+                }
+            }
+
+            int slotLeft = Math.round(centerX - slotWidth / 2f);
+            int slotTop = Math.round(centerY - slotHeight / 2f);
+
+            // Keep the slot on the visible part of the screen.
+            slotLeft = Math.max(0, Math.min(slotLeft, width - slotWidth));
+            slotTop = Math.max(0, Math.min(slotTop, visibleBottom - slotHeight));
+
+            left[slot] = slotLeft;
+            top[slot] = slotTop;
+            right[slot] = slotLeft + slotWidth;
+            bottom[slot] = slotTop + slotHeight;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.deviantdev.wearable.watchface.complication;
+
+import android.app.PendingIntent;
+import android.graphics.drawable.Icon;
+import android.os.Build;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.ComplicationText;
+import android.text.TextUtils;
+
+import java.util.Arrays;
+
+/**
+ * Compares the content of two {@link ComplicationData} objects: type, values, texts, images and
+ * tap action. {@link ComplicationData} has no {@code equals()}, and data arriving from a provider
+ * is always a new object, even when the provider resent identical content.
+ *
+ * Only fields valid for the data's type are read, as the getters of other fields are not meant to
+ * be called for that type. Fields are compared one by one; nothing is marshalled except
+ * time-dependent texts, which have no public accessors for their format.
+ */
+public final class ComplicationDataComparator {
+
+    private ComplicationDataComparator() {
+    }
+
+    public static boolean contentEquals(ComplicationData first, ComplicationData second) {
+        if (first == second) {
+            return true;
+        }
+        if (first == null || second == null) {
+            return false;
+        }
+
+        int type = first.getType();
+        if (type != second.getType()) {
+            return false;
+        }
+
+        if (first.getStartDateTimeMillis() != second.getStartDateTimeMillis()
+                || first.getEndDateTimeMillis() != second.getEndDateTimeMillis()) {
+            return false;
+        }
+
+        if (hasRangedValue(type) && (first.getValue() != second.getValue()
+                || first.getMinValue() != second.getMinValue()
+                || first.getMaxValue() != second.getMaxValue())) {
+            return false;
+        }
+
+        if (hasShortText(type) && (!textEquals(first.getShortText(), second.getShortText())
+                || !textEquals(first.getShortTitle(), second.getShortTitle()))) {
+            return false;
+        }
+
+        if (hasLongText(type) && (!textEquals(first.getLongText(), second.getLongText())
+                || !textEquals(first.getLongTitle(), second.getLongTitle()))) {
+            return false;
+        }
+
+        if (hasIcon(type) && (!iconEquals(first.getIcon(), second.getIcon())
+                || !iconEquals(first.getBurnInProtectionIcon(),
+                second.getBurnInProtectionIcon()))) {
+            return false;
+        }
+
+        if (hasSmallImage(type) && (first.getImageStyle() != second.getImageStyle()
+                || !iconEquals(first.getSmallImage(), second.getSmallImage())
+                || !iconEquals(first.getBurnInProtectionSmallImage(),
+                second.getBurnInProtectionSmallImage()))) {
+            return false;
+        }
+
+        if (hasLargeImage(type) && !iconEquals(first.getLargeImage(), second.getLargeImage())) {
+            return false;
+        }
+
+        return !hasTapAction(type) || tapActionEquals(first.getTapAction(), second.getTapAction());
+    }
+
+    static boolean hasRangedValue(int type) {
+        return type == ComplicationData.TYPE_RANGED_VALUE;
+    }
+
+    static boolean hasShortText(int type) {
+        return type == ComplicationData.TYPE_SHORT_TEXT
+                || type == ComplicationData.TYPE_RANGED_VALUE
+                || type == ComplicationData.TYPE_NO_PERMISSION;
+    }
+
+    static boolean hasLongText(int type) {
+        return type == ComplicationData.TYPE_LONG_TEXT;
+    }
+
+    static boolean hasIcon(int type) {
+        return type == ComplicationData.TYPE_SHORT_TEXT
+                || type == ComplicationData.TYPE_LONG_TEXT
+                || type == ComplicationData.TYPE_RANGED_VALUE
+                || type == ComplicationData.TYPE_ICON
+                || type == ComplicationData.TYPE_NO_PERMISSION;
+    }
+
+    static boolean hasSmallImage(int type) {
+        return type == ComplicationData.TYPE_LONG_TEXT
+                || type == ComplicationData.TYPE_SMALL_IMAGE;
+    }
+
+    static boolean hasLargeImage(int type) {
+        return type == ComplicationData.TYPE_LARGE_IMAGE;
+    }
+
+    static boolean hasTapAction(int type) {
+        return type == ComplicationData.TYPE_SHORT_TEXT
+                || type == ComplicationData.TYPE_LONG_TEXT
+                || type == ComplicationData.TYPE_RANGED_VALUE
+                || type == ComplicationData.TYPE_ICON
+                || type == ComplicationData.TYPE_SMALL_IMAGE;
+    }
+
+    /* PendingIntent compares the target operation, not the object. */
+    private static boolean tapActionEquals(PendingIntent first, PendingIntent second) {
+        return (first == null) ? (second == null) : first.equals(second);
+    }
+
+    /**
+     * Plain texts are compared by their characters. A plain text does not depend on the time or
+     * on resources, so it is read without a context.
+     */
+    static boolean textEquals(ComplicationText first, ComplicationText second) {
+        if (first == second) {
+            return true;
+        }
+        if (first == null || second == null) {
+            return false;
+        }
+        if (first.isTimeDependent() || second.isTimeDependent()) {
+            return first.isTimeDependent() == second.isTimeDependent()
+                    && parcelEquals(first, second);
+        }
+        return TextUtils.equals(first.getText(null, 0), second.getText(null, 0));
+    }
+
+    /**
+     * Icons are equal if they are the same object, or load the same resource or URI. Icons that
+     * carry their pixels (bitmaps and byte arrays) are only equal to themselves: comparing them
+     * would cost more than the redraw it saves. Tints are not compared, as they are not exposed;
+     * providers here never tint their icons.
+     *
+     * The type and source of an icon are only readable from API 28 on; below that, icons are only
+     * equal to themselves.
+     */
+    static boolean iconEquals(Icon first, Icon second) {
+        if (first == second) {
+            return true;
+        }
+        if (first == null || second == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.P) {
+            return false;
+        }
+
+        int type = first.getType();
+        if (type != second.getType()) {
+            return false;
+        }
+        switch (type) {
+            case Icon.TYPE_RESOURCE:
+                return first.getResId() == second.getResId()
+                        && TextUtils.equals(first.getResPackage(), second.getResPackage());
+            case Icon.TYPE_URI:
+                return first.getUri().equals(second.getUri());
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Compares two parcelables by their marshalled bytes. Values that cannot be marshalled are
+     * treated as different.
+     */
+    static boolean parcelEquals(Parcelable first, Parcelable second) {
+        byte[] firstBytes = marshall(first);
+        if (firstBytes == null) {
+            return false;
+        }
+        return Arrays.equals(firstBytes, marshall(second));
+    }
+
+    static byte[] marshall(Parcelable parcelable) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcelable.writeToParcel(parcel, 0);
+            return parcel.marshall();
+        } catch (RuntimeException e) {
+            return null;
+        } finally {
+            parcel.recycle();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.deviantdev.wearable.watchface.complication;
+
+/**
+ * Coarse grid over the watch face that maps a tap position to the complication slots that may
+ * contain it, without allocating and without asking every slot. Built by
+ * {@link CompiledComplicationLayout} for every screen configuration.
+ *
+ * Slots are added in tap priority order (topmost first), either as rectangles or as circles
+ * inscribed in their bounds. Each grid cell holds a bit mask of the slots overlapping it, so a tap
+ * only tests the few slots of its cell. Up to 64 slots are supported.
+ */
+public class ComplicationHitIndex {
+
+    public static final int MAX_SLOTS = 64;
+
+    private static final int GRID_SIZE = 8;
+
+    private final long[] mCells = new long[GRID_SIZE * GRID_SIZE];
+
+    private final int[] mIds = new int[MAX_SLOTS];
+    private final boolean[] mCircular = new boolean[MAX_SLOTS];
+    private final int[] mLeft = new int[MAX_SLOTS];
+    private final int[] mTop = new int[MAX_SLOTS];
+    private final int[] mRight = new int[MAX_SLOTS];
+    private final int[] mBottom = new int[MAX_SLOTS];
+    // Circle center and squared radius, in pixels.
+    private final float[] mCenterX = new float[MAX_SLOTS];
+    private final float[] mCenterY = new float[MAX_SLOTS];
+    private final float[] mRadiusSquared = new float[MAX_SLOTS];
+
+    private int mWidth;
+    private int mHeight;
+    private int mSlotCount;
+
+    /**
+     * Removes all slots and sets the size of the area covered by the grid.
+     */
+    void reset(int width, int height) {
+        mWidth = Math.max(width, 1);
+        mHeight = Math.max(height, 1);
+        mSlotCount = 0;
+        for (int cell = 0; cell < mCells.length; cell++) {
+            mCells[cell] = 0;
+        }
+    }
+
+    void addRectangle(int complicationId, int left, int top, int right, int bottom) {
+        addSlot(complicationId, left, top, right, bottom, false);
+    }
+
+    /**
+     * Adds a slot that only reacts to taps inside the circle inscribed in its bounds.
+     */
+    void addCircle(int complicationId, int left, int top, int right, int bottom) {
+        addSlot(complicationId, left, top, right, bottom, true);
+    }
+
+    /**
+     * Returns a bit mask of the slots whose grid cell contains the position. Bit 0 is the slot
+     * with the highest priority. Candidates still have to be checked with
+     * {@link #contains(int, int, int)}.
+     */
+    public long getCandidates(int x, int y) {
+        if (x < 0 || y < 0 || x >= mWidth || y >= mHeight) {
+            return 0;
+        }
+        return mCells[getCellRow(y) * GRID_SIZE + getCellColumn(x)];
+    }
+
+    public boolean contains(int slot, int x, int y) {
+        if (x < mLeft[slot] || x >= mRight[slot] || y < mTop[slot] || y >= mBottom[slot]) {
+            return false;
+        }
+        if (!mCircular[slot]) {
+            return true;
+        }
+        float dx = x - mCenterX[slot];
+        float dy = y - mCenterY[slot];
+        return dx * dx + dy * dy <= mRadiusSquared[slot];
+    }
+
+    public int getComplicationId(int slot) {
+        return mIds[slot];
+    }
+
+    private void addSlot(int complicationId, int left, int top, int right, int bottom,
+            boolean circular) {
+        if (mSlotCount == MAX_SLOTS) {
+            throw new IllegalStateException("Too many complication slots: " + MAX_SLOTS);
+        }
+
+        int slot = mSlotCount++;
+        mIds[slot] = complicationId;
+        mCircular[slot] = circular;
+        mLeft[slot] = left;
+        mTop[slot] = top;
+        mRight[slot] = right;
+        mBottom[slot] = bottom;
+
+        float radius = Math.min(right - left, bottom - top) / 2f;
+        mCenterX[slot] = (left + right) / 2f;
+        mCenterY[slot] = (top + bottom) / 2f;
+        mRadiusSquared[slot] = radius * radius;
+
+        int firstColumn = getCellColumn(Math.max(left, 0));
+        int lastColumn = getCellColumn(Math.min(right, mWidth) - 1);
+        int firstRow = getCellRow(Math.max(top, 0));
+        int lastRow = getCellRow(Math.min(bottom, mHeight) - 1);
+
+        long slotBit = 1L << slot;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                mCells[row * GRID_SIZE + column] |= slotBit;
+            }
+        }
+    }
+
+    private int getCellColumn(int x) {
+        return Math.min(Math.max(x, 0) * GRID_SIZE / mWidth, GRID_SIZE - 1);
+    }
+
+    private int getCellRow(int y) {
+        return Math.min(Math.max(y, 0) * GRID_SIZE / mHeight, GRID_SIZE - 1);
+    }
+}
@@ -0,0 +1,197 @@
+package com.deviantdev.wearable.watchface.complication;
+
+import android.content.res.Resources;
+import android.content.res.XmlResourceParser;
+import android.util.LongSparseArray;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Declarative placement of the complication slots, read from an XML resource (see
+ * {@code res/xml/complication_layout.xml}).
+ *
+ * The descriptor is resolution independent. {@link #compile(int, int, boolean, int)} turns it into
+ * pixel bounds for one screen size and shape, and keeps the result, so switching back to a known
+ * configuration does not compute anything.
+ */
+public class ComplicationLayout {
+
+    public static final int SHAPE_FILL = ComplicationBounds.SHAPE_FILL;
+    public static final int SHAPE_CIRCLE = ComplicationBounds.SHAPE_CIRCLE;
+    public static final int SHAPE_RECTANGLE = ComplicationBounds.SHAPE_RECTANGLE;
+
+    private static final String TAG_LAYOUT = "complication-layout";
+    private static final String TAG_SLOT = "slot";
+
+    private final int[] mIds;
+    private final int[] mShapes;
+    private final float[] mCenterX;
+    private final float[] mCenterY;
+    private final float[] mSize;
+    private final float[] mAspectRatio;
+
+    // Compiled layouts by screen configuration, see getCacheKey().
+    private final LongSparseArray<CompiledComplicationLayout> mCompiled =
+            new LongSparseArray<>();
+
+    private ComplicationLayout(List<Slot> slots) {
+        int count = slots.size();
+        mIds = new int[count];
+        mShapes = new int[count];
+        mCenterX = new float[count];
+        mCenterY = new float[count];
+        mSize = new float[count];
+        mAspectRatio = new float[count];
+
+        for (int index = 0; index < count; index++) {
+            Slot slot = slots.get(index);
+            mIds[index] = slot.mId;
+            mShapes[index] = slot.mShape;
+            mCenterX[index] = slot.mCenterX;
+            mCenterY[index] = slot.mCenterY;
+            mSize[index] = slot.mSize;
+            mAspectRatio[index] = slot.mAspectRatio;
+        }
+    }
+
+    /**
+     * Reads a layout from an XML resource.
+     *
+     * @throws IllegalArgumentException if the resource is not a valid layout.
+     */
+    public static ComplicationLayout inflate(Resources resources, int xmlResId) {
+        XmlResourceParser parser = resources.getXml(xmlResId);
+        try {
+            return parse(parser);
+        } catch (XmlPullParserException | IOException e) {
+            throw new IllegalArgumentException("Unable to read complication layout.", e);
+        } finally {
+            parser.close();
+        }
+    }
+
+    private static ComplicationLayout parse(XmlPullParser parser)
+            throws XmlPullParserException, IOException {
+        List<Slot> slots = new ArrayList<>();
+        boolean inLayout = false;
+
+        for (int event = parser.getEventType(); event != XmlPullParser.END_DOCUMENT;
+                event = parser.next()) {
+            if (event != XmlPullParser.START_TAG) {
+                continue;
+            }
+            String name = parser.getName();
+            if (TAG_LAYOUT.equals(name)) {
+                inLayout = true;
+            } else if (TAG_SLOT.equals(name) && inLayout) {
+                slots.add(parseSlot(parser));
+            } else {
+                throw new IllegalArgumentException(
+                        "Unexpected <" + name + "> " + parser.getPositionDescription());
+            }
+        }
+
+        if (slots.size() > ComplicationHitIndex.MAX_SLOTS) {
+            throw new IllegalArgumentException(
+                    "At most " + ComplicationHitIndex.MAX_SLOTS + " slots are supported.");
+        }
+        return new ComplicationLayout(slots);
+    }
+
+    private static Slot parseSlot(XmlPullParser parser) {
+        Slot slot = new Slot();
+        slot.mId = Integer.parseInt(getRequiredAttribute(parser, "id"));
+
+        String shape = getRequiredAttribute(parser, "shape");
+        if ("fill".equals(shape)) {
+            slot.mShape = SHAPE_FILL;
+            return slot;
+        } else if ("circle".equals(shape)) {
+            slot.mShape = SHAPE_CIRCLE;
+        } else if ("rectangle".equals(shape)) {
+            slot.mShape = SHAPE_RECTANGLE;
+            String aspectRatio = parser.getAttributeValue(null, "aspectRatio");
+            if (aspectRatio != null) {
+                slot.mAspectRatio = Float.parseFloat(aspectRatio);
+            }
+        } else {
+            throw new IllegalArgumentException(
+                    "Unknown slot shape \"" + shape + "\" " + parser.getPositionDescription());
+        }
+
+        slot.mCenterX = Float.parseFloat(getRequiredAttribute(parser, "centerX"));
+        slot.mCenterY = Float.parseFloat(getRequiredAttribute(parser, "centerY"));
+        slot.mSize = Float.parseFloat(getRequiredAttribute(parser, "size"));
+        return slot;
+    }
+
+    private static String getRequiredAttribute(XmlPullParser parser, String name) {
+        String value = parser.getAttributeValue(null, name);
+        if (value == null) {
+            throw new IllegalArgumentException(
+                    "Missing attribute " + name + " " + parser.getPositionDescription());
+        }
+        return value;
+    }
+
+    public int getSlotCount() {
+        return mIds.length;
+    }
+
+    public int getId(int slot) {
+        return mIds[slot];
+    }
+
+    /**
+     * Returns the pixel bounds of all slots for a screen.
+     *
+     * @param round       Whether the screen is round. Slots are then moved towards the center until
+     *                    they lie within the screen circle.
+     * @param chinHeight  Height of the cut-off part at the bottom of the screen, if any. Slots
+     *                    reaching into it are moved up.
+     */
+    public CompiledComplicationLayout compile(int width, int height, boolean round,
+            int chinHeight) {
+        long key = getCacheKey(width, height, round, chinHeight);
+        CompiledComplicationLayout compiled = mCompiled.get(key);
+        if (compiled == null) {
+            compiled = compileBounds(width, height, round, chinHeight);
+            mCompiled.put(key, compiled);
+        }
+        return compiled;
+    }
+
+    private CompiledComplicationLayout compileBounds(int width, int height, boolean round,
+            int chinHeight) {
+        int count = mIds.length;
+        int[] left = new int[count];
+        int[] top = new int[count];
+        int[] right = new int[count];
+        int[] bottom = new int[count];
+
+        ComplicationBounds.compute(mShapes, mCenterX, mCenterY, mSize, mAspectRatio, width,
+                height, round, chinHeight, left, top, right, bottom);
+
+        return new CompiledComplicationLayout(width, height, mIds, mShapes, left, top, right,
+                bottom);
+    }
+
+    private static long getCacheKey(int width, int height, boolean round, int chinHeight) {
+        return (width & 0xFFFFL) | (height & 0xFFFFL) << 16 | (chinHeight & 0xFFFFL) << 32
+                | (round ? 1L << 48 : 0);
+    }
+
+    private static final class Slot {
+        private int mId;
+        private int mShape;
+        private float mCenterX;
+        private float mCenterY;
+        private float mSize;
+        private float mAspectRatio = 1f;
+    }
+}
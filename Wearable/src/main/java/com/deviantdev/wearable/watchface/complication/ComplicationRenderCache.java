@@ -0,0 +1,210 @@
+package com.deviantdev.wearable.watchface.complication;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.ComplicationText;
+import android.support.wearable.complications.rendering.ComplicationDrawable;
+import android.util.SparseArray;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the last rendering of every complication slot in a bitmap of the slot's size.
+ *
+ * {@link ComplicationDrawable#draw(Canvas, long)} lays out texts, icons and ranged value arcs on
+ * every call, although the result usually changes at most once a minute. A slot is rendered again
+ * only when its key changes:
+ * <ul>
+ * <li>the data version of the slot (see {@link ComplicationUpdateFilter#getVersion(int)}),</li>
+ * <li>the ambient, low-bit and burn-in state,</li>
+ * <li>the slot bounds,</li>
+ * <li>whether the data is active at the current time, and</li>
+ * <li>for data with time-dependent texts (countdowns, relative times), the current second.</li>
+ * </ul>
+ * The drawable invalidates itself when it changes for other reasons, e.g. once an icon has been
+ * loaded in the background; its callback must pass that on to {@link #invalidate(int)}.
+ */
+public class ComplicationRenderCache {
+
+    private static final long TIME_DEPENDENT_TEXT_RESOLUTION_MS = TimeUnit.SECONDS.toMillis(1);
+
+    /*
+     * After a tap, ComplicationDrawable shows a highlight for this long. The slot is drawn
+     * directly meanwhile, so the highlight appears and disappears on time.
+     */
+    public static final long TAP_HIGHLIGHT_DURATION_MS = 300;
+
+    private static final int STATE_AMBIENT = 1;
+    private static final int STATE_LOW_BIT_AMBIENT = 1 << 1;
+    private static final int STATE_BURN_IN_PROTECTION = 1 << 2;
+
+    private final SparseArray<Slot> mSlots = new SparseArray<>();
+
+    private int mRenderState;
+
+    public void setRenderState(boolean ambient, boolean lowBitAmbient, boolean burnInProtection) {
+        mRenderState = (ambient ? STATE_AMBIENT : 0)
+                | (lowBitAmbient ? STATE_LOW_BIT_AMBIENT : 0)
+                | (burnInProtection ? STATE_BURN_IN_PROTECTION : 0);
+    }
+
+    /**
+     * Forces every slot to be rendered again, e.g. after the complication colors changed.
+     */
+    public void invalidateAll() {
+        for (int index = 0; index < mSlots.size(); index++) {
+            mSlots.valueAt(index).mValid = false;
+        }
+    }
+
+    /**
+     * Renders the slot again on its next draw, e.g. after its drawable finished loading an icon.
+     */
+    public void invalidate(int complicationId) {
+        Slot slot = mSlots.get(complicationId);
+        if (slot != null) {
+            slot.mValid = false;
+        }
+    }
+
+    /**
+     * Draws the slot straight from its drawable until the tap highlight is over.
+     */
+    public void onTap(int complicationId, long currentTimeMillis) {
+        Slot slot = getSlot(complicationId);
+        slot.mHighlightUntilMillis = currentTimeMillis + TAP_HIGHLIGHT_DURATION_MS;
+        slot.mValid = false;
+    }
+
+    /**
+     * Draws a complication, re-rendering its cached bitmap first if the slot's key changed.
+     */
+    public void draw(Canvas canvas, int complicationId, ComplicationDrawable drawable,
+            ComplicationData data, long dataVersion, long currentTimeMillis) {
+        // Without data ComplicationDrawable draws nothing.
+        if (data == null || data.getType() == ComplicationData.TYPE_EMPTY) {
+            return;
+        }
+
+        Rect bounds = drawable.getBounds();
+        if (bounds.isEmpty()) {
+            return;
+        }
+
+        Slot slot = getSlot(complicationId);
+
+        if (currentTimeMillis < slot.mHighlightUntilMillis) {
+            drawable.draw(canvas, currentTimeMillis);
+            return;
+        }
+
+        long timeKey = getTimeKey(data, currentTimeMillis);
+        if (!slot.matches(bounds, dataVersion, mRenderState, timeKey)) {
+            slot.render(drawable, bounds, currentTimeMillis);
+            slot.mDataVersion = dataVersion;
+            slot.mRenderState = mRenderState;
+            slot.mTimeKey = timeKey;
+            slot.mValid = true;
+        }
+
+        canvas.drawBitmap(slot.mBitmap, bounds.left, bounds.top, null);
+    }
+
+    public void release() {
+        for (int index = 0; index < mSlots.size(); index++) {
+            mSlots.valueAt(index).release();
+        }
+        mSlots.clear();
+    }
+
+    private Slot getSlot(int complicationId) {
+        Slot slot = mSlots.get(complicationId);
+        if (slot == null) {
+            slot = new Slot();
+            mSlots.put(complicationId, slot);
+        }
+        return slot;
+    }
+
+    /*
+     * Data that is not active is not drawn, so crossing its start or end time changes the output.
+     * Time-dependent texts additionally change with every second.
+     */
+    private static long getTimeKey(ComplicationData data, long currentTimeMillis) {
+        long activeKey = data.isActive(currentTimeMillis) ? 1 : 0;
+        if (!hasTimeDependentText(data)) {
+            return activeKey;
+        }
+        return (currentTimeMillis / TIME_DEPENDENT_TEXT_RESOLUTION_MS) * 2 + activeKey;
+    }
+
+    static boolean hasTimeDependentText(ComplicationData data) {
+        int type = data.getType();
+        if (ComplicationDataComparator.hasShortText(type)
+                && (isTimeDependent(data.getShortText())
+                || isTimeDependent(data.getShortTitle()))) {
+            return true;
+        }
+        return ComplicationDataComparator.hasLongText(type)
+                && (isTimeDependent(data.getLongText()) || isTimeDependent(data.getLongTitle()));
+    }
+
+    private static boolean isTimeDependent(ComplicationText text) {
+        return text != null && text.isTimeDependent();
+    }
+
+    private static final class Slot {
+        private final Canvas mCanvas = new Canvas();
+        private Bitmap mBitmap;
+
+        private boolean mValid;
+        private int mLeft;
+        private int mTop;
+        private long mDataVersion;
+        private int mRenderState;
+        private long mTimeKey;
+        private long mHighlightUntilMillis;
+
+        private boolean matches(Rect bounds, long dataVersion, int renderState, long timeKey) {
+            return mValid && mBitmap != null
+                    && mLeft == bounds.left && mTop == bounds.top
+                    && mBitmap.getWidth() == bounds.width()
+                    && mBitmap.getHeight() == bounds.height()
+                    && mDataVersion == dataVersion
+                    && mRenderState == renderState
+                    && mTimeKey == timeKey;
+        }
+
+        private void render(ComplicationDrawable drawable, Rect bounds, long currentTimeMillis) {
+            if (mBitmap == null || mBitmap.getWidth() != bounds.width()
+                    || mBitmap.getHeight() != bounds.height()) {
+                release();
+                mBitmap = Bitmap.createBitmap(bounds.width(), bounds.height(),
+                        Bitmap.Config.ARGB_8888);
+                mCanvas.setBitmap(mBitmap);
+            } else {
+                mBitmap.eraseColor(0);
+            }
+
+            // The drawable's bounds are in surface coordinates.
+            mCanvas.save();
+            mCanvas.translate(-bounds.left, -bounds.top);
+            drawable.draw(mCanvas, currentTimeMillis);
+            mCanvas.restore();
+
+            mLeft = bounds.left;
+            mTop = bounds.top;
+        }
+
+        private void release() {
+            if (mBitmap != null) {
+                mCanvas.setBitmap(null);
+                mBitmap.recycle();
+                mBitmap = null;
+            }
+            mValid = false;
+        }
+    }
+}
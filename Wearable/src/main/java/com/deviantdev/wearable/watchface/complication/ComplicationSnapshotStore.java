@@ -0,0 +1,343 @@
+package com.deviantdev.wearable.watchface.complication;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Parcel;
+import android.os.Process;
+import android.support.wearable.complications.ComplicationData;
+import android.util.AtomicFile;
+import android.util.Log;
+import android.util.SparseArray;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps a compact on-disk snapshot of the most recent {@link ComplicationData} of every slot, so
+ * a restarted watch face can show its complications right away instead of waiting for every
+ * provider to answer again.
+ *
+ * The snapshot is read, and updates are written in one debounced batch, on a background thread.
+ * Updates are collected in memory in between.
+ * Tap actions are not saved (they cannot outlive the process); they come back with the live data,
+ * which replaces the snapshot as it arrives. The file is written with {@link Parcel}, whose format
+ * is tied to the platform version, so snapshots from another platform version are discarded.
+ */
+public class ComplicationSnapshotStore {
+
+    private static final String TAG = "ComplicationSnapshot";
+
+    private static final String FILE_NAME = "complication_snapshot.bin";
+
+    private static final int MAGIC = 0x44444353; // "DDCS"
+    private static final int FORMAT_VERSION = 1;
+
+    private static final long WRITE_DELAY_MS = TimeUnit.SECONDS.toMillis(2);
+
+    /* Entries older than this are not worth showing, even if they never expire on their own. */
+    private static final long MAX_SNAPSHOT_AGE_MS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Notified on the main thread with the entries of the snapshot that are still valid.
+     */
+    public interface Listener {
+        void onSnapshotLoaded(SparseArray<ComplicationData> snapshot);
+    }
+
+    private final AtomicFile mFile;
+
+    private final HandlerThread mWriterThread;
+    private final Handler mWriterHandler;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private final Object mLock = new Object();
+    // Guarded by mLock.
+    private final SparseArray<Entry> mEntries = new SparseArray<>();
+    // Set when the entries changed since the last write.
+    private final AtomicBoolean mDirty = new AtomicBoolean();
+
+    private final Runnable mWriteRunnable = new Runnable() {
+        @Override
+        public void run() {
+            write();
+        }
+    };
+
+    public ComplicationSnapshotStore(Context context) {
+        mFile = new AtomicFile(new File(context.getNoBackupFilesDir(), FILE_NAME));
+
+        mWriterThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        mWriterThread.start();
+        mWriterHandler = new Handler(mWriterThread.getLooper());
+    }
+
+    /**
+     * Reads the snapshot in one go on the background thread and passes the entries that are still
+     * valid at the given time to the listener. Entries whose data ended or that are too old are
+     * dropped, and so are slots saved since this store was created: their data is newer.
+     */
+    public void load(final long currentTimeMillis, final Listener listener) {
+        mWriterHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                final SparseArray<ComplicationData> snapshot = read(currentTimeMillis);
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        listener.onSnapshotLoaded(snapshot);
+                    }
+                });
+            }
+        });
+    }
+
+    private SparseArray<ComplicationData> read(long currentTimeMillis) {
+        SparseArray<ComplicationData> result = new SparseArray<>();
+
+        byte[] bytes;
+        try {
+            bytes = mFile.readFully();
+        } catch (FileNotFoundException e) {
+            return result;
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read complication snapshot.", e);
+            return result;
+        }
+
+        try {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION
+                    || input.readInt() != Build.VERSION.SDK_INT) {
+                return result;
+            }
+
+            int count = input.readInt();
+            for (int index = 0; index < count; index++) {
+                int complicationId = input.readInt();
+                long savedAtMillis = input.readLong();
+                byte[] data = new byte[input.readInt()];
+                input.readFully(data);
+
+                if (currentTimeMillis - savedAtMillis > MAX_SNAPSHOT_AGE_MS) {
+                    continue;
+                }
+                ComplicationData complicationData = unmarshall(data);
+                if (complicationData == null
+                        || complicationData.getEndDateTimeMillis() <= currentTimeMillis) {
+                    continue;
+                }
+
+                synchronized (mLock) {
+                    if (mEntries.indexOfKey(complicationId) >= 0) {
+                        continue;
+                    }
+                    mEntries.put(complicationId, new Entry(savedAtMillis, null, data));
+                }
+                result.put(complicationId, complicationData);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Discarding corrupt complication snapshot.", e);
+            result.clear();
+        }
+        return result;
+    }
+
+    /**
+     * Records the latest data of a slot. The snapshot is written shortly after the last change.
+     */
+    public void save(int complicationId, ComplicationData data, long currentTimeMillis) {
+        synchronized (mLock) {
+            // Marshalled by the writer thread. Slots without content are kept as empty entries,
+            // which are not written, so a snapshot still being loaded does not bring them back.
+            mEntries.put(complicationId,
+                    new Entry(currentTimeMillis, hasContent(data) ? data : null, null));
+        }
+        mDirty.set(true);
+
+        mWriterHandler.removeCallbacks(mWriteRunnable);
+        mWriterHandler.postDelayed(mWriteRunnable, WRITE_DELAY_MS);
+    }
+
+    /**
+     * Writes any pending changes right away and stops the writer thread.
+     */
+    public void release() {
+        mMainHandler.removeCallbacksAndMessages(null);
+        mWriterHandler.removeCallbacks(mWriteRunnable);
+        mWriterHandler.post(mWriteRunnable);
+        mWriterThread.quitSafely();
+    }
+
+    /* Writes any pending changes and blocks until all background work is done. For tests. */
+    void awaitBackgroundWork() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        mWriterHandler.removeCallbacks(mWriteRunnable);
+        mWriterHandler.post(mWriteRunnable);
+        mWriterHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        done.await();
+    }
+
+    private void write() {
+        if (!mDirty.getAndSet(false)) {
+            return;
+        }
+
+        // Only the entry list is copied under the lock; save() takes it on the main thread.
+        int[] ids;
+        Entry[] entries;
+        synchronized (mLock) {
+            int size = mEntries.size();
+            ids = new int[size];
+            entries = new Entry[size];
+            for (int index = 0; index < size; index++) {
+                ids[index] = mEntries.keyAt(index);
+                entries[index] = mEntries.valueAt(index);
+            }
+        }
+
+        // Entries are replaced, never changed, by save(), so they can be marshalled unlocked.
+        int count = 0;
+        for (Entry entry : entries) {
+            if (entry.getBytes() != null) {
+                count++;
+            }
+        }
+
+        FileOutputStream stream = null;
+        try {
+            stream = mFile.startWrite();
+            DataOutputStream output = new DataOutputStream(stream);
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeInt(Build.VERSION.SDK_INT);
+
+            output.writeInt(count);
+            for (int index = 0; index < entries.length; index++) {
+                byte[] bytes = entries[index].getBytes();
+                if (bytes == null) {
+                    continue;
+                }
+                output.writeInt(ids[index]);
+                output.writeLong(entries[index].mSavedAtMillis);
+                output.writeInt(bytes.length);
+                output.write(bytes);
+            }
+
+            output.flush();
+            mFile.finishWrite(stream);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write complication snapshot.", e);
+            mFile.failWrite(stream);
+        }
+    }
+
+    private static boolean hasContent(ComplicationData data) {
+        int type = data.getType();
+        return type != ComplicationData.TYPE_EMPTY && type != ComplicationData.TYPE_NO_DATA
+                && type != ComplicationData.TYPE_NOT_CONFIGURED;
+    }
+
+    /*
+     * Copies all fields valid for the type except the tap action, which holds a binder. Data that
+     * still cannot be marshalled (e.g. images shared through a file descriptor) is not saved.
+     */
+    private static byte[] marshallWithoutTapAction(ComplicationData data) {
+        int type = data.getType();
+        ComplicationData.Builder builder = new ComplicationData.Builder(type);
+
+        if (ComplicationDataComparator.hasRangedValue(type)) {
+            builder.setValue(data.getValue())
+                    .setMinValue(data.getMinValue())
+                    .setMaxValue(data.getMaxValue());
+        }
+        if (ComplicationDataComparator.hasShortText(type)) {
+            if (data.getShortText() != null) {
+                builder.setShortText(data.getShortText());
+            }
+            if (data.getShortTitle() != null) {
+                builder.setShortTitle(data.getShortTitle());
+            }
+        }
+        if (ComplicationDataComparator.hasLongText(type)) {
+            if (data.getLongText() != null) {
+                builder.setLongText(data.getLongText());
+            }
+            if (data.getLongTitle() != null) {
+                builder.setLongTitle(data.getLongTitle());
+            }
+        }
+        if (ComplicationDataComparator.hasIcon(type)) {
+            if (data.getIcon() != null) {
+                builder.setIcon(data.getIcon());
+            }
+            if (data.getBurnInProtectionIcon() != null) {
+                builder.setBurnInProtectionIcon(data.getBurnInProtectionIcon());
+            }
+        }
+        if (ComplicationDataComparator.hasSmallImage(type) && data.getSmallImage() != null) {
+            builder.setSmallImage(data.getSmallImage()).setImageStyle(data.getImageStyle());
+        }
+        if (ComplicationDataComparator.hasLargeImage(type) && data.getLargeImage() != null) {
+            builder.setLargeImage(data.getLargeImage());
+        }
+        builder.setStartDateTimeMillis(data.getStartDateTimeMillis())
+                .setEndDateTimeMillis(data.getEndDateTimeMillis());
+
+        try {
+            return ComplicationDataComparator.marshall(builder.build());
+        } catch (IllegalStateException e) {
+            // A field required by the type was missing.
+            return null;
+        }
+    }
+
+    private static ComplicationData unmarshall(byte[] bytes) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            parcel.unmarshall(bytes, 0, bytes.length);
+            parcel.setDataPosition(0);
+            return ComplicationData.CREATOR.createFromParcel(parcel);
+        } catch (RuntimeException e) {
+            return null;
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private static final class Entry {
+        private final long mSavedAtMillis;
+        private ComplicationData mData;
+        private byte[] mBytes;
+
+        private Entry(long savedAtMillis, ComplicationData data, byte[] bytes) {
+            mSavedAtMillis = savedAtMillis;
+            mData = data;
+            mBytes = bytes;
+        }
+
+        /* Returns the marshalled data, or null if it cannot be saved. Writer thread only. */
+        private byte[] getBytes() {
+            if (mBytes == null && mData != null) {
+                mBytes = marshallWithoutTapAction(mData);
+                mData = null;
+            }
+            return mBytes;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.deviantdev.wearable.watchface.complication;
+
+import android.support.wearable.complications.ComplicationData;
+import android.util.SparseArray;
+
+import java.io.PrintWriter;
+
+/**
+ * Decides whether an incoming complication update changes anything on screen, and counts applied
+ * and suppressed updates per complication slot.
+ *
+ * Every applied update bumps the slot's data version, which lets caches keyed on the rendered
+ * content tell when a slot needs to be drawn again.
+ */
+public class ComplicationUpdateFilter {
+
+    private static final int APPLIED = 0;
+    private static final int SUPPRESSED = 1;
+    private static final int VERSION = 2;
+
+    // Per complication id: applied count, suppressed count and data version.
+    private final SparseArray<long[]> mSlotCounters = new SparseArray<>();
+
+    /**
+     * Returns true if the new data differs from the current data of the slot and should be
+     * applied, false if the update is a no-op.
+     */
+    public boolean shouldApply(int complicationId, ComplicationData currentData,
+            ComplicationData newData) {
+        long[] counters = getCounters(complicationId);
+
+        if (currentData != null && ComplicationDataComparator.contentEquals(currentData, newData)) {
+            counters[SUPPRESSED]++;
+            return false;
+        }
+
+        counters[APPLIED]++;
+        counters[VERSION]++;
+        return true;
+    }
+
+    public long getVersion(int complicationId) {
+        return getCounters(complicationId)[VERSION];
+    }
+
+    public long getAppliedCount(int complicationId) {
+        return getCounters(complicationId)[APPLIED];
+    }
+
+    public long getSuppressedCount(int complicationId) {
+        return getCounters(complicationId)[SUPPRESSED];
+    }
+
+    public void dump(PrintWriter writer) {
+        writer.println("Complication updates:");
+        for (int index = 0; index < mSlotCounters.size(); index++) {
+            long[] counters = mSlotCounters.valueAt(index);
+            writer.println("  id=" + mSlotCounters.keyAt(index) + " applied=" + counters[APPLIED]
+                    + " suppressed=" + counters[SUPPRESSED]);
+        }
+    }
+
+    private long[] getCounters(int complicationId) {
+        long[] counters = mSlotCounters.get(complicationId);
+        if (counters == null) {
+            counters = new long[3];
+            mSlotCounters.put(complicationId, counters);
+        }
+        return counters;
+    }
+}
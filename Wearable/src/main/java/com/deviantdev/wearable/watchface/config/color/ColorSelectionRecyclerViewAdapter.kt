@@ -81,9 +81,7 @@ class ColorSelectionRecyclerViewAdapter (private val mColorOptionsDataSet: Array
 
             val activity = view.context as Activity
 
-            val watchFacePreferences = WatchFacePreferences(view.context)
-            watchFacePreferences.backgroundColor = color
-            watchFacePreferences.commitChangedPreferences(view.context)
+            WatchFacePreferences.getInstance(view.context).backgroundColor = color
 
             // Let's Complication Config Activity know there was an update to colors.
             activity.setResult(Activity.RESULT_OK)
@@ -10,6 +10,7 @@ import com.deviantdev.wearable.watchface.R
 import com.deviantdev.wearable.watchface.model.AnalogComplicationConfigData.BackgroundComplicationConfigItem
 import com.deviantdev.wearable.watchface.model.AnalogComplicationConfigData.ColorConfigItem
 import com.deviantdev.wearable.watchface.model.AnalogComplicationConfigData.ConfigItemType
+import com.deviantdev.wearable.watchface.model.AnalogComplicationConfigData.FrameRateConfigItem
 import com.deviantdev.wearable.watchface.model.AnalogComplicationConfigData.MoreOptionsConfigItem
 import com.deviantdev.wearable.watchface.model.AnalogComplicationConfigData.PreviewAndComplicationsConfigItem
 import com.deviantdev.wearable.watchface.model.AnalogComplicationConfigData.UnreadNotificationConfigItem
@@ -20,7 +21,7 @@ import java.util.*
  * (highlight color [second arm], background color, unread notifications, etc.).
  *
  * All appearance settings are saved via [SharedPreferences].
- * Layouts provided by this adapter are split into 5 main view types.
+ * Layouts provided by this adapter are split into 6 main view types.
  */
 class AnalogComplicationConfigRecyclerViewAdapter(private val mContext: Context,
         private val watchFaceServiceClass: Class<*>,
@@ -55,6 +56,10 @@ class AnalogComplicationConfigRecyclerViewAdapter(private val mContext: Context,
             TYPE_BACKGROUND_COMPLICATION_IMAGE_CONFIG -> BackgroundComplicationViewHolder(
                     LayoutInflater.from(parent.context).inflate(
                             R.layout.config_list_background_complication_item, parent, false))
+
+            TYPE_FRAME_RATE_CONFIG -> FrameRateViewHolder(
+                    LayoutInflater.from(parent.context).inflate(
+                            R.layout.config_list_frame_rate_item, parent, false))
             else -> null
         }
     }
@@ -121,6 +126,14 @@ class AnalogComplicationConfigRecyclerViewAdapter(private val mContext: Context,
                 backgroundComplicationViewHolder.setIcon(backgroundIconResourceId)
                 backgroundComplicationViewHolder.setName(backgroundName)
             }
+
+            TYPE_FRAME_RATE_CONFIG -> {
+                val frameRateViewHolder = viewHolder as FrameRateViewHolder
+                val frameRateConfigItem = configItemType as FrameRateConfigItem
+
+                frameRateViewHolder.setIcon(frameRateConfigItem.iconResourceId)
+                frameRateViewHolder.setModeLabels(frameRateConfigItem.modeLabels)
+            }
         }
     }
 
@@ -152,6 +165,7 @@ class AnalogComplicationConfigRecyclerViewAdapter(private val mContext: Context,
         val TYPE_COLOR_CONFIG = 2
         val TYPE_UNREAD_NOTIFICATION_CONFIG = 3
         val TYPE_BACKGROUND_COMPLICATION_IMAGE_CONFIG = 4
+        val TYPE_FRAME_RATE_CONFIG = 5
 
         private val TAG = "CompConfigAdapter"
     }
@@ -30,7 +30,7 @@ import com.deviantdev.wearable.watchface.config.color.ColorSelectionActivity
 class PreviewAndComplicationsViewHolder(view: View) : RecyclerView.ViewHolder(view),
         View.OnClickListener {
 
-    private val watchFacePreferences = WatchFacePreferences(view.context)
+    private val watchFacePreferences = WatchFacePreferences.getInstance(view.context)
 
     private val mWatchFaceArmsAndTicksView: View = view.findViewById(R.id.watch_face_arms_and_ticks)
     private val mWatchFaceHighlightPreviewView: View = view.findViewById(R.id.watch_face_highlight)
@@ -78,7 +78,6 @@ class PreviewAndComplicationsViewHolder(view: View) : RecyclerView.ViewHolder(vi
     }
 
     internal fun updateWatchFaceColors(context: Context) {
-        watchFacePreferences.reloadSavedPreferences(context)
         mWatchFaceBackgroundPreviewImageView.background.colorFilter = PorterDuffColorFilter(
                 watchFacePreferences.backgroundColor, PorterDuff.Mode.SRC_ATOP)
 
@@ -264,11 +263,10 @@ class UnreadNotificationViewHolder(view: View) : RecyclerView.ViewHolder(view),
         val position = adapterPosition
         Log.d(TAG, "Complication onClick() position: " + position)
 
-        val watchFacePreferences = WatchFacePreferences(view.context)
+        val watchFacePreferences = WatchFacePreferences.getInstance(view.context)
 
         // Since user clicked on a switch, new state should be opposite of current state.
         watchFacePreferences.unreadNotifications = !watchFacePreferences.unreadNotifications
-        watchFacePreferences.commitChangedPreferences(view.context)
 
         updateIcon(view.context, watchFacePreferences.unreadNotifications)
     }
@@ -319,4 +317,49 @@ class BackgroundComplicationViewHolder(view: View) : RecyclerView.ViewHolder(vie
     companion object {
         val TAG = ColorPickerViewHolder::class.java.simpleName!!
     }
+}
+
+/**
+ * Displays the second hand frame rate mode. Each tap switches to the next
+ * [com.deviantdev.wearable.watchface.render.FrameScheduler] mode.
+ */
+class FrameRateViewHolder(view: View) : RecyclerView.ViewHolder(view), View.OnClickListener {
+
+    private val mFrameRateButton: Button = view.findViewById(R.id.frame_rate_button)
+
+    private var mModeLabels: Array<String> = emptyArray()
+
+    init {
+        view.setOnClickListener(this)
+    }
+
+    fun setIcon(resourceId: Int) {
+        mFrameRateButton.setCompoundDrawablesWithIntrinsicBounds(
+                mFrameRateButton.context.getDrawable(resourceId), null, null, null)
+    }
+
+    fun setModeLabels(modeLabels: Array<String>) {
+        mModeLabels = modeLabels
+        updateLabel(WatchFacePreferences.getInstance(mFrameRateButton.context).frameRateMode)
+    }
+
+    private fun updateLabel(mode: Int) {
+        if (mode in mModeLabels.indices) {
+            mFrameRateButton.text = mModeLabels[mode]
+        }
+    }
+
+    override fun onClick(view: View) {
+        val position = adapterPosition
+        Log.d(TAG, "Frame rate onClick() position: " + position)
+
+        val watchFacePreferences = WatchFacePreferences.getInstance(view.context)
+        watchFacePreferences.frameRateMode = (watchFacePreferences.frameRateMode + 1) % mModeLabels.size
+
+        updateLabel(watchFacePreferences.frameRateMode)
+    }
+
+    companion object {
+        val TAG = FrameRateViewHolder::class.java.simpleName!!
+    }
 }
\ No newline at end of file
@@ -0,0 +1,99 @@
+package com.deviantdev.wearable.watchface.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, lock-free histogram of durations in microseconds.
+ *
+ * Buckets are log-linear: every power of two is split into four buckets, so any recorded value is
+ * reported with at most 25% error. Recording never allocates and may happen on any thread.
+ */
+public class FrameHistogram {
+
+    static final int BUCKET_COUNT = 64;
+
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mOverBudgetCount = new AtomicLong();
+
+    private final long mBudgetMicros;
+
+    /**
+     * @param budgetMicros Durations above this are counted as over budget.
+     */
+    public FrameHistogram(long budgetMicros) {
+        mBudgetMicros = budgetMicros;
+    }
+
+    public void record(long durationMicros) {
+        if (durationMicros < 0) {
+            durationMicros = 0;
+        }
+        mBuckets.incrementAndGet(getBucketIndex(durationMicros));
+        mCount.incrementAndGet();
+        if (durationMicros > mBudgetMicros) {
+            mOverBudgetCount.incrementAndGet();
+        }
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+
+    public long getOverBudgetCount() {
+        return mOverBudgetCount.get();
+    }
+
+    /**
+     * Returns the upper bound, in microseconds, of the bucket holding the given percentile
+     * (0-100), or 0 if nothing was recorded.
+     */
+    public long getPercentileMicros(double percentile) {
+        long count = mCount.get();
+        if (count == 0) {
+            return 0;
+        }
+
+        // The 0th percentile is the smallest recorded value, not an empty bucket before it.
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100d * count));
+        long seen = 0;
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            seen += mBuckets.get(index);
+            if (seen >= rank) {
+                return getBucketUpperBound(index);
+            }
+        }
+        return getBucketUpperBound(BUCKET_COUNT - 1);
+    }
+
+    public void reset() {
+        for (int index = 0; index < BUCKET_COUNT; index++) {
+            mBuckets.set(index, 0);
+        }
+        mCount.set(0);
+        mOverBudgetCount.set(0);
+    }
+
+    static int getBucketIndex(long micros) {
+        if (micros < SUB_BUCKET_COUNT) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) ((micros >> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1));
+        int index = SUB_BUCKET_COUNT * (exponent - 1) + subBucket;
+        return Math.min(index, BUCKET_COUNT - 1);
+    }
+
+    static long getBucketUpperBound(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index + 1;
+        }
+        int exponent = index / SUB_BUCKET_COUNT + 1;
+        int subBucket = index % SUB_BUCKET_COUNT;
+        return (long) (SUB_BUCKET_COUNT + subBucket + 1) << (exponent - SUB_BUCKET_BITS);
+    }
+}
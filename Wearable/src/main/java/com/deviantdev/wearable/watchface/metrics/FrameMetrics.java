@@ -0,0 +1,179 @@
+package com.deviantdev.wearable.watchface.metrics;
+
+import android.os.Trace;
+
+import com.deviantdev.wearable.watchface.power.PowerGovernor;
+
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-stage frame timings of the watch face engine, split by interactive and ambient mode, and
+ * the latency from a tap to the first frame showing its feedback. The current rendering tier of
+ * the {@link PowerGovernor} is reported alongside, as it explains changes in frame cost.
+ *
+ * Each stage is wrapped in an {@link Trace} section and its duration is recorded into a
+ * {@link FrameHistogram}. Results are printed by {@code adb shell dumpsys activity service
+ * WatchFaceService} and can be read programmatically through {@link #snapshot()}.
+ */
+public class FrameMetrics {
+
+    public static final int MODE_INTERACTIVE = 0;
+    public static final int MODE_AMBIENT = 1;
+    private static final int MODE_COUNT = 2;
+
+    public static final int STAGE_FRAME = 0;
+    public static final int STAGE_BACKGROUND = 1;
+    public static final int STAGE_COMPLICATIONS = 2;
+    public static final int STAGE_UNREAD_NOTIFICATION_ICON = 3;
+    public static final int STAGE_WATCH_FACE = 4;
+    private static final int STAGE_COUNT = 5;
+
+    /* A frame should fit into a single vsync at 60 Hz. */
+    public static final long FRAME_BUDGET_MICROS = 16_667;
+
+    private static final String[] MODE_NAMES = {"interactive", "ambient"};
+
+    private static final String[] STAGE_NAMES = {
+            "frame", "drawBackground", "drawComplications", "drawUnreadNotificationIcon",
+            "drawWatchFace"};
+
+    private static final String[] TRACE_SECTIONS = {
+            "WatchFace#onDraw", "WatchFace#drawBackground", "WatchFace#drawComplications",
+            "WatchFace#drawUnreadNotificationIcon", "WatchFace#drawWatchFace"};
+
+    private final FrameHistogram[][] mHistograms = new FrameHistogram[MODE_COUNT][STAGE_COUNT];
+    private final FrameHistogram mTapLatency = new FrameHistogram(FRAME_BUDGET_MICROS);
+    private volatile int mPowerTier = PowerGovernor.TIER_FULL;
+
+    public FrameMetrics() {
+        for (int mode = 0; mode < MODE_COUNT; mode++) {
+            for (int stage = 0; stage < STAGE_COUNT; stage++) {
+                // Only whole frames have a budget; stages are reported for their distribution.
+                long budgetMicros = (stage == STAGE_FRAME) ? FRAME_BUDGET_MICROS : Long.MAX_VALUE;
+                mHistograms[mode][stage] = new FrameHistogram(budgetMicros);
+            }
+        }
+    }
+
+    /**
+     * Opens the trace section for a stage and returns its start time, to be passed to
+     * {@link #endStage(int, int, long)}.
+     */
+    public long beginStage(int stage) {
+        Trace.beginSection(TRACE_SECTIONS[stage]);
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the duration of a stage started with {@link #beginStage(int)} and closes its trace
+     * section. Returns the duration in microseconds.
+     */
+    public long endStage(int mode, int stage, long startNanos) {
+        long durationMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        mHistograms[mode][stage].record(durationMicros);
+        Trace.endSection();
+        return durationMicros;
+    }
+
+    /**
+     * Records the time from a tap event to the start of the frame that shows its feedback.
+     */
+    public void recordTapLatency(long latencyMicros) {
+        mTapLatency.record(latencyMicros);
+    }
+
+    /**
+     * Records the rendering tier the engines currently use, see {@link PowerGovernor#getTier()}.
+     */
+    public void setPowerTier(int tier) {
+        mPowerTier = tier;
+    }
+
+    public void reset() {
+        for (int mode = 0; mode < MODE_COUNT; mode++) {
+            for (int stage = 0; stage < STAGE_COUNT; stage++) {
+                mHistograms[mode][stage].reset();
+            }
+        }
+        mTapLatency.reset();
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    public void dump(PrintWriter writer) {
+        Snapshot snapshot = snapshot();
+
+        writer.println("Frame metrics (microseconds, budget " + FRAME_BUDGET_MICROS + "):");
+        for (int mode = 0; mode < MODE_COUNT; mode++) {
+            writer.println("  " + MODE_NAMES[mode] + ":");
+            for (int stage = 0; stage < STAGE_COUNT; stage++) {
+                StageSnapshot stageSnapshot = snapshot.get(mode, stage);
+                writer.print("    " + STAGE_NAMES[stage] + ": count=" + stageSnapshot.count
+                        + " p50=" + stageSnapshot.p50Micros + " p95=" + stageSnapshot.p95Micros
+                        + " p99=" + stageSnapshot.p99Micros);
+                if (stage == STAGE_FRAME) {
+                    writer.print(" over_budget=" + stageSnapshot.overBudgetCount);
+                }
+                writer.println();
+            }
+        }
+
+        StageSnapshot tapLatency = snapshot.getTapLatency();
+        writer.println("  tap to frame: count=" + tapLatency.count + " p50=" + tapLatency.p50Micros
+                + " p95=" + tapLatency.p95Micros + " p99=" + tapLatency.p99Micros);
+        writer.println("  power tier: " + PowerGovernor.getTierName(snapshot.getPowerTier()));
+    }
+
+    /**
+     * Point-in-time copy of all stage histograms.
+     */
+    public static final class Snapshot {
+        private final StageSnapshot[][] mStages = new StageSnapshot[MODE_COUNT][STAGE_COUNT];
+        private final StageSnapshot mTapLatency;
+        private final int mPowerTier;
+
+        private Snapshot(FrameMetrics metrics) {
+            for (int mode = 0; mode < MODE_COUNT; mode++) {
+                for (int stage = 0; stage < STAGE_COUNT; stage++) {
+                    mStages[mode][stage] = new StageSnapshot(metrics.mHistograms[mode][stage]);
+                }
+            }
+            mTapLatency = new StageSnapshot(metrics.mTapLatency);
+            mPowerTier = metrics.mPowerTier;
+        }
+
+        public StageSnapshot get(int mode, int stage) {
+            return mStages[mode][stage];
+        }
+
+        public StageSnapshot getTapLatency() {
+            return mTapLatency;
+        }
+
+        public int getPowerTier() {
+            return mPowerTier;
+        }
+    }
+
+    /**
+     * Percentiles and counts of a single stage in a single mode.
+     */
+    public static final class StageSnapshot {
+        public final long count;
+        public final long overBudgetCount;
+        public final long p50Micros;
+        public final long p95Micros;
+        public final long p99Micros;
+
+        private StageSnapshot(FrameHistogram histogram) {
+            count = histogram.getCount();
+            overBudgetCount = histogram.getOverBudgetCount();
+            p50Micros = histogram.getPercentileMicros(50);
+            p95Micros = histogram.getPercentileMicros(95);
+            p99Micros = histogram.getPercentileMicros(99);
+        }
+    }
+}
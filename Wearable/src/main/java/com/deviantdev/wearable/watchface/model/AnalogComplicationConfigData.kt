@@ -80,7 +80,7 @@ object AnalogComplicationConfigData {
         }
 
     /**
-     * Includes all data to populate each of the 5 different custom
+     * Includes all data to populate each of the 6 different custom
      * [ViewHolder] types in [AnalogComplicationConfigRecyclerViewAdapter].
      */
     fun getDataToPopulateAdapter(context: Context): ArrayList<ConfigItemType> {
@@ -111,6 +111,12 @@ object AnalogComplicationConfigData {
                 R.drawable.ic_notifications_off_white_24dp)
         settingsConfigData.add(unreadNotificationsConfigItem)
 
+        // Data for second hand frame rate UX (cycles through the modes) in settings Activity.
+        val frameRateConfigItem = FrameRateConfigItem(
+                context.resources.getStringArray(R.array.config_frame_rate_mode_labels),
+                R.drawable.icn_styles)
+        settingsConfigData.add(frameRateConfigItem)
+
         // Data for background complications UX in settings Activity.
         val backgroundImageComplicationConfigItem =
                 // TODO (jewalker): Revised in another CL to support background complication.
@@ -168,6 +174,17 @@ object AnalogComplicationConfigData {
             get() = AnalogComplicationConfigRecyclerViewAdapter.TYPE_UNREAD_NOTIFICATION_CONFIG
     }
 
+    /**
+     * Data for second hand frame rate item in RecyclerView, with one label per
+     * [com.deviantdev.wearable.watchface.render.FrameScheduler] mode.
+     */
+    class FrameRateConfigItem internal constructor(val modeLabels: Array<String>, val iconResourceId: Int) :
+            ConfigItemType {
+
+        override val configType: Int
+            get() = AnalogComplicationConfigRecyclerViewAdapter.TYPE_FRAME_RATE_CONFIG
+    }
+
     /**
      * Data for background image complication picker item in RecyclerView.
      */
@@ -0,0 +1,29 @@
+package com.deviantdev.wearable.watchface.power;
+
+/**
+ * Provides the battery state to the {@link PowerGovernor}. The default implementation is
+ * {@link BroadcastBatterySource}; tests can plug in their own.
+ */
+public interface BatterySource {
+
+    int UNKNOWN_LEVEL = -1;
+
+    /**
+     * Notified whenever the battery level or charging state may have changed.
+     */
+    interface Listener {
+        void onBatteryChanged();
+    }
+
+    /**
+     * Starts delivering changes. The current state is available right after this returns.
+     */
+    void start(Listener listener);
+
+    void stop();
+
+    /** Battery level in percent, or {@link #UNKNOWN_LEVEL}. */
+    int getLevelPercent();
+
+    boolean isCharging();
+}
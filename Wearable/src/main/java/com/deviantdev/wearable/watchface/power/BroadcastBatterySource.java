@@ -0,0 +1,77 @@
+package com.deviantdev.wearable.watchface.power;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+
+/**
+ * Reads the battery state from the sticky {@link Intent#ACTION_BATTERY_CHANGED} broadcast.
+ */
+public class BroadcastBatterySource implements BatterySource {
+
+    private final Context mContext;
+
+    private Listener mListener;
+    private int mLevelPercent = UNKNOWN_LEVEL;
+    private boolean mCharging;
+
+    private final BroadcastReceiver mBatteryReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            update(intent);
+            if (mListener != null) {
+                mListener.onBatteryChanged();
+            }
+        }
+    };
+
+    public BroadcastBatterySource(Context context) {
+        mContext = context;
+    }
+
+    @Override
+    public void start(Listener listener) {
+        if (mListener != null) {
+            return;
+        }
+        mListener = listener;
+
+        // The sticky broadcast holds the current state right away.
+        Intent batteryStatus = mContext.registerReceiver(mBatteryReceiver,
+                new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (batteryStatus != null) {
+            update(batteryStatus);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (mListener == null) {
+            return;
+        }
+        mListener = null;
+        mContext.unregisterReceiver(mBatteryReceiver);
+    }
+
+    @Override
+    public int getLevelPercent() {
+        return mLevelPercent;
+    }
+
+    @Override
+    public boolean isCharging() {
+        return mCharging;
+    }
+
+    private void update(Intent batteryStatus) {
+        int level = batteryStatus.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = batteryStatus.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        mLevelPercent = (level >= 0 && scale > 0) ? level * 100 / scale : UNKNOWN_LEVEL;
+
+        int status = batteryStatus.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+        mCharging = status == BatteryManager.BATTERY_STATUS_CHARGING
+                || status == BatteryManager.BATTERY_STATUS_FULL;
+    }
+}
@@ -0,0 +1,123 @@
+package com.deviantdev.wearable.watchface.power;
+
+import java.io.PrintWriter;
+
+/**
+ * Steps the rendering quality of the interactive watch face down as the battery drains.
+ *
+ * Each tier includes the savings of the tiers before it:
+ * <ol>
+ * <li>{@link #TIER_NO_SHADOWS}: hands and ticks are drawn without shadows,</li>
+ * <li>{@link #TIER_NO_SWEEP}: the second hand ticks once a second instead of sweeping,</li>
+ * <li>{@link #TIER_FROZEN_BACKGROUND}: the background complication keeps its current image,</li>
+ * <li>{@link #TIER_AMBIENT_STYLE}: the interactive face is rendered like the ambient face.</li>
+ * </ol>
+ *
+ * A tier is entered once the level drops to its entry level and only left again once the level
+ * rises {@link #HYSTERESIS_PERCENT} above it, so a level hovering around a threshold does not make
+ * the face switch back and forth. While charging, or with an unknown level, the full quality is
+ * used.
+ */
+public class PowerGovernor implements BatterySource.Listener {
+
+    public static final int TIER_FULL = 0;
+    public static final int TIER_NO_SHADOWS = 1;
+    public static final int TIER_NO_SWEEP = 2;
+    public static final int TIER_FROZEN_BACKGROUND = 3;
+    public static final int TIER_AMBIENT_STYLE = 4;
+
+    private static final String[] TIER_NAMES = {
+            "full", "no_shadows", "no_sweep", "frozen_background", "ambient_style"};
+
+    /* Battery level in percent at or below which each tier is entered. */
+    private static final int[] TIER_ENTRY_LEVELS = {100, 40, 30, 20, 10};
+
+    static final int HYSTERESIS_PERCENT = 5;
+
+    /**
+     * Notified on the thread of the battery source when the tier changed.
+     */
+    public interface Listener {
+        void onPowerTierChanged(int tier);
+    }
+
+    private final BatterySource mBatterySource;
+    private final Listener mListener;
+
+    private int mTier = TIER_FULL;
+    private long mTierChangeCount;
+
+    public PowerGovernor(BatterySource batterySource, Listener listener) {
+        mBatterySource = batterySource;
+        mListener = listener;
+    }
+
+    /**
+     * Starts following the battery state. The tier is updated right away.
+     */
+    public void start() {
+        mBatterySource.start(this);
+        onBatteryChanged();
+    }
+
+    public void stop() {
+        mBatterySource.stop();
+    }
+
+    @Override
+    public void onBatteryChanged() {
+        int tier = getTargetTier(mTier, mBatterySource.getLevelPercent(),
+                mBatterySource.isCharging());
+        if (tier == mTier) {
+            return;
+        }
+        mTier = tier;
+        mTierChangeCount++;
+        mListener.onPowerTierChanged(tier);
+    }
+
+    static int getTargetTier(int currentTier, int levelPercent, boolean charging) {
+        if (charging || levelPercent == BatterySource.UNKNOWN_LEVEL) {
+            return TIER_FULL;
+        }
+
+        int tier = currentTier;
+        while (tier < TIER_AMBIENT_STYLE && levelPercent <= TIER_ENTRY_LEVELS[tier + 1]) {
+            tier++;
+        }
+        while (tier > TIER_FULL && levelPercent > TIER_ENTRY_LEVELS[tier] + HYSTERESIS_PERCENT) {
+            tier--;
+        }
+        return tier;
+    }
+
+    public int getTier() {
+        return mTier;
+    }
+
+    public boolean isShadowEnabled() {
+        return mTier < TIER_NO_SHADOWS;
+    }
+
+    public boolean isSweepEnabled() {
+        return mTier < TIER_NO_SWEEP;
+    }
+
+    public boolean isBackgroundFrozen() {
+        return mTier >= TIER_FROZEN_BACKGROUND;
+    }
+
+    public boolean isAmbientStyle() {
+        return mTier >= TIER_AMBIENT_STYLE;
+    }
+
+    public static String getTierName(int tier) {
+        return TIER_NAMES[tier];
+    }
+
+    public void dump(PrintWriter writer) {
+        writer.println("Power governor: tier=" + TIER_NAMES[mTier] + " level="
+                + mBatterySource.getLevelPercent() + " charging=" + mBatterySource.isCharging()
+                + " changes=" + mTierChangeCount);
+    }
+}
@@ -0,0 +1,583 @@
+package com.deviantdev.wearable.watchface.preference;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.FileObserver;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.ArrayMap;
+import android.util.AtomicFile;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Small key-value store for the int, long and boolean state of the watch face and its providers,
+ * kept in a compact binary file instead of an XML {@link SharedPreferences} file.
+ *
+ * The file holds a header with the format version, one typed record per value and a CRC32 of
+ * everything before it. It is read once per process through a memory-mapped buffer and replaced
+ * as a whole through an {@link AtomicFile}, so a crash during a write leaves the previous version
+ * in place. A file that fails the CRC check is discarded. Changes are kept in memory right away
+ * and written in one batch on a background thread by {@link #apply()}.
+ *
+ * {@link #open(Context, String, String)} does not touch the disk: the file is read (or migrated)
+ * on the background thread. The first access waits until that is done, so opening a store early
+ * lets its load overlap with other startup work.
+ *
+ * Every write stores a new random write stamp in the header. Another process that shares the
+ * file can call {@link #reloadIfChanged(Runnable)} to pick up values written since it last read
+ * or wrote the file, without comparing them one by one, or have that done whenever the file is
+ * replaced with {@link #startWatching(Runnable)}.
+ *
+ * When a store is opened for the first time, the values of the XML preferences file it replaces
+ * are migrated, and the XML file is deleted once they are safely written.
+ */
+public class StateStore {
+
+    private static final String TAG = "StateStore";
+
+    private static final String FILE_SUFFIX = ".state";
+
+    private static final int MAGIC = 0x44445353; // "DDSS"
+    /* Version 2 added the write stamp; version 1 files are still read. */
+    private static final int FORMAT_VERSION = 2;
+    private static final int FORMAT_VERSION_WITHOUT_STAMP = 1;
+
+    private static final byte TYPE_INT = 1;
+    private static final byte TYPE_LONG = 2;
+    private static final byte TYPE_BOOLEAN = 3;
+
+    /* Magic, format version, write stamp and record count. Version 1 has no write stamp. */
+    private static final int HEADER_SIZE = 20;
+    private static final int MIN_HEADER_SIZE = 12;
+    private static final int CRC_SIZE = 4;
+
+    private static final Map<String, StateStore> sStores = new ArrayMap<>();
+    private static Handler sWriterHandler;
+    private static final Random sStampRandom = new Random();
+
+    private final String mName;
+    private final AtomicFile mFile;
+
+    // Counted down once the file was read or migrated on the writer thread.
+    private final CountDownLatch mLoaded = new CountDownLatch(1);
+
+    private final Object mLock = new Object();
+    // Guarded by mLock.
+    private final ArrayMap<String, Object> mValues = new ArrayMap<>();
+    private boolean mDirty;
+    // Write stamp of the file content last read or written by this process.
+    private long mWriteStamp;
+
+    // Main thread only.
+    private FileObserver mFileObserver;
+    private int mWatcherCount;
+
+    // Statistics, guarded by mLock.
+    private long mLoadMicros;
+    private long mLoadWaitMicros;
+    private int mFileSize;
+    private long mChangeCount;
+    private long mWriteCount;
+    private long mBytesWritten;
+
+    private final Runnable mWriteRunnable = new Runnable() {
+        @Override
+        public void run() {
+            write();
+        }
+    };
+
+    private StateStore(Context context, String name) {
+        mName = name;
+        mFile = new AtomicFile(new File(context.getFilesDir(), name + FILE_SUFFIX));
+    }
+
+    /**
+     * Returns the store with the given name, starting to load it in the background on first use.
+     * If its file does not exist yet, the values of the XML preferences file
+     * {@code legacyPreferencesName} are migrated.
+     */
+    public static StateStore open(Context context, String name,
+            final String legacyPreferencesName) {
+        synchronized (sStores) {
+            StateStore store = sStores.get(name);
+            if (store == null) {
+                final Context applicationContext = context.getApplicationContext();
+                final StateStore newStore = new StateStore(applicationContext, name);
+                getWriterHandler().post(new Runnable() {
+                    @Override
+                    public void run() {
+                        newStore.loadOrMigrate(applicationContext, legacyPreferencesName);
+                    }
+                });
+                store = newStore;
+                sStores.put(name, store);
+            }
+            return store;
+        }
+    }
+
+    public int getInt(String key, int defaultValue) {
+        awaitLoaded();
+        synchronized (mLock) {
+            Object value = mValues.get(key);
+            return value instanceof Integer ? (Integer) value : defaultValue;
+        }
+    }
+
+    public long getLong(String key, long defaultValue) {
+        awaitLoaded();
+        synchronized (mLock) {
+            Object value = mValues.get(key);
+            return value instanceof Long ? (Long) value : defaultValue;
+        }
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        awaitLoaded();
+        synchronized (mLock) {
+            Object value = mValues.get(key);
+            return value instanceof Boolean ? (Boolean) value : defaultValue;
+        }
+    }
+
+    public void putInt(String key, int value) {
+        put(key, value);
+    }
+
+    public void putLong(String key, long value) {
+        put(key, value);
+    }
+
+    public void putBoolean(String key, boolean value) {
+        put(key, value);
+    }
+
+    private void put(String key, Object value) {
+        // A change made before the load would be overwritten by it.
+        awaitLoaded();
+        synchronized (mLock) {
+            if (!value.equals(mValues.put(key, value))) {
+                mDirty = true;
+                mChangeCount++;
+            }
+        }
+    }
+
+    /**
+     * Writes all changes made since the last write on the background thread.
+     */
+    public void apply() {
+        Handler handler = getWriterHandler();
+        handler.removeCallbacks(mWriteRunnable);
+        handler.post(mWriteRunnable);
+    }
+
+    /*
+     * Blocks until the values are loaded. Only the first accesses after open() can wait; the time
+     * spent waiting is reported by dumpAll().
+     */
+    private void awaitLoaded() {
+        if (mLoaded.getCount() == 0) {
+            return;
+        }
+
+        long startNanos = SystemClock.elapsedRealtimeNanos();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                mLoaded.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (mLock) {
+            mLoadWaitMicros += TimeUnit.NANOSECONDS.toMicros(
+                    SystemClock.elapsedRealtimeNanos() - startNanos);
+        }
+    }
+
+    private void loadOrMigrate(Context context, String legacyPreferencesName) {
+        try {
+            if (!load()) {
+                migrate(context, legacyPreferencesName);
+            }
+        } finally {
+            mLoaded.countDown();
+        }
+    }
+
+    /**
+     * Reloads the values on the background thread if the file was replaced by another process
+     * since this process last read or wrote it, and then runs {@code onReloaded} on the main
+     * thread. Values changed here but not written yet win; they are about to replace the file.
+     */
+    public void reloadIfChanged(final Runnable onReloaded) {
+        getWriterHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                if (reloadFromFileIfChanged()) {
+                    new Handler(Looper.getMainLooper()).post(onReloaded);
+                }
+            }
+        });
+    }
+
+    /**
+     * Calls {@link #reloadIfChanged(Runnable)} whenever the file is written, until every call is
+     * matched by a call to {@link #stopWatching()}. Writes of this process are recognized by their
+     * write stamp and do not reload anything. Main thread only.
+     */
+    public void startWatching(final Runnable onReloaded) {
+        if (mWatcherCount++ > 0) {
+            return;
+        }
+        // AtomicFile either rewrites the file in place or moves a new file over it, depending on
+        // the platform version; both end with one of these events.
+        final File file = mFile.getBaseFile();
+        mFileObserver = new FileObserver(file.getParent(),
+                FileObserver.CLOSE_WRITE | FileObserver.MOVED_TO) {
+            @Override
+            public void onEvent(int event, String path) {
+                if (file.getName().equals(path)) {
+                    reloadIfChanged(onReloaded);
+                }
+            }
+        };
+        mFileObserver.startWatching();
+    }
+
+    public void stopWatching() {
+        if (mWatcherCount == 0 || --mWatcherCount > 0) {
+            return;
+        }
+        mFileObserver.stopWatching();
+        mFileObserver = null;
+    }
+
+    /* Returns the observer started by startWatching(), or null. For tests. */
+    FileObserver getFileObserver() {
+        return mFileObserver;
+    }
+
+    private boolean reloadFromFileIfChanged() {
+        Snapshot snapshot = read();
+        if (snapshot == null) {
+            return false;
+        }
+        synchronized (mLock) {
+            if (mDirty || snapshot.mWriteStamp == mWriteStamp) {
+                return false;
+            }
+            mValues.clear();
+            mValues.putAll(snapshot.mValues);
+            mWriteStamp = snapshot.mWriteStamp;
+            mFileSize = snapshot.mFileSize;
+        }
+        return true;
+    }
+
+    /*
+     * Reads the file. Returns false if there is no file yet; a corrupt file counts as read, so it
+     * is not overwritten by a migration of outdated values.
+     */
+    private boolean load() {
+        long startNanos = SystemClock.elapsedRealtimeNanos();
+
+        Snapshot snapshot = read();
+        if (snapshot == null) {
+            return false;
+        }
+
+        synchronized (mLock) {
+            mValues.putAll(snapshot.mValues);
+            mWriteStamp = snapshot.mWriteStamp;
+            mFileSize = snapshot.mFileSize;
+            mLoadMicros = TimeUnit.NANOSECONDS.toMicros(
+                    SystemClock.elapsedRealtimeNanos() - startNanos);
+        }
+        return true;
+    }
+
+    /*
+     * Reads the file through a memory-mapped buffer. Returns null if there is no file; the
+     * snapshot of a corrupt or unreadable file is empty.
+     */
+    private Snapshot read() {
+        FileInputStream stream;
+        try {
+            stream = mFile.openRead();
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+
+        Snapshot snapshot = new Snapshot();
+        try {
+            FileChannel channel = stream.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            snapshot.mFileSize = buffer.capacity();
+            if (!parse(buffer, snapshot)) {
+                Log.w(TAG, "Discarding corrupt state file " + mName + ".");
+                snapshot.mValues.clear();
+                snapshot.mWriteStamp = 0;
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read state file " + mName + ".", e);
+        } finally {
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+            }
+        }
+        return snapshot;
+    }
+
+    private static boolean parse(ByteBuffer buffer, Snapshot snapshot) {
+        int crcOffset = buffer.capacity() - CRC_SIZE;
+        if (crcOffset < MIN_HEADER_SIZE
+                || buffer.getInt(crcOffset) != computeCrc(buffer, crcOffset)) {
+            return false;
+        }
+
+        Map<String, Object> values = snapshot.mValues;
+        try {
+            if (buffer.getInt() != MAGIC) {
+                return false;
+            }
+            int version = buffer.getInt();
+            if (version == FORMAT_VERSION) {
+                snapshot.mWriteStamp = buffer.getLong();
+            } else if (version != FORMAT_VERSION_WITHOUT_STAMP) {
+                return false;
+            }
+            int count = buffer.getInt();
+            for (int index = 0; index < count; index++) {
+                byte[] keyBytes = new byte[buffer.getShort() & 0xffff];
+                buffer.get(keyBytes);
+                String key = new String(keyBytes, StandardCharsets.UTF_8);
+
+                byte type = buffer.get();
+                switch (type) {
+                    case TYPE_INT:
+                        values.put(key, buffer.getInt());
+                        break;
+                    case TYPE_LONG:
+                        values.put(key, buffer.getLong());
+                        break;
+                    case TYPE_BOOLEAN:
+                        values.put(key, buffer.get() != 0);
+                        break;
+                    default:
+                        return false;
+                }
+            }
+            return buffer.position() == crcOffset;
+        } catch (BufferUnderflowException e) {
+            return false;
+        }
+    }
+
+    /* CRC32 of the first length bytes, fed through a small array to keep the buffer mapped. */
+    private static int computeCrc(ByteBuffer buffer, int length) {
+        CRC32 crc = new CRC32();
+        byte[] chunk = new byte[256];
+        ByteBuffer source = buffer.duplicate();
+        source.position(0);
+        while (source.position() < length) {
+            int chunkLength = Math.min(chunk.length, length - source.position());
+            source.get(chunk, 0, chunkLength);
+            crc.update(chunk, 0, chunkLength);
+        }
+        return (int) crc.getValue();
+    }
+
+    /*
+     * Copies the supported values of an XML preferences file, writes them right away and deletes
+     * the XML file once they are saved.
+     */
+    private void migrate(Context context, String legacyPreferencesName) {
+        SharedPreferences legacy = context.getSharedPreferences(legacyPreferencesName, 0);
+        Map<String, ?> legacyValues = legacy.getAll();
+        if (legacyValues.isEmpty()) {
+            return;
+        }
+
+        synchronized (mLock) {
+            for (Map.Entry<String, ?> entry : legacyValues.entrySet()) {
+                Object value = entry.getValue();
+                if (value instanceof Integer || value instanceof Long
+                        || value instanceof Boolean) {
+                    mValues.put(entry.getKey(), value);
+                } else {
+                    Log.w(TAG, "Not migrating " + entry.getKey() + " of unsupported type.");
+                }
+            }
+            mDirty = true;
+        }
+
+        if (write()) {
+            context.deleteSharedPreferences(legacyPreferencesName);
+            Log.d(TAG, "Migrated " + legacyValues.size() + " values from "
+                    + legacyPreferencesName + " to " + mName + ".");
+        }
+    }
+
+    private boolean write() {
+        byte[] bytes;
+        long writeStamp;
+        synchronized (mLock) {
+            if (!mDirty) {
+                return true;
+            }
+            mDirty = false;
+            writeStamp = nextWriteStamp(mWriteStamp);
+            bytes = serialize(mValues, writeStamp);
+        }
+
+        FileOutputStream stream = null;
+        try {
+            stream = mFile.startWrite();
+            stream.write(bytes);
+            mFile.finishWrite(stream);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write state file " + mName + ".", e);
+            mFile.failWrite(stream);
+            synchronized (mLock) {
+                mDirty = true;
+            }
+            return false;
+        }
+
+        synchronized (mLock) {
+            mWriteStamp = writeStamp;
+            mFileSize = bytes.length;
+            mWriteCount++;
+            mBytesWritten += bytes.length;
+        }
+        return true;
+    }
+
+    /* Random, so writes of two processes practically never end up with the same stamp. */
+    private static long nextWriteStamp(long previousStamp) {
+        long stamp;
+        do {
+            stamp = sStampRandom.nextLong();
+        } while (stamp == previousStamp || stamp == 0);
+        return stamp;
+    }
+
+    private static byte[] serialize(ArrayMap<String, Object> values, long writeStamp) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE + values.size() * 32);
+        DataOutputStream output = new DataOutputStream(bytes);
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(FORMAT_VERSION);
+            output.writeLong(writeStamp);
+            output.writeInt(values.size());
+
+            for (int index = 0; index < values.size(); index++) {
+                byte[] keyBytes = values.keyAt(index).getBytes(StandardCharsets.UTF_8);
+                output.writeShort(keyBytes.length);
+                output.write(keyBytes);
+
+                Object value = values.valueAt(index);
+                if (value instanceof Integer) {
+                    output.writeByte(TYPE_INT);
+                    output.writeInt((Integer) value);
+                } else if (value instanceof Long) {
+                    output.writeByte(TYPE_LONG);
+                    output.writeLong((Long) value);
+                } else {
+                    output.writeByte(TYPE_BOOLEAN);
+                    output.writeBoolean((Boolean) value);
+                }
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(bytes.toByteArray());
+            output.writeInt((int) crc.getValue());
+        } catch (IOException e) {
+            // Not thrown by an in-memory stream.
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /* Blocks until everything posted to the background thread so far is done. For tests. */
+    static void awaitBackgroundWork() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        getWriterHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        done.await();
+    }
+
+    private static synchronized Handler getWriterHandler() {
+        if (sWriterHandler == null) {
+            HandlerThread thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            sWriterHandler = new Handler(thread.getLooper());
+        }
+        return sWriterHandler;
+    }
+
+    /**
+     * Prints the cold-read latency, the time callers waited for the load and the write
+     * amplification of every open store: the bytes written per changed value, as every write
+     * replaces the whole file.
+     */
+    public static void dumpAll(PrintWriter writer) {
+        synchronized (sStores) {
+            for (StateStore store : sStores.values()) {
+                store.dump(writer);
+            }
+        }
+    }
+
+    private void dump(PrintWriter writer) {
+        synchronized (mLock) {
+            writer.println("State store " + mName + ": values=" + mValues.size() + " fileSize="
+                    + mFileSize + " loadMicros=" + mLoadMicros + " loadWaitMicros="
+                    + mLoadWaitMicros + " changes=" + mChangeCount
+                    + " writes=" + mWriteCount + " bytesWritten=" + mBytesWritten
+                    + " bytesPerChange=" + (mChangeCount > 0 ? mBytesWritten / mChangeCount : 0));
+        }
+    }
+
+    /* Values and write stamp read from the file. */
+    private static final class Snapshot {
+        private final ArrayMap<String, Object> mValues = new ArrayMap<>();
+        private long mWriteStamp;
+        private int mFileSize;
+    }
+}
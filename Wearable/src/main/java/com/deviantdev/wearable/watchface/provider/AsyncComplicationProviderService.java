@@ -0,0 +1,245 @@
+package com.deviantdev.wearable.watchface.provider;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.ComplicationManager;
+import android.support.wearable.complications.ComplicationProviderService;
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.deviantdev.wearable.watchface.complication.ComplicationDataComparator;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base class for complication providers whose data takes a while to produce, e.g. because it is
+ * read from disk or computed.
+ *
+ * The data comes from a {@link DataSource} and is loaded on a small, bounded pool of background
+ * threads, so the main thread is never blocked. Updates requested in the same message loop turn,
+ * e.g. by one {@code requestUpdate(int...)} for several complications, are loaded in parallel as
+ * one batch. Every update is answered exactly once: with the loaded data, or with
+ * {@link ComplicationManager#noUpdateRequired(int)} if the data equals what the complication
+ * already shows, the source failed or it did not finish within its timeout. The system's update
+ * wake lock is therefore never held longer than the timeout.
+ */
+public abstract class AsyncComplicationProviderService extends ComplicationProviderService {
+
+    private static final String TAG = "AsyncComplicationProvider";
+
+    /* Loads running in parallel, and loads waiting for a thread before updates are dropped. */
+    private static final int MAX_PARALLEL_LOADS = 2;
+    private static final int MAX_QUEUED_LOADS = 16;
+
+    private static final long IDLE_THREAD_KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * Produces the data of a complication. Called on a background thread, possibly for several
+     * complications at the same time.
+     */
+    public interface DataSource {
+        /**
+         * Returns the data for the complication, or null if it has nothing new to show.
+         */
+        ComplicationData load(int complicationId, int dataType) throws Exception;
+
+        /**
+         * Returns how long a load may take before the update is given up.
+         */
+        long getTimeoutMillis();
+    }
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private DataSource mDataSource;
+    private ThreadPoolExecutor mExecutor;
+
+    // All fields below are only accessed on the main thread.
+    // Updates requested in the current message loop turn.
+    private final ArrayList<PendingUpdate> mBatch = new ArrayList<>();
+    private final ArrayList<PendingUpdate> mRunningUpdates = new ArrayList<>();
+    // Data the complications currently show, by complication id.
+    private final SparseArray<ComplicationData> mSentData = new SparseArray<>();
+
+    private long mLoadCount;
+    private long mUnchangedCount;
+    private long mTimeoutCount;
+    private long mFailureCount;
+
+    private final Runnable mStartBatchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            startBatch();
+        }
+    };
+
+    /**
+     * Returns the source of this provider's data. Called once, when the service is created.
+     */
+    protected abstract DataSource onCreateDataSource();
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        mDataSource = onCreateDataSource();
+        mExecutor = new ThreadPoolExecutor(MAX_PARALLEL_LOADS, MAX_PARALLEL_LOADS,
+                IDLE_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(MAX_QUEUED_LOADS));
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void onDestroy() {
+        mMainHandler.removeCallbacks(mStartBatchRunnable);
+        mExecutor.shutdownNow();
+        for (PendingUpdate update : new ArrayList<>(mRunningUpdates)) {
+            update.finish(null);
+        }
+        for (PendingUpdate update : mBatch) {
+            update.mComplicationManager.noUpdateRequired(update.mComplicationId);
+        }
+        mBatch.clear();
+        super.onDestroy();
+    }
+
+    /*
+     * Subclasses overriding this must call through, so the first update after an activation is
+     * always sent.
+     */
+    @Override
+    public void onComplicationActivated(
+            int complicationId, int dataType, ComplicationManager complicationManager) {
+        mSentData.remove(complicationId);
+    }
+
+    @Override
+    public final void onComplicationUpdate(
+            int complicationId, int dataType, ComplicationManager complicationManager) {
+        mBatch.add(new PendingUpdate(complicationId, dataType, complicationManager));
+        if (mBatch.size() == 1) {
+            mMainHandler.post(mStartBatchRunnable);
+        }
+    }
+
+    /*
+     * Subclasses overriding this must call through.
+     */
+    @Override
+    public void onComplicationDeactivated(int complicationId) {
+        mSentData.remove(complicationId);
+    }
+
+    private void startBatch() {
+        long timeoutMillis = mDataSource.getTimeoutMillis();
+        for (PendingUpdate update : mBatch) {
+            try {
+                update.mFuture = mExecutor.submit(update);
+            } catch (RejectedExecutionException e) {
+                Log.w(TAG, "Too many pending loads, skipping update of "
+                        + update.mComplicationId + ".");
+                mFailureCount++;
+                update.mComplicationManager.noUpdateRequired(update.mComplicationId);
+                continue;
+            }
+            mRunningUpdates.add(update);
+            mMainHandler.postDelayed(update.mTimeoutRunnable, timeoutMillis);
+        }
+        mBatch.clear();
+    }
+
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(fd, writer, args);
+        writer.println("Async provider: loads=" + mLoadCount + " unchanged=" + mUnchangedCount
+                + " timeouts=" + mTimeoutCount + " failures=" + mFailureCount + " running="
+                + mRunningUpdates.size());
+    }
+
+    /*
+     * One requested update: loaded on a background thread, finished on the main thread.
+     */
+    private final class PendingUpdate implements Runnable {
+        private final int mComplicationId;
+        private final int mDataType;
+        private final ComplicationManager mComplicationManager;
+        private Future<?> mFuture;
+        // Set once the update was answered. Main thread only.
+        private boolean mFinished;
+
+        private final Runnable mTimeoutRunnable = new Runnable() {
+            @Override
+            public void run() {
+                if (!mFinished) {
+                    Log.w(TAG, "Loading complication " + mComplicationId + " timed out.");
+                    mTimeoutCount++;
+                    mFuture.cancel(true);
+                    finish(null);
+                }
+            }
+        };
+
+        private PendingUpdate(int complicationId, int dataType,
+                ComplicationManager complicationManager) {
+            mComplicationId = complicationId;
+            mDataType = dataType;
+            mComplicationManager = complicationManager;
+        }
+
+        @Override
+        public void run() {
+            ComplicationData data;
+            boolean failed = false;
+            try {
+                data = mDataSource.load(mComplicationId, mDataType);
+            } catch (InterruptedException e) {
+                // Cancelled after the timeout, which already answered the update.
+                return;
+            } catch (Exception e) {
+                Log.w(TAG, "Unable to load complication " + mComplicationId + ".", e);
+                data = null;
+                failed = true;
+            }
+
+            final ComplicationData loadedData = data;
+            final boolean loadFailed = failed;
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mFinished) {
+                        return;
+                    }
+                    mLoadCount++;
+                    if (loadFailed) {
+                        mFailureCount++;
+                    }
+                    finish(loadedData);
+                }
+            });
+        }
+
+        private void finish(ComplicationData data) {
+            mFinished = true;
+            mMainHandler.removeCallbacks(mTimeoutRunnable);
+            mRunningUpdates.remove(this);
+
+            if (data == null) {
+                mComplicationManager.noUpdateRequired(mComplicationId);
+            } else if (ComplicationDataComparator.contentEquals(
+                    mSentData.get(mComplicationId), data)) {
+                mUnchangedCount++;
+                mComplicationManager.noUpdateRequired(mComplicationId);
+            } else {
+                mComplicationManager.updateComplicationData(mComplicationId, data);
+                mSentData.put(mComplicationId, data);
+            }
+        }
+    }
+}
@@ -20,9 +20,7 @@ import android.content.BroadcastReceiver;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.os.Bundle;
-import android.support.wearable.complications.ProviderUpdateRequester;
 
 /**
  * Simple {@link BroadcastReceiver} subclass for asynchronously incrementing an integer for any
@@ -39,6 +37,7 @@ public class ComplicationToggleReceiver extends BroadcastReceiver {
     static final int MAX_NUMBER = 20;
     static final String COMPLICATION_PROVIDER_PREFERENCES_FILE_KEY =
             "com.deviantdev.wearable.watchface.COMPLICATION_PROVIDER_PREFERENCES_FILE_KEY";
+    static final String COMPLICATION_PROVIDER_STATE_NAME = "complication_provider";
 
     @Override
     public void onReceive(Context context, Intent intent) {
@@ -48,22 +47,14 @@ public class ComplicationToggleReceiver extends BroadcastReceiver {
             if (provider != null) {
                 int complicationId = extras.getInt(EXTRA_COMPLICATION_ID);
 
-                String preferenceKey = getPreferenceKey(provider, complicationId);
-                SharedPreferences sharedPreferences =
-                        context.getSharedPreferences(COMPLICATION_PROVIDER_PREFERENCES_FILE_KEY, 0);
-
-                int value = sharedPreferences.getInt(preferenceKey, 0);
-
                 // Updates data for complication.
-                value = (value + 1) % MAX_NUMBER;
-
-                SharedPreferences.Editor editor = sharedPreferences.edit();
-                editor.putInt(preferenceKey, value);
-                editor.apply();
+                TapCounterStore.getInstance(context)
+                        .increment(provider, complicationId, MAX_NUMBER);
 
-                // Request an update for the complication that has just been toggled.
-                ProviderUpdateRequester requester = new ProviderUpdateRequester(context, provider);
-                requester.requestUpdate(complicationId);
+                // Request an update for the complication that has just been toggled, merged with
+                // those of further taps in quick succession.
+                ProviderUpdateCoalescer.getInstance(context)
+                        .requestUpdate(provider, complicationId, goAsync());
             }
         }
     }
@@ -85,8 +76,7 @@ public class ComplicationToggleReceiver extends BroadcastReceiver {
     }
 
     /**
-     * Returns the key for the shared preference used to hold the current state of a given
-     * complication.
+     * Returns the key of the value used to hold the current state of a given complication.
      */
     static String getPreferenceKey(ComponentName provider, int complicationId) {
         return provider.getClassName() + complicationId;
@@ -18,22 +18,60 @@ package com.deviantdev.wearable.watchface.provider;
 
 import android.app.PendingIntent;
 import android.content.ComponentName;
-import android.content.SharedPreferences;
 import android.support.wearable.complications.ComplicationData;
 import android.support.wearable.complications.ComplicationManager;
-import android.support.wearable.complications.ComplicationProviderService;
 import android.support.wearable.complications.ComplicationText;
 import android.util.Log;
+import android.util.SparseArray;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
 import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Example Watch Face Complication data provider provides a number that can be incremented on tap.
+ *
+ * The number only takes {@link ComplicationToggleReceiver#MAX_NUMBER} values, so the data built
+ * for each value is kept per complication and reused, together with its tap action. Updates that
+ * would send the same number again are answered with
+ * {@link ComplicationManager#noUpdateRequired(int)} by the base class.
  */
-public class IncrementingNumberComplicationProviderService extends ComplicationProviderService {
+public class IncrementingNumberComplicationProviderService
+        extends AsyncComplicationProviderService {
 
     private static final String TAG = "ComplicationProvider";
 
+    /* Reading a counter takes no time, unless the tap counters are still being loaded. */
+    private static final long LOAD_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(2);
+
+    private ComponentName mThisProvider;
+
+    // Built data and tap actions of the active complications, by complication id. Guarded by
+    // itself, as complications are loaded in parallel.
+    private final SparseArray<CachedComplication> mCachedComplications = new SparseArray<>();
+
+    @Override
+    public void onCreate() {
+        mThisProvider = new ComponentName(this, getClass());
+        super.onCreate();
+    }
+
+    @Override
+    protected DataSource onCreateDataSource() {
+        return new DataSource() {
+            @Override
+            public ComplicationData load(int complicationId, int dataType) {
+                return loadComplicationData(complicationId, dataType);
+            }
+
+            @Override
+            public long getTimeoutMillis() {
+                return LOAD_TIMEOUT_MS;
+            }
+        };
+    }
+
     /*
      * Called when a complication has been activated. The method is for any one-time
      * (per complication) set-up.
@@ -44,40 +82,64 @@ public class IncrementingNumberComplicationProviderService extends ComplicationP
     @Override
     public void onComplicationActivated(
             int complicationId, int dataType, ComplicationManager complicationManager) {
+        super.onComplicationActivated(complicationId, dataType, complicationManager);
         Log.d(TAG, "onComplicationActivated(): " + complicationId);
     }
 
     /*
-     * Called when the complication needs updated data from your provider. There are four scenarios
-     * when this will happen:
+     * Loads the data of a complication for the DataSource. The base class calls it on one of its
+     * background threads once the complication needs updated data from your provider, which
+     * happens when:
      *
      *   1. An active watch face complication is changed to use this provider
      *   2. A complication using this provider becomes active
      *   3. The period of time you specified in the manifest has elapsed (UPDATE_PERIOD_SECONDS)
      *   4. You triggered an update from your own class via the
      *       ProviderUpdateRequester.requestUpdate() method.
+     *
+     * Loads of different complications may run at the same time, so the cache is synchronized.
+     * The result is sent from the main thread by the base class: the ComplicationManager is never
+     * called here, and data equal to what the complication shows, or data that takes longer than
+     * LOAD_TIMEOUT_MS, is answered with noUpdateRequired() instead.
      */
-    @Override
-    public void onComplicationUpdate(
-            int complicationId, int dataType, ComplicationManager complicationManager) {
-        Log.d(TAG, "onComplicationUpdate() id: " + complicationId);
-
-        // Create Tap Action so that the user can trigger an update by tapping the complication.
-        ComponentName thisProvider = new ComponentName(this, getClass());
-        // We pass the complication id, so we can only update the specific complication tapped.
-        PendingIntent complicationTogglePendingIntent =
-                ComplicationToggleReceiver.getToggleIntent(this, thisProvider, complicationId);
-
-        // Retrieves your data, in this case, we grab an incrementing number from SharedPrefs.
-        SharedPreferences preferences =
-                getSharedPreferences(
-                        ComplicationToggleReceiver.COMPLICATION_PROVIDER_PREFERENCES_FILE_KEY, 0);
-        int number =
-                preferences.getInt(
-                        ComplicationToggleReceiver.getPreferenceKey(thisProvider, complicationId),
-                        0);
-        String numberText = String.format(Locale.getDefault(), "%d!", number);
+    private ComplicationData loadComplicationData(int complicationId, int dataType) {
+        Log.d(TAG, "loadComplicationData() id: " + complicationId);
+
+        CachedComplication cached;
+        Locale locale = Locale.getDefault();
+        synchronized (mCachedComplications) {
+            cached = mCachedComplications.get(complicationId);
+            if (cached == null || cached.mDataType != dataType || !cached.mLocale.equals(locale)) {
+                // Create Tap Action so that the user can trigger an update by tapping the
+                // complication. We pass the complication id, so we can only update the specific
+                // complication tapped. The intent is kept as long as the complication is active.
+                PendingIntent complicationTogglePendingIntent = (cached != null)
+                        ? cached.mTapAction
+                        : ComplicationToggleReceiver.getToggleIntent(
+                                this, mThisProvider, complicationId);
+                cached = new CachedComplication(dataType, locale, complicationTogglePendingIntent);
+                mCachedComplications.put(complicationId, cached);
+            }
+        }
+
+        // Retrieves your data, in this case, we grab an incrementing number from the tap counters.
+        int number = TapCounterStore.getInstance(this).get(mThisProvider, complicationId);
 
+        // If no data is returned, the base class still informs the ComplicationManager, so the
+        // update job can finish and the wake lock isn't held any longer than necessary.
+        synchronized (cached) {
+            ComplicationData complicationData = cached.mData[number];
+            if (complicationData == null) {
+                complicationData = buildComplicationData(dataType, number, cached.mLocale,
+                        cached.mTapAction);
+                cached.mData[number] = complicationData;
+            }
+            return complicationData;
+        }
+    }
+
+    private static ComplicationData buildComplicationData(int dataType, int number,
+            Locale locale, PendingIntent complicationTogglePendingIntent) {
         ComplicationData complicationData = null;
 
         switch (dataType) {
@@ -87,21 +149,24 @@ public class IncrementingNumberComplicationProviderService extends ComplicationP
                                 .setValue(number)
                                 .setMinValue(0)
                                 .setMaxValue(ComplicationToggleReceiver.MAX_NUMBER)
-                                .setShortText(ComplicationText.plainText(numberText))
+                                .setShortText(ComplicationText.plainText(
+                                        IncrementingNumberText.getShortText(number, locale)))
                                 .setTapAction(complicationTogglePendingIntent)
                                 .build();
                 break;
             case ComplicationData.TYPE_SHORT_TEXT:
                 complicationData =
                         new ComplicationData.Builder(ComplicationData.TYPE_SHORT_TEXT)
-                                .setShortText(ComplicationText.plainText(numberText))
+                                .setShortText(ComplicationText.plainText(
+                                        IncrementingNumberText.getShortText(number, locale)))
                                 .setTapAction(complicationTogglePendingIntent)
                                 .build();
                 break;
             case ComplicationData.TYPE_LONG_TEXT:
                 complicationData =
                         new ComplicationData.Builder(ComplicationData.TYPE_LONG_TEXT)
-                                .setLongText(ComplicationText.plainText("Number: " + numberText))
+                                .setLongText(ComplicationText.plainText(
+                                        IncrementingNumberText.getLongText(number, locale)))
                                 .setTapAction(complicationTogglePendingIntent)
                                 .build();
                 break;
@@ -110,15 +175,7 @@ public class IncrementingNumberComplicationProviderService extends ComplicationP
                     Log.w(TAG, "Unexpected complication type " + dataType);
                 }
         }
-
-        if (complicationData != null) {
-            complicationManager.updateComplicationData(complicationId, complicationData);
-
-        } else {
-            // If no data is sent, we still need to inform the ComplicationManager, so the update
-            // job can finish and the wake lock isn't held any longer than necessary.
-            complicationManager.noUpdateRequired(complicationId);
-        }
+        return complicationData;
     }
 
     /*
@@ -126,6 +183,34 @@ public class IncrementingNumberComplicationProviderService extends ComplicationP
      */
     @Override
     public void onComplicationDeactivated(int complicationId) {
+        super.onComplicationDeactivated(complicationId);
         Log.d(TAG, "onComplicationDeactivated(): " + complicationId);
+        synchronized (mCachedComplications) {
+            mCachedComplications.remove(complicationId);
+        }
+    }
+
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(fd, writer, args);
+        ProviderUpdateCoalescer.getInstance(this).dump(writer);
+    }
+
+    /*
+     * Data built for one complication, valid as long as its type and the locale stay the same.
+     */
+    private static final class CachedComplication {
+        private final int mDataType;
+        private final Locale mLocale;
+        private final PendingIntent mTapAction;
+        // Guarded by this entry.
+        private final ComplicationData[] mData =
+                new ComplicationData[ComplicationToggleReceiver.MAX_NUMBER];
+
+        private CachedComplication(int dataType, Locale locale, PendingIntent tapAction) {
+            mDataType = dataType;
+            mLocale = locale;
+            mTapAction = tapAction;
+        }
     }
 }
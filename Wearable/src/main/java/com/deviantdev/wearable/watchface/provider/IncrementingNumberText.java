@@ -0,0 +1,26 @@
+package com.deviantdev.wearable.watchface.provider;
+
+import java.util.Locale;
+
+/**
+ * Texts of the incrementing number complication.
+ */
+public final class IncrementingNumberText {
+
+    private IncrementingNumberText() {
+    }
+
+    /**
+     * Returns the text for short text and ranged value complications, e.g. "3!".
+     */
+    public static String getShortText(int number, Locale locale) {
+        return String.format(locale, "%d!", number);
+    }
+
+    /**
+     * Returns the text for long text complications, e.g. "Number: 3!".
+     */
+    public static String getLongText(int number, Locale locale) {
+        return "Number: " + getShortText(number, locale);
+    }
+}
@@ -0,0 +1,145 @@
+package com.deviantdev.wearable.watchface.provider;
+
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.wearable.complications.ProviderUpdateRequester;
+import android.util.ArrayMap;
+import android.util.SparseIntArray;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+
+/**
+ * Merges the update requests of quick bursts of taps, so five taps on a complication cause one
+ * provider round trip and one redraw instead of five.
+ *
+ * Requests are collected per provider and complication id for {@link #COALESCING_WINDOW_MS} after
+ * the first one, then sent as one {@code requestUpdate(int...)} per provider. Taps change their
+ * state before requesting an update, so the single update shows the result of all of them. The
+ * broadcasts that requested an update are kept alive with {@link BroadcastReceiver#goAsync()}
+ * until it was sent, so the process cannot be stopped with requests still pending. They are
+ * finished even if sending fails, and well within the broadcast timeout of 10 seconds; should the
+ * process die anyway, the system drops them with it. Must be used on the main thread.
+ */
+class ProviderUpdateCoalescer {
+
+    /* Short enough to be unnoticeable, long enough to catch repeated taps. */
+    static final long COALESCING_WINDOW_MS = 250;
+
+    /**
+     * Sends the update requests, a {@link ProviderUpdateRequester} outside of tests.
+     */
+    interface Requester {
+        void requestUpdate(ComponentName provider, int... complicationIds);
+    }
+
+    private static ProviderUpdateCoalescer sInstance;
+
+    private final Requester mRequester;
+    private final Handler mHandler;
+
+    // Pending complication ids per provider, with the number of requests for each.
+    private final ArrayMap<ComponentName, SparseIntArray> mPendingUpdates = new ArrayMap<>();
+    private final ArrayList<BroadcastReceiver.PendingResult> mPendingResults = new ArrayList<>();
+    private boolean mFlushScheduled;
+
+    // Statistics of the sent batches.
+    private long mRequestCount;
+    private long mSentCount;
+    private long mBatchCount;
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    ProviderUpdateCoalescer(Requester requester, Handler handler) {
+        mRequester = requester;
+        mHandler = handler;
+    }
+
+    static synchronized ProviderUpdateCoalescer getInstance(Context context) {
+        if (sInstance == null) {
+            final Context applicationContext = context.getApplicationContext();
+            sInstance = new ProviderUpdateCoalescer(new Requester() {
+                @Override
+                public void requestUpdate(ComponentName provider, int... complicationIds) {
+                    new ProviderUpdateRequester(applicationContext, provider)
+                            .requestUpdate(complicationIds);
+                }
+            }, new Handler(Looper.getMainLooper()));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Requests an update of a complication with the next batch. The given broadcast, if any, is
+     * finished once the batch was sent.
+     */
+    void requestUpdate(ComponentName provider, int complicationId,
+            BroadcastReceiver.PendingResult pendingResult) {
+        checkThread();
+        SparseIntArray complicationIds = mPendingUpdates.get(provider);
+        if (complicationIds == null) {
+            complicationIds = new SparseIntArray();
+            mPendingUpdates.put(provider, complicationIds);
+        }
+        complicationIds.put(complicationId, complicationIds.get(complicationId) + 1);
+        if (pendingResult != null) {
+            mPendingResults.add(pendingResult);
+        }
+
+        // The window starts with the first request, so a stream of taps still updates regularly.
+        if (!mFlushScheduled) {
+            mFlushScheduled = true;
+            mHandler.postDelayed(mFlushRunnable, COALESCING_WINDOW_MS);
+        }
+    }
+
+    /**
+     * Sends all pending requests right away.
+     */
+    void flush() {
+        checkThread();
+        mHandler.removeCallbacks(mFlushRunnable);
+        mFlushScheduled = false;
+
+        try {
+            for (int index = 0; index < mPendingUpdates.size(); index++) {
+                SparseIntArray pending = mPendingUpdates.valueAt(index);
+                int[] complicationIds = new int[pending.size()];
+                for (int idIndex = 0; idIndex < complicationIds.length; idIndex++) {
+                    complicationIds[idIndex] = pending.keyAt(idIndex);
+                    mRequestCount += pending.valueAt(idIndex);
+                }
+                mRequester.requestUpdate(mPendingUpdates.keyAt(index), complicationIds);
+                mSentCount += complicationIds.length;
+                mBatchCount++;
+            }
+        } finally {
+            // A failed request must not keep the broadcasts, and with them the process, alive.
+            mPendingUpdates.clear();
+            for (BroadcastReceiver.PendingResult pendingResult : mPendingResults) {
+                pendingResult.finish();
+            }
+            mPendingResults.clear();
+        }
+    }
+
+    private void checkThread() {
+        if (Looper.myLooper() != mHandler.getLooper()) {
+            throw new IllegalStateException("Must be used on the thread of its handler.");
+        }
+    }
+
+    void dump(PrintWriter writer) {
+        writer.println("Provider update coalescer: requests=" + mRequestCount + " sent="
+                + mSentCount + " coalesced=" + (mRequestCount - mSentCount)
+                + " batches=" + mBatchCount);
+    }
+}
@@ -0,0 +1,114 @@
+package com.deviantdev.wearable.watchface.provider;
+
+import android.content.ComponentName;
+import android.content.Context;
+
+import com.deviantdev.wearable.watchface.preference.StateStore;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tap counters of the complications, one per provider and complication id, shared by
+ * {@link ComplicationToggleReceiver} and the providers in this process.
+ *
+ * Counters are incremented with a compare-and-set on an {@link AtomicInteger}, so taps that are
+ * handled concurrently never lose an increment. Persisting is left to a single writer thread: it
+ * copies the current value of every counter into the {@link StateStore}, so a write always saves
+ * the latest values, no matter in which order the increments finished.
+ */
+class TapCounterStore {
+
+    private static TapCounterStore sInstance;
+
+    private final StateStore mStateStore;
+    private final ConcurrentHashMap<String, AtomicInteger> mCounters = new ConcurrentHashMap<>();
+
+    private final ExecutorService mWriter = Executors.newSingleThreadExecutor();
+    // Set while a write is scheduled that has not started copying the counters yet.
+    private final AtomicBoolean mWritePending = new AtomicBoolean();
+
+    private final Runnable mWriteRunnable = new Runnable() {
+        @Override
+        public void run() {
+            write();
+        }
+    };
+
+    private TapCounterStore(StateStore stateStore) {
+        mStateStore = stateStore;
+    }
+
+    static synchronized TapCounterStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new TapCounterStore(StateStore.open(context,
+                    ComplicationToggleReceiver.COMPLICATION_PROVIDER_STATE_NAME,
+                    ComplicationToggleReceiver.COMPLICATION_PROVIDER_PREFERENCES_FILE_KEY));
+        }
+        return sInstance;
+    }
+
+    int get(ComponentName provider, int complicationId) {
+        return getCounter(ComplicationToggleReceiver.getPreferenceKey(provider, complicationId))
+                .get();
+    }
+
+    /**
+     * Increments the counter of a complication, wrapping around to 0 at {@code modulo}, and
+     * returns the new value.
+     */
+    int increment(ComponentName provider, int complicationId, int modulo) {
+        AtomicInteger counter =
+                getCounter(ComplicationToggleReceiver.getPreferenceKey(provider, complicationId));
+
+        int value;
+        int newValue;
+        do {
+            value = counter.get();
+            newValue = (value + 1) % modulo;
+        } while (!counter.compareAndSet(value, newValue));
+
+        if (mWritePending.compareAndSet(false, true)) {
+            mWriter.execute(mWriteRunnable);
+        }
+        return newValue;
+    }
+
+    /* Blocks until the writes scheduled so far copied the counters into the store. For tests. */
+    void awaitWrites() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        mWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                done.countDown();
+            }
+        });
+        done.await();
+    }
+
+    private AtomicInteger getCounter(String key) {
+        AtomicInteger counter = mCounters.get(key);
+        if (counter == null) {
+            AtomicInteger loaded = new AtomicInteger(mStateStore.getInt(key, 0));
+            counter = mCounters.putIfAbsent(key, loaded);
+            if (counter == null) {
+                counter = loaded;
+            }
+        }
+        return counter;
+    }
+
+    private void write() {
+        // Increments from here on schedule another write, which will see their values.
+        mWritePending.set(false);
+        for (Map.Entry<String, AtomicInteger> entry : mCounters.entrySet()) {
+            mStateStore.putInt(entry.getKey(), entry.getValue().get());
+        }
+        mStateStore.apply();
+    }
+}
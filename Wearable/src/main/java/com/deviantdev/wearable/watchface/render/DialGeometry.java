@@ -0,0 +1,34 @@
+package com.deviantdev.wearable.watchface.render;
+
+/**
+ * Positions of the hour tick marks of the dial, as line segments in the layout of
+ * {@code Canvas.drawLines(float[], Paint)}.
+ */
+public final class DialGeometry {
+
+    public static final int TICK_COUNT = 12;
+
+    /* Floats per tick: x and y of the inner and of the outer end. */
+    public static final int TICK_LINES_SIZE = TICK_COUNT * 4;
+
+    private DialGeometry() {
+    }
+
+    /**
+     * Writes the tick marks between the given radii around the center to {@code lines}, which
+     * needs room for {@link #TICK_LINES_SIZE} floats.
+     */
+    public static void getTickLines(float centerX, float centerY, float innerRadius,
+            float outerRadius, float[] lines) {
+        int index = 0;
+        for (int tickIndex = 0; tickIndex < TICK_COUNT; tickIndex++) {
+            double tickRot = tickIndex * Math.PI * 2 / TICK_COUNT;
+            float sin = (float) Math.sin(tickRot);
+            float cos = (float) Math.cos(tickRot);
+            lines[index++] = centerX + sin * innerRadius;
+            lines[index++] = centerY - cos * innerRadius;
+            lines[index++] = centerX + sin * outerRadius;
+            lines[index++] = centerY - cos * outerRadius;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.deviantdev.wearable.watchface.render;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+
+/**
+ * Pre-rendered, surface-sized layer holding the parts of the dial that only change with the
+ * surface size or the watch face style: the background fill and the 12 tick marks.
+ *
+ * The engine calls {@link #invalidate()} whenever one of the inputs changes (surface size, colors,
+ * ambient/low-bit/burn-in state or mute mode). The bitmap is then rebuilt on the next
+ * {@link #draw(Canvas, int, float, float, Paint)} call, so every other frame is a single blit.
+ *
+ * The layer includes the opaque background, so it is blitted without a paint: the alpha of the
+ * tick paint is baked into the layer and a change of it needs an {@link #invalidate()} (see
+ * {@link WatchFaceTheme#hasSameDial(WatchFaceTheme)}).
+ */
+public class DialLayer {
+
+    /* Tick marks run from the edge of the dial inwards by this many pixels. */
+    private static final float TICK_LENGTH = 10f;
+
+    // Scratch space for the tick positions. Drawing only happens on the main thread.
+    private static final float[] sTickLines = new float[DialGeometry.TICK_LINES_SIZE];
+
+    private final Canvas mLayerCanvas = new Canvas();
+
+    private Bitmap mLayerBitmap;
+    private boolean mValid;
+
+    /**
+     * Marks the layer as stale. It is rebuilt lazily on the next draw.
+     */
+    public void invalidate() {
+        mValid = false;
+    }
+
+    /**
+     * Draws the background color and tick marks to the canvas, rebuilding the cached layer first
+     * if it was invalidated or the canvas size changed.
+     */
+    public void draw(Canvas canvas, int backgroundColor, float centerX, float centerY,
+            Paint tickPaint) {
+        int width = canvas.getWidth();
+        int height = canvas.getHeight();
+
+        if (mLayerBitmap == null || mLayerBitmap.getWidth() != width
+                || mLayerBitmap.getHeight() != height) {
+            release();
+            mLayerBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mLayerCanvas.setBitmap(mLayerBitmap);
+        }
+
+        if (!mValid) {
+            mLayerCanvas.drawColor(backgroundColor);
+            drawTicks(mLayerCanvas, centerX, centerY, tickPaint);
+            mValid = true;
+        }
+
+        canvas.drawBitmap(mLayerBitmap, 0, 0, null);
+    }
+
+    /**
+     * Frees the cached bitmap. The layer is recreated on the next draw.
+     */
+    public void release() {
+        if (mLayerBitmap != null) {
+            mLayerCanvas.setBitmap(null);
+            mLayerBitmap.recycle();
+            mLayerBitmap = null;
+        }
+        mValid = false;
+    }
+
+    /**
+     * Draws the hour tick marks around the edge of the dial. Shared by the cached layer and the
+     * direct drawing path so both produce the same pixels.
+     */
+    public static void drawTicks(Canvas canvas, float centerX, float centerY, Paint tickPaint) {
+        DialGeometry.getTickLines(centerX, centerY, centerX - TICK_LENGTH, centerX, sTickLines);
+        canvas.drawLines(sTickLines, tickPaint);
+    }
+}
@@ -0,0 +1,238 @@
+package com.deviantdev.wearable.watchface.render;
+
+import java.io.PrintWriter;
+
+/**
+ * Merges redraw requests from all sources of the engine into as few frames as possible.
+ *
+ * A request that arrives at least one coalescing window after the last frame is drawn right away.
+ * Requests that arrive sooner are deferred to the end of the window and merged with anything else
+ * that comes in meanwhile. Time-critical requests (timer, time tick, tap, visibility) flush a
+ * deferred frame immediately. Requests that arrive while the watch face is not visible are
+ * dropped; the face is redrawn anyway once it becomes visible again.
+ *
+ * The reasons that led to each frame are recorded, so the savings can be seen in the field.
+ */
+public class FrameRequestCoalescer {
+
+    public static final int REASON_TIMER = 1;
+    public static final int REASON_TIME_TICK = 1 << 1;
+    public static final int REASON_COMPLICATION = 1 << 2;
+    public static final int REASON_UNREAD_COUNT = 1 << 3;
+    public static final int REASON_STYLE = 1 << 4;
+    public static final int REASON_TIME_ZONE = 1 << 5;
+    public static final int REASON_TAP = 1 << 6;
+    public static final int REASON_VISIBILITY = 1 << 7;
+    private static final int REASON_COUNT = 8;
+
+    private static final String[] REASON_NAMES = {
+            "timer", "time_tick", "complication", "unread_count", "style", "time_zone", "tap",
+            "visibility"};
+
+    private static final int URGENT_REASONS =
+            REASON_TIMER | REASON_TIME_TICK | REASON_TAP | REASON_VISIBILITY;
+
+    public static final int NO_COMPLICATION_ID = -1;
+
+    /* If a requested frame was never drawn (e.g. the surface went away), stop waiting for it. */
+    private static final long REQUESTED_FRAME_TIMEOUT_MS = 1000;
+
+    /**
+     * Connects the coalescer to the engine and its clock.
+     */
+    public interface Host {
+        long uptimeMillis();
+
+        boolean isVisible();
+
+        /** Calls {@link #onScheduledFrameDue()} after the given delay. */
+        void scheduleFrame(long delayMillis);
+
+        void cancelScheduledFrame();
+
+        /** Requests the actual redraw, which ends up in {@link #onFrameDrawn()}. */
+        void invalidate();
+    }
+
+    private final Host mHost;
+    private final long mWindowMillis;
+
+    private boolean mFrameScheduled;
+    private boolean mFrameRequested;
+    private long mFrameRequestedUptime;
+    private long mLastFrameUptime = Long.MIN_VALUE / 2;
+
+    private int mPendingReasons;
+    private int mPendingComplicationId = NO_COMPLICATION_ID;
+
+    private int mLastFrameReasons;
+    private int mLastFrameComplicationId = NO_COMPLICATION_ID;
+
+    private long mRequestCount;
+    private long mCoalescedCount;
+    private long mDroppedCount;
+    private long mFrameCount;
+    private final long[] mFramesByReason = new long[REASON_COUNT];
+
+    /**
+     * @param windowMillis Minimum time between two frames caused by non-urgent requests.
+     */
+    public FrameRequestCoalescer(Host host, long windowMillis) {
+        mHost = host;
+        mWindowMillis = windowMillis;
+    }
+
+    public void requestFrame(int reason) {
+        requestFrame(reason, NO_COMPLICATION_ID);
+    }
+
+    public void requestComplicationFrame(int complicationId) {
+        requestFrame(REASON_COMPLICATION, complicationId);
+    }
+
+    private void requestFrame(int reason, int complicationId) {
+        mRequestCount++;
+
+        if (!mHost.isVisible()) {
+            mDroppedCount++;
+            return;
+        }
+
+        long now = mHost.uptimeMillis();
+        boolean urgent = (reason & URGENT_REASONS) != 0;
+
+        if (mFrameRequested && now - mFrameRequestedUptime > REQUESTED_FRAME_TIMEOUT_MS) {
+            mFrameRequested = false;
+        }
+
+        boolean merged = mFrameRequested || mFrameScheduled;
+        mPendingReasons |= reason;
+        if (complicationId != NO_COMPLICATION_ID) {
+            mPendingComplicationId = complicationId;
+        }
+
+        if (merged) {
+            mCoalescedCount++;
+            if (mFrameScheduled && urgent) {
+                mHost.cancelScheduledFrame();
+                issueFrame(now);
+            }
+            return;
+        }
+
+        long delayMillis = mLastFrameUptime + mWindowMillis - now;
+        if (urgent || delayMillis <= 0) {
+            issueFrame(now);
+        } else {
+            mFrameScheduled = true;
+            mHost.scheduleFrame(delayMillis);
+        }
+    }
+
+    /**
+     * Called by the host once a delay passed to {@link Host#scheduleFrame(long)} has elapsed.
+     */
+    public void onScheduledFrameDue() {
+        if (!mFrameScheduled) {
+            return;
+        }
+        mFrameScheduled = false;
+
+        if (!mHost.isVisible()) {
+            mDroppedCount++;
+            clearPending();
+            return;
+        }
+        issueFrame(mHost.uptimeMillis());
+    }
+
+    /**
+     * Called at the start of every drawn frame. Returns the reasons merged into it, or 0 if the
+     * frame was not requested through this coalescer.
+     */
+    public int onFrameDrawn() {
+        if (mFrameScheduled) {
+            // Whatever was deferred is part of this frame now.
+            mHost.cancelScheduledFrame();
+            mFrameScheduled = false;
+        }
+
+        int reasons = mPendingReasons;
+        mLastFrameReasons = reasons;
+        mLastFrameComplicationId = mPendingComplicationId;
+        mLastFrameUptime = mHost.uptimeMillis();
+        mFrameRequested = false;
+        clearPending();
+
+        mFrameCount++;
+        for (int bit = 0; bit < REASON_COUNT; bit++) {
+            if ((reasons & (1 << bit)) != 0) {
+                mFramesByReason[bit]++;
+            }
+        }
+        return reasons;
+    }
+
+    /**
+     * Drops anything pending when the watch face is hidden.
+     */
+    public void onVisibilityChanged(boolean visible) {
+        if (!visible) {
+            if (mFrameScheduled) {
+                mHost.cancelScheduledFrame();
+                mFrameScheduled = false;
+            }
+            mFrameRequested = false;
+            clearPending();
+        }
+    }
+
+    public int getLastFrameReasons() {
+        return mLastFrameReasons;
+    }
+
+    /** Id of the last complication whose update caused the last frame. */
+    public int getLastFrameComplicationId() {
+        return mLastFrameComplicationId;
+    }
+
+    public long getRequestCount() {
+        return mRequestCount;
+    }
+
+    public long getFrameCount() {
+        return mFrameCount;
+    }
+
+    /** Requests that were merged into another frame. */
+    public long getCoalescedCount() {
+        return mCoalescedCount;
+    }
+
+    /** Requests that were dropped because the watch face was not visible. */
+    public long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    public void dump(PrintWriter writer) {
+        writer.println("Frame requests: requested=" + mRequestCount + " frames=" + mFrameCount
+                + " coalesced=" + mCoalescedCount + " dropped=" + mDroppedCount);
+        writer.print("  frames by reason:");
+        for (int bit = 0; bit < REASON_COUNT; bit++) {
+            writer.print(" " + REASON_NAMES[bit] + "=" + mFramesByReason[bit]);
+        }
+        writer.println();
+    }
+
+    private void issueFrame(long now) {
+        mFrameScheduled = false;
+        mFrameRequested = true;
+        mFrameRequestedUptime = now;
+        mHost.invalidate();
+    }
+
+    private void clearPending() {
+        mPendingReasons = 0;
+        mPendingComplicationId = NO_COMPLICATION_ID;
+    }
+}
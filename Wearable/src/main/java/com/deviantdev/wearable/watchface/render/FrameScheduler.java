@@ -0,0 +1,176 @@
+package com.deviantdev.wearable.watchface.render;
+
+import java.io.PrintWriter;
+
+/**
+ * Decides when the next interactive frame is due, so the second hand can sweep smoothly without
+ * running at a fixed high frame rate.
+ *
+ * Three modes are supported:
+ * <ul>
+ * <li>{@link #MODE_TICK}: one frame per second, the classic ticking second hand,</li>
+ * <li>{@link #MODE_FIXED}: a fixed low frame rate ({@link #FIXED_FRAMES_PER_SECOND}),</li>
+ * <li>{@link #MODE_ADAPTIVE}: starts at the highest rate of {@link #ADAPTIVE_FRAMES_PER_SECOND}
+ * and steps down while the measured frame cost exceeds its budget, and back up once frames are
+ * cheap again.</li>
+ * </ul>
+ *
+ * Frames are placed on fixed slots within each wall-clock second, and every delay is computed
+ * from the absolute time of the next slot. Late timers therefore never accumulate drift, and the
+ * first frame of each second lands on the second boundary. A frame rate limit, e.g. to save
+ * power, caps the rate of every mode. The scheduler only computes delays; the engine stops its
+ * timer altogether while not visible or in ambient mode.
+ */
+public class FrameScheduler {
+
+    public static final int MODE_TICK = 0;
+    public static final int MODE_FIXED = 1;
+    public static final int MODE_ADAPTIVE = 2;
+
+    private static final String[] MODE_NAMES = {"tick", "fixed", "adaptive"};
+
+    public static final int FIXED_FRAMES_PER_SECOND = 15;
+
+    /* Frame rates the adaptive mode steps through, highest first. */
+    static final int[] ADAPTIVE_FRAMES_PER_SECOND = {30, 15, 10, 5, 1};
+
+    /*
+     * A frame may take up to this fraction of the frame interval. Above it, the adaptive mode
+     * steps down to the next lower rate.
+     */
+    private static final float FRAME_COST_BUDGET = 0.25f;
+
+    /*
+     * The adaptive mode only steps up again after frames stayed below half the budget of the
+     * higher rate for this many seconds, so it does not oscillate between two rates.
+     */
+    private static final int STEP_UP_AFTER_SECONDS = 5;
+
+    /* Weight of a new sample in the moving average of the frame cost, as a power of two. */
+    private static final int COST_AVERAGE_SHIFT = 3;
+
+    private static final long MILLIS_PER_SECOND = 1000;
+
+    /*
+     * Shortest delay ever returned. A slot closer than this counts as the current one: the timer
+     * for it fired marginally early (the timer runs on uptime, slots on wall-clock time).
+     */
+    static final long MINIMUM_FRAME_DELAY_MS = 4;
+
+    private int mMode = MODE_TICK;
+    private int mAdaptiveLevel;
+    private int mFrameRateLimit = Integer.MAX_VALUE;
+
+    // Moving average of the frame cost in microseconds, 0 until the first sample.
+    private long mAverageCostMicros;
+    private int mCheapFrameCount;
+
+    private long mStepDownCount;
+    private long mStepUpCount;
+
+    public void setMode(int mode) {
+        if (mode == mMode) {
+            return;
+        }
+        mMode = mode;
+        mAdaptiveLevel = 0;
+        mAverageCostMicros = 0;
+        mCheapFrameCount = 0;
+    }
+
+    public int getMode() {
+        return mMode;
+    }
+
+    /**
+     * Caps the frame rate of all modes, or lifts the cap with {@link Integer#MAX_VALUE}.
+     */
+    public void setFrameRateLimit(int maxFramesPerSecond) {
+        mFrameRateLimit = Math.max(maxFramesPerSecond, 1);
+    }
+
+    public int getFramesPerSecond() {
+        return Math.min(getModeFramesPerSecond(), mFrameRateLimit);
+    }
+
+    private int getModeFramesPerSecond() {
+        switch (mMode) {
+            case MODE_FIXED:
+                return FIXED_FRAMES_PER_SECOND;
+            case MODE_ADAPTIVE:
+                return ADAPTIVE_FRAMES_PER_SECOND[mAdaptiveLevel];
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * Returns the delay from the given wall-clock time to the next frame slot at least
+     * {@link #MINIMUM_FRAME_DELAY_MS} away. A late frame therefore still targets the very next
+     * slot, and a timer that fires a few milliseconds early does not cause a second frame for the
+     * same slot.
+     */
+    public long getDelayToNextFrame(long currentTimeMillis) {
+        int framesPerSecond = getFramesPerSecond();
+        long secondStart = currentTimeMillis - currentTimeMillis % MILLIS_PER_SECOND;
+
+        for (long frame = 1; ; frame++) {
+            // Slot times are rounded up, so the last slot is exactly the next second boundary.
+            long slot = secondStart
+                    + (frame * MILLIS_PER_SECOND + framesPerSecond - 1) / framesPerSecond;
+            long delay = slot - currentTimeMillis;
+            if (delay >= MINIMUM_FRAME_DELAY_MS) {
+                return delay;
+            }
+        }
+    }
+
+    /**
+     * Feeds the cost of a drawn interactive frame into the adaptive mode.
+     */
+    public void onFrameDrawn(long costMicros) {
+        // While capped, frames do not tell what the uncapped rate could afford.
+        if (mMode != MODE_ADAPTIVE || getFramesPerSecond() != getModeFramesPerSecond()) {
+            return;
+        }
+
+        if (mAverageCostMicros == 0) {
+            mAverageCostMicros = costMicros;
+        } else {
+            mAverageCostMicros += (costMicros - mAverageCostMicros) >> COST_AVERAGE_SHIFT;
+        }
+
+        int framesPerSecond = ADAPTIVE_FRAMES_PER_SECOND[mAdaptiveLevel];
+        if (mAverageCostMicros > getBudgetMicros(framesPerSecond)
+                && mAdaptiveLevel < ADAPTIVE_FRAMES_PER_SECOND.length - 1) {
+            mAdaptiveLevel++;
+            mCheapFrameCount = 0;
+            mStepDownCount++;
+            return;
+        }
+
+        if (mAdaptiveLevel == 0) {
+            return;
+        }
+        int higherFramesPerSecond = ADAPTIVE_FRAMES_PER_SECOND[mAdaptiveLevel - 1];
+        if (mAverageCostMicros * 2 < getBudgetMicros(higherFramesPerSecond)) {
+            if (++mCheapFrameCount >= framesPerSecond * STEP_UP_AFTER_SECONDS) {
+                mAdaptiveLevel--;
+                mCheapFrameCount = 0;
+                mStepUpCount++;
+            }
+        } else {
+            mCheapFrameCount = 0;
+        }
+    }
+
+    public void dump(PrintWriter writer) {
+        writer.println("Frame scheduler: mode=" + MODE_NAMES[mMode] + " fps="
+                + getFramesPerSecond() + " averageCostMicros=" + mAverageCostMicros
+                + " stepDowns=" + mStepDownCount + " stepUps=" + mStepUpCount);
+    }
+
+    private static long getBudgetMicros(int framesPerSecond) {
+        return (long) (FRAME_COST_BUDGET * 1_000_000 / framesPerSecond);
+    }
+}
@@ -0,0 +1,31 @@
+package com.deviantdev.wearable.watchface.render;
+
+/**
+ * Rotation of the watch hands in degrees, clockwise from 12 o'clock.
+ *
+ * These reflect the rotation in degrees per unit of time, e.g. 360 / 60 = 6 per minute or second
+ * and 360 / 12 = 30 per hour.
+ */
+public final class HandAngles {
+
+    private HandAngles() {
+    }
+
+    /**
+     * Returns the rotation of the second hand, sweeping smoothly between seconds.
+     */
+    public static float getSecondRotation(int second, int millisecond) {
+        return (second + millisecond / 1000f) * 6f;
+    }
+
+    public static float getMinuteRotation(int minute) {
+        return minute * 6f;
+    }
+
+    /**
+     * Returns the rotation of the hour hand, which moves on by half a degree every minute.
+     */
+    public static float getHourRotation(int hour, int minute) {
+        return (hour * 30) + minute / 2f;
+    }
+}
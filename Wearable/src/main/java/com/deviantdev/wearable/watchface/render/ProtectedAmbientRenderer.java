@@ -0,0 +1,208 @@
+package com.deviantdev.wearable.watchface.render;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Draws the dial and hands of the ambient face on low-bit and burn-in protected screens.
+ *
+ * These screens should light as few pixels as possible and none for long: ticks are slim, the
+ * hands and the center circle are drawn as outlines, and the whole frame moves by a few pixels
+ * in a rotating pattern every minute. Everything is drawn with 1 px hairlines without
+ * anti-aliasing, so every pixel is either off or fully lit. The hands are stroked at their angle
+ * every frame; only the ticks, which never rotate, come from a pre-rasterized
+ * {@link Bitmap.Config#ALPHA_8} mask, placed at whole-pixel offsets.
+ *
+ * Lit pixels are counted on a rendered frame with {@link #countLitPixels(Bitmap)}. The renderer
+ * does not count them while drawing; {@link #dump(PrintWriter)} renders the last frame again
+ * off-screen and counts that.
+ */
+public class ProtectedAmbientRenderer {
+
+    /* Offsets of the whole frame, in pixels, one per minute in turn. */
+    private static final int[] SHIFT_X = {0, 2, 2, 0, -2, -2, -2, 0, 2};
+    private static final int[] SHIFT_Y = {0, 0, 2, 2, 2, 0, -2, -2, -2};
+    private static final int MAX_SHIFT = 2;
+
+    private static final float TICK_LENGTH = 8f;
+
+    /* Width of the outlined hands, between the outer edges of the outline. */
+    private static final int HAND_WIDTH = 5;
+
+    private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private Bitmap mDialMask;
+
+    private int mWidth;
+    private int mHeight;
+    private float mCenterGap;
+    private float mHourHandLength;
+    private float mMinuteHandLength;
+
+    // Hairline, i.e. exactly 1 px wide at any rotation, and never blended.
+    private final Paint mLinePaint = new Paint();
+    private final Paint mMaskPaint = new Paint();
+    private final Canvas mRasterCanvas = new Canvas();
+
+    // State of the last frame, to render it again for dump().
+    private long mFrameCount;
+    private long mLastFrameTimeMillis;
+    private int mLastColor;
+    private float mLastHoursRotation;
+    private float mLastMinutesRotation;
+
+    public ProtectedAmbientRenderer() {
+        mLinePaint.setAntiAlias(false);
+        mLinePaint.setStyle(Paint.Style.STROKE);
+        mLinePaint.setStrokeWidth(0f);
+        mMaskPaint.setAntiAlias(false);
+        mMaskPaint.setFilterBitmap(false);
+    }
+
+    /**
+     * Sets the sizes of the hands, used from the next frame on.
+     */
+    public void setHandGeometry(float centerGap, float hourHandLength, float minuteHandLength) {
+        mCenterGap = centerGap;
+        mHourHandLength = hourHandLength;
+        mMinuteHandLength = minuteHandLength;
+    }
+
+    /**
+     * Clears the canvas and shifts it for the minute of the given time. Everything up to
+     * {@link #endFrame(Canvas)} is drawn shifted, including complications drawn in between.
+     */
+    public void beginFrame(Canvas canvas, long currentTimeMillis, int color) {
+        int width = canvas.getWidth();
+        int height = canvas.getHeight();
+        if (width != mWidth || height != mHeight) {
+            mWidth = width;
+            mHeight = height;
+            release();
+        }
+
+        canvas.drawColor(Color.BLACK);
+        canvas.save();
+        int shift = (int) ((currentTimeMillis / MINUTE_MILLIS) % SHIFT_X.length);
+        canvas.translate(SHIFT_X[shift], SHIFT_Y[shift]);
+
+        mLinePaint.setColor(color);
+        mMaskPaint.setColor(color);
+        mLastFrameTimeMillis = currentTimeMillis;
+        mLastColor = color;
+    }
+
+    /**
+     * Draws the slim tick marks.
+     */
+    public void drawDial(Canvas canvas) {
+        if (mDialMask == null) {
+            rasterizeDial();
+        }
+        canvas.drawBitmap(mDialMask, 0, 0, mMaskPaint);
+    }
+
+    /**
+     * Draws the outlined hour and minute hands, rotated clockwise by the given degrees, and the
+     * center circle.
+     */
+    public void drawHands(Canvas canvas, float hoursRotation, float minutesRotation) {
+        drawHand(canvas, hoursRotation, mHourHandLength);
+        drawHand(canvas, minutesRotation, mMinuteHandLength);
+        canvas.drawCircle(mWidth / 2f, mHeight / 2f, mCenterGap, mLinePaint);
+
+        mLastHoursRotation = hoursRotation;
+        mLastMinutesRotation = minutesRotation;
+    }
+
+    /**
+     * Undoes the shift of {@link #beginFrame(Canvas, long, int)}.
+     */
+    public void endFrame(Canvas canvas) {
+        canvas.restore();
+        mFrameCount++;
+    }
+
+    /**
+     * Frees the tick mask. It is rasterized again on the next frame.
+     */
+    public void release() {
+        if (mDialMask != null) {
+            mDialMask.recycle();
+            mDialMask = null;
+        }
+    }
+
+    public void dump(PrintWriter writer) {
+        int litPixels = 0;
+        if (mFrameCount > 0) {
+            // Only on request: the frame is rendered again without complications and counted.
+            Bitmap frame = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(frame);
+            beginFrame(canvas, mLastFrameTimeMillis, mLastColor);
+            drawDial(canvas);
+            drawHands(canvas, mLastHoursRotation, mLastMinutesRotation);
+            canvas.restore();
+            litPixels = countLitPixels(frame);
+            frame.recycle();
+        }
+        int screenPixels = Math.max(mWidth * mHeight, 1);
+        writer.println("Protected ambient renderer: frames=" + mFrameCount + " litPixels="
+                + litPixels + " litPercent=" + (100f * litPixels / screenPixels));
+    }
+
+    /* The outline runs along the outer pixels of a HAND_WIDTH wide hand, from the gap to the tip. */
+    private void drawHand(Canvas canvas, float degrees, float length) {
+        float centerX = mWidth / 2f;
+        float centerY = mHeight / 2f;
+        float halfWidth = (HAND_WIDTH - 1) / 2f;
+        canvas.save();
+        canvas.rotate(degrees, centerX, centerY);
+        canvas.drawRect(centerX - halfWidth, centerY - length, centerX + halfWidth,
+                centerY - mCenterGap, mLinePaint);
+        canvas.restore();
+    }
+
+    private void rasterizeDial() {
+        mDialMask = Bitmap.createBitmap(mWidth, mHeight, Bitmap.Config.ALPHA_8);
+        mRasterCanvas.setBitmap(mDialMask);
+
+        // Ticks stay clear of the edge, so they remain visible at every shift.
+        float centerX = mWidth / 2f;
+        float centerY = mHeight / 2f;
+        float outerTickRadius = centerX - MAX_SHIFT;
+        float[] tickLines = new float[DialGeometry.TICK_LINES_SIZE];
+        DialGeometry.getTickLines(centerX, centerY, outerTickRadius - TICK_LENGTH,
+                outerTickRadius, tickLines);
+        int color = mLinePaint.getColor();
+        mLinePaint.setColor(Color.WHITE);
+        mRasterCanvas.drawLines(tickLines, mLinePaint);
+        mLinePaint.setColor(color);
+
+        mRasterCanvas.setBitmap(null);
+    }
+
+    /**
+     * Returns the number of pixels of a rendered {@link Bitmap.Config#ARGB_8888} frame that are
+     * not black.
+     */
+    public static int countLitPixels(Bitmap frame) {
+        int width = frame.getWidth();
+        int[] row = new int[width];
+        int count = 0;
+        for (int y = 0; y < frame.getHeight(); y++) {
+            frame.getPixels(row, 0, width, 0, y, width, 1);
+            for (int x = 0; x < width; x++) {
+                if ((row[x] & 0xffffff) != 0) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
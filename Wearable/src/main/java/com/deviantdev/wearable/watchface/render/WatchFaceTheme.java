@@ -0,0 +1,83 @@
+package com.deviantdev.wearable.watchface.render;
+
+import android.graphics.Paint;
+
+/**
+ * Immutable set of paints and colors for one state of the watch face, built by
+ * {@link WatchFaceThemeCache}.
+ *
+ * The paints are shared by every frame drawn in that state and must not be modified; switching
+ * state means switching to another theme, never changing a paint in place.
+ */
+public final class WatchFaceTheme {
+
+    public static final int STATE_AMBIENT = 1;
+    public static final int STATE_LOW_BIT_AMBIENT = 1 << 1;
+    public static final int STATE_BURN_IN_PROTECTION = 1 << 2;
+    public static final int STATE_MUTE = 1 << 3;
+    public static final int STATE_NO_SHADOWS = 1 << 4;
+
+    private final int mState;
+    private final int mColorGeneration;
+    private final int mBackgroundColor;
+    private final Paint mHourPaint;
+    private final Paint mMinutePaint;
+    private final Paint mSecondAndHighlightPaint;
+    private final Paint mTickAndCirclePaint;
+
+    WatchFaceTheme(int state, int colorGeneration, int backgroundColor, Paint hourPaint,
+            Paint minutePaint, Paint secondAndHighlightPaint, Paint tickAndCirclePaint) {
+        mState = state;
+        mColorGeneration = colorGeneration;
+        mBackgroundColor = backgroundColor;
+        mHourPaint = hourPaint;
+        mMinutePaint = minutePaint;
+        mSecondAndHighlightPaint = secondAndHighlightPaint;
+        mTickAndCirclePaint = tickAndCirclePaint;
+    }
+
+    public int getState() {
+        return mState;
+    }
+
+    /** Color behind the dial when no background image is shown. */
+    public int getBackgroundColor() {
+        return mBackgroundColor;
+    }
+
+    public Paint getHourPaint() {
+        return mHourPaint;
+    }
+
+    public Paint getMinutePaint() {
+        return mMinutePaint;
+    }
+
+    public Paint getSecondAndHighlightPaint() {
+        return mSecondAndHighlightPaint;
+    }
+
+    public Paint getTickAndCirclePaint() {
+        return mTickAndCirclePaint;
+    }
+
+    /**
+     * Returns whether both themes only differ in the alpha of their paints. Mute is the only
+     * state that changes nothing but alpha; any other state or color change also changes colors,
+     * stroke widths or shadows.
+     */
+    public boolean differsOnlyInAlpha(WatchFaceTheme other) {
+        return other != null && mColorGeneration == other.mColorGeneration
+                && (mState & ~STATE_MUTE) == (other.mState & ~STATE_MUTE);
+    }
+
+    /**
+     * Returns whether both themes draw the same dial, so a {@link DialLayer} built with one can be
+     * reused for the other. The layer is blitted opaque, so it must be rebuilt if the tick paint's
+     * alpha differs.
+     */
+    public boolean hasSameDial(WatchFaceTheme other) {
+        return differsOnlyInAlpha(other)
+                && mTickAndCirclePaint.getAlpha() == other.mTickAndCirclePaint.getAlpha();
+    }
+}
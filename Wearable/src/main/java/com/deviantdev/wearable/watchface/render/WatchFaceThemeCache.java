@@ -0,0 +1,128 @@
+package com.deviantdev.wearable.watchface.render;
+
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.SparseArray;
+
+/**
+ * Builds a {@link WatchFaceTheme} for each combination of state flags on first use and keeps it,
+ * so switching between ambient, mute or power saving states is a single lookup.
+ *
+ * The user's colors are not part of the state flags; changing them with
+ * {@link #setColors(int, int)} drops all cached themes.
+ */
+public class WatchFaceThemeCache {
+
+    /* Alpha of the hands while the interruption filter is set to mute. */
+    private static final int MUTE_HAND_ALPHA = 100;
+    private static final int MUTE_SECOND_HAND_ALPHA = 80;
+
+    private final float mHourStrokeWidth;
+    private final float mMinuteStrokeWidth;
+    private final float mSecondAndTickStrokeWidth;
+    private final float mShadowRadius;
+
+    private final SparseArray<WatchFaceTheme> mThemes = new SparseArray<>();
+
+    private int mBackgroundColor;
+    private int mHighlightColor;
+    // Incremented whenever the colors change, so themes of different colors can be told apart.
+    private int mColorGeneration;
+
+    public WatchFaceThemeCache(float hourStrokeWidth, float minuteStrokeWidth,
+            float secondAndTickStrokeWidth, float shadowRadius) {
+        mHourStrokeWidth = hourStrokeWidth;
+        mMinuteStrokeWidth = minuteStrokeWidth;
+        mSecondAndTickStrokeWidth = secondAndTickStrokeWidth;
+        mShadowRadius = shadowRadius;
+    }
+
+    /**
+     * Sets the user's background and highlight colors.
+     */
+    public void setColors(int backgroundColor, int highlightColor) {
+        if (mColorGeneration != 0 && backgroundColor == mBackgroundColor
+                && highlightColor == mHighlightColor) {
+            return;
+        }
+        mBackgroundColor = backgroundColor;
+        mHighlightColor = highlightColor;
+        mColorGeneration++;
+        mThemes.clear();
+    }
+
+    /**
+     * Returns the theme for a combination of {@link WatchFaceTheme} state flags. The low-bit and
+     * burn-in flags only matter in ambient mode and are ignored otherwise.
+     */
+    public WatchFaceTheme get(int state) {
+        if ((state & WatchFaceTheme.STATE_AMBIENT) == 0) {
+            state &= ~(WatchFaceTheme.STATE_LOW_BIT_AMBIENT
+                    | WatchFaceTheme.STATE_BURN_IN_PROTECTION);
+        }
+
+        WatchFaceTheme theme = mThemes.get(state);
+        if (theme == null) {
+            theme = build(state);
+            mThemes.put(state, theme);
+        }
+        return theme;
+    }
+
+    private WatchFaceTheme build(int state) {
+        boolean ambient = (state & WatchFaceTheme.STATE_AMBIENT) != 0;
+        boolean mute = (state & WatchFaceTheme.STATE_MUTE) != 0;
+
+        int handColor;
+        int highlightColor;
+        int shadowColor;
+        if (ambient) {
+            handColor = Color.WHITE;
+            highlightColor = Color.WHITE;
+            // No shadows in ambient mode.
+            shadowColor = Color.TRANSPARENT;
+        } else {
+            // Hands contrast with the background; their shadows match it.
+            handColor = (mBackgroundColor == Color.WHITE) ? Color.BLACK : Color.WHITE;
+            highlightColor = mHighlightColor;
+            shadowColor = ((state & WatchFaceTheme.STATE_NO_SHADOWS) != 0)
+                    ? Color.TRANSPARENT : (handColor == Color.WHITE ? Color.BLACK : Color.WHITE);
+        }
+
+        // Screens that need protection in ambient mode only show black behind the dial.
+        int backgroundColor = (ambient && (state & (WatchFaceTheme.STATE_LOW_BIT_AMBIENT
+                | WatchFaceTheme.STATE_BURN_IN_PROTECTION)) != 0) ? Color.BLACK : mBackgroundColor;
+
+        Paint hourPaint = createPaint(handColor, mHourStrokeWidth, !ambient, shadowColor);
+        Paint minutePaint = createPaint(handColor, mMinuteStrokeWidth, !ambient, shadowColor);
+        Paint secondAndHighlightPaint = createPaint(highlightColor, mSecondAndTickStrokeWidth,
+                !ambient, shadowColor);
+        Paint tickAndCirclePaint = createPaint(handColor, mSecondAndTickStrokeWidth, !ambient,
+                shadowColor);
+        hourPaint.setStrokeCap(Paint.Cap.ROUND);
+        minutePaint.setStrokeCap(Paint.Cap.ROUND);
+        secondAndHighlightPaint.setStrokeCap(Paint.Cap.ROUND);
+        tickAndCirclePaint.setStyle(Paint.Style.STROKE);
+
+        // Dim display in mute mode.
+        if (mute) {
+            hourPaint.setAlpha(MUTE_HAND_ALPHA);
+            minutePaint.setAlpha(MUTE_HAND_ALPHA);
+            secondAndHighlightPaint.setAlpha(MUTE_SECOND_HAND_ALPHA);
+        }
+
+        return new WatchFaceTheme(state, mColorGeneration, backgroundColor, hourPaint,
+                minutePaint, secondAndHighlightPaint, tickAndCirclePaint);
+    }
+
+    private Paint createPaint(int color, float strokeWidth, boolean antiAlias, int shadowColor) {
+        Paint paint = new Paint();
+        paint.setColor(color);
+        paint.setStrokeWidth(strokeWidth);
+        paint.setAntiAlias(antiAlias);
+        if (shadowColor != Color.TRANSPARENT) {
+            paint.setShadowLayer(mShadowRadius, 0, 0, shadowColor);
+        }
+        return paint;
+    }
+}
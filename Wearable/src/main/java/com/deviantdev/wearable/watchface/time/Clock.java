@@ -0,0 +1,36 @@
+package com.deviantdev.wearable.watchface.time;
+
+import android.os.SystemClock;
+
+/**
+ * Source of the current time for the watch face engine. The engine reads the time only through
+ * this interface, so headless rendering can drive it with a fixed or stepped time.
+ */
+public interface Clock {
+
+    /**
+     * The system clocks, used unless another clock is set.
+     */
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public long uptimeMillis() {
+            return SystemClock.uptimeMillis();
+        }
+    };
+
+    /**
+     * Returns the wall-clock time in milliseconds since the epoch.
+     */
+    long currentTimeMillis();
+
+    /**
+     * Returns the milliseconds since boot, not counting deep sleep, as used by message timing
+     * and input event times.
+     */
+    long uptimeMillis();
+}
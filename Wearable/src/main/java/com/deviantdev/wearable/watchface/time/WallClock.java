@@ -0,0 +1,157 @@
+package com.deviantdev.wearable.watchface.time;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns epoch milliseconds into the local hour, minute, second and millisecond using plain integer
+ * math, as a lightweight replacement for {@link java.util.Calendar} on the drawing path.
+ *
+ * The zone offset is cached together with the interval it is valid for. It is only looked up
+ * again once the time leaves that interval (the next DST or rule transition) or when
+ * {@link #setTimeZone(TimeZone)} is called, e.g. after {@code ACTION_TIMEZONE_CHANGED}.
+ */
+public class WallClock {
+
+    private static final long MILLIS_PER_SECOND = TimeUnit.SECONDS.toMillis(1);
+    private static final long MILLIS_PER_MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long MILLIS_PER_HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long MILLIS_PER_DAY = TimeUnit.DAYS.toMillis(1);
+
+    /*
+     * Transitions are searched by stepping forward and then bisecting to the exact millisecond.
+     * The step has to be shorter than the shortest gap between two transitions.
+     */
+    private static final long TRANSITION_SEARCH_STEP_MS = TimeUnit.HOURS.toMillis(12);
+    private static final long TRANSITION_SEARCH_HORIZON_MS = TimeUnit.DAYS.toMillis(366);
+
+    private TimeZone mTimeZone;
+
+    private int mZoneOffset;
+    // The cached offset is valid for [mOffsetValidFrom, mOffsetValidUntil).
+    private long mOffsetValidFrom;
+    private long mOffsetValidUntil;
+
+    private long mTimeInMillis;
+    private int mHour;
+    private int mMinute;
+    private int mSecond;
+    private int mMillisecond;
+
+    public WallClock(TimeZone timeZone) {
+        setTimeZone(timeZone);
+    }
+
+    /**
+     * Switches to the given time zone, dropping the cached offset.
+     */
+    public void setTimeZone(TimeZone timeZone) {
+        mTimeZone = timeZone;
+        mOffsetValidFrom = Long.MAX_VALUE;
+        mOffsetValidUntil = Long.MIN_VALUE;
+        setTimeInMillis(mTimeInMillis);
+    }
+
+    public TimeZone getTimeZone() {
+        return mTimeZone;
+    }
+
+    public void setTimeInMillis(long timeInMillis) {
+        if (timeInMillis < mOffsetValidFrom) {
+            // The clock stepped back, e.g. after a network time update.
+            if (!extendZoneOffset(timeInMillis)) {
+                refreshZoneOffset(timeInMillis);
+            }
+        } else if (timeInMillis >= mOffsetValidUntil) {
+            refreshZoneOffset(timeInMillis);
+        }
+
+        mTimeInMillis = timeInMillis;
+
+        long millisOfDay = floorMod(timeInMillis + mZoneOffset, MILLIS_PER_DAY);
+        mMillisecond = (int) (millisOfDay % MILLIS_PER_SECOND);
+        mSecond = (int) ((millisOfDay / MILLIS_PER_SECOND) % 60);
+        mMinute = (int) ((millisOfDay / MILLIS_PER_MINUTE) % 60);
+        mHour = (int) ((millisOfDay / MILLIS_PER_HOUR) % 12);
+    }
+
+    public long getTimeInMillis() {
+        return mTimeInMillis;
+    }
+
+    /** Hour of the morning or afternoon (0-11), same as {@link java.util.Calendar#HOUR}. */
+    public int getHour() {
+        return mHour;
+    }
+
+    public int getMinute() {
+        return mMinute;
+    }
+
+    public int getSecond() {
+        return mSecond;
+    }
+
+    public int getMillisecond() {
+        return mMillisecond;
+    }
+
+    /** Current zone offset from UTC, including DST, in milliseconds. */
+    public int getZoneOffset() {
+        return mZoneOffset;
+    }
+
+    /** First instant at which the cached zone offset has to be looked up again. */
+    public long getOffsetValidUntil() {
+        return mOffsetValidUntil;
+    }
+
+    /*
+     * Transitions are at least one search step apart. If the offset a little less than one step
+     * before the cached interval is the same, there is no transition in between, and the interval
+     * can just start earlier.
+     */
+    private boolean extendZoneOffset(long timeInMillis) {
+        if (mOffsetValidFrom >= mOffsetValidUntil
+                || mOffsetValidFrom - timeInMillis >= TRANSITION_SEARCH_STEP_MS
+                || mTimeZone.getOffset(timeInMillis) != mZoneOffset) {
+            return false;
+        }
+        mOffsetValidFrom = timeInMillis;
+        return true;
+    }
+
+    private void refreshZoneOffset(long timeInMillis) {
+        int offset = mTimeZone.getOffset(timeInMillis);
+
+        long low = timeInMillis;
+        long high = timeInMillis + TRANSITION_SEARCH_STEP_MS;
+        while (mTimeZone.getOffset(high) == offset) {
+            low = high;
+            if (high - timeInMillis >= TRANSITION_SEARCH_HORIZON_MS) {
+                // No transition coming up soon, check again once the horizon is reached.
+                break;
+            }
+            high += TRANSITION_SEARCH_STEP_MS;
+        }
+
+        // Bisect to the first millisecond with a different offset.
+        while (high - low > 1) {
+            long middle = low + (high - low) / 2;
+            if (mTimeZone.getOffset(middle) == offset) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+
+        mZoneOffset = offset;
+        mOffsetValidFrom = timeInMillis;
+        mOffsetValidUntil = high;
+    }
+
+    private static long floorMod(long value, long divisor) {
+        long remainder = value % divisor;
+        return (remainder < 0) ? remainder + divisor : remainder;
+    }
+}
@@ -0,0 +1,176 @@
+package com.deviantdev.wearable.watchface;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import android.graphics.Bitmap;
+import android.graphics.PixelFormat;
+import android.os.Bundle;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.ComplicationText;
+import android.view.SurfaceHolder;
+
+import com.deviantdev.wearable.watchface.time.Clock;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ServiceController;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the engine through a day in ambient mode, one minute tick at a time, and measures how long
+ * each tick keeps the CPU awake: from {@code onTimeTick()} until the frame is drawn. The results
+ * of every mode are written to {@code build/reports/frame-times/AmbientDaySimulationTest.csv}.
+ *
+ * The frames themselves are checked too: every tick changes the frame, and the face looks the same
+ * twelve hours later, so no cache keeps a stale frame or drifts over the day.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+@Config(shadows = ShadowComplicationDrawable.class)
+public class AmbientDaySimulationTest {
+
+    private static final int SIZE = 390;
+
+    private static final File REPORT_FILE =
+            new File("build/reports/frame-times/AmbientDaySimulationTest.csv");
+
+    /* 2026-01-15 00:00:00 UTC. */
+    private static final long MIDNIGHT = 1768435200000L;
+    private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final int TICKS_PER_DAY = 24 * 60;
+    private static final int TICKS_PER_HALF_DAY = 12 * 60;
+
+    private final FixedClock mClock = new FixedClock();
+    private TimeZone mDefaultTimeZone;
+    private ServiceController<WatchFaceService> mController;
+    private WatchFaceService.Engine mEngine;
+    private Bitmap mFrame;
+    private int[] mPixels;
+
+    private PrintWriter mReport;
+
+    @Before
+    public void setUp() throws IOException {
+        mDefaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+
+        mController = Robolectric.buildService(WatchFaceService.class);
+        WatchFaceService service = mController.create().get();
+        service.setClock(mClock);
+        mClock.mTimeMillis = MIDNIGHT;
+
+        mEngine = service.onCreateEngine();
+        SurfaceHolder holder = mEngine.getSurfaceHolder();
+        mEngine.onCreate(holder);
+        mEngine.onSurfaceChanged(holder, PixelFormat.RGBX_8888, SIZE, SIZE);
+        mEngine.onComplicationDataUpdate(
+                WatchFaceComplicationConfiguration.Complication.LEFT.getId(),
+                new ComplicationData.Builder(ComplicationData.TYPE_SHORT_TEXT)
+                        .setShortText(ComplicationText.plainText("12"))
+                        .setShortTitle(ComplicationText.plainText("Steps"))
+                        .build());
+        ShadowLooper.idleMainLooper();
+
+        mFrame = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        mPixels = new int[SIZE * SIZE];
+
+        REPORT_FILE.getParentFile().mkdirs();
+        mReport = new PrintWriter(REPORT_FILE, "UTF-8");
+        mReport.println("mode,ticks,total_ms,median_us,p99_us,max_us");
+    }
+
+    @After
+    public void tearDown() {
+        mReport.close();
+        mEngine.onDestroy();
+        mController.destroy();
+        mFrame.recycle();
+        TimeZone.setDefault(mDefaultTimeZone);
+    }
+
+    @Test
+    public void ambientDay() {
+        simulateDay("ambient", false, false);
+        simulateDay("low_bit_ambient", true, false);
+        simulateDay("burn_in_ambient", false, true);
+    }
+
+    private void simulateDay(String mode, boolean lowBitAmbient, boolean burnInProtection) {
+        Bundle properties = new Bundle();
+        properties.putBoolean(WatchFaceService.PROPERTY_LOW_BIT_AMBIENT, lowBitAmbient);
+        properties.putBoolean(WatchFaceService.PROPERTY_BURN_IN_PROTECTION, burnInProtection);
+        mEngine.onPropertiesChanged(properties);
+        mEngine.onAmbientModeChanged(true);
+        mClock.mTimeMillis = MIDNIGHT;
+        mEngine.renderFrame(mFrame);
+        ShadowLooper.idleMainLooper();
+
+        long[] wakeNanos = new long[TICKS_PER_DAY];
+        int[] frameHashes = new int[TICKS_PER_HALF_DAY];
+        int previousHash = frameHash();
+        for (int tick = 0; tick < TICKS_PER_DAY; tick++) {
+            mClock.mTimeMillis = MIDNIGHT + (tick + 1) * MINUTE_MILLIS;
+
+            long start = System.nanoTime();
+            mEngine.onTimeTick();
+            mEngine.renderFrame(mFrame);
+            wakeNanos[tick] = System.nanoTime() - start;
+            ShadowLooper.idleMainLooper();
+
+            int hash = frameHash();
+            assertFalse(mode + ": frame unchanged at tick " + tick, hash == previousHash);
+            previousHash = hash;
+            if (tick < TICKS_PER_HALF_DAY) {
+                frameHashes[tick] = hash;
+            } else {
+                assertEquals(mode + ": frame differs from twelve hours earlier at tick " + tick,
+                        frameHashes[tick - TICKS_PER_HALF_DAY], hash);
+            }
+        }
+
+        long totalNanos = 0;
+        for (long nanos : wakeNanos) {
+            totalNanos += nanos;
+        }
+        Arrays.sort(wakeNanos);
+        mReport.println(String.format(Locale.US, "%s,%d,%d,%d,%d,%d", mode, TICKS_PER_DAY,
+                TimeUnit.NANOSECONDS.toMillis(totalNanos),
+                TimeUnit.NANOSECONDS.toMicros(wakeNanos[TICKS_PER_DAY / 2]),
+                TimeUnit.NANOSECONDS.toMicros(wakeNanos[TICKS_PER_DAY * 99 / 100]),
+                TimeUnit.NANOSECONDS.toMicros(wakeNanos[TICKS_PER_DAY - 1])));
+    }
+
+    private int frameHash() {
+        mFrame.getPixels(mPixels, 0, SIZE, 0, 0, SIZE, SIZE);
+        return Arrays.hashCode(mPixels);
+    }
+
+    private static final class FixedClock implements Clock {
+        private long mTimeMillis;
+
+        @Override
+        public long currentTimeMillis() {
+            return mTimeMillis;
+        }
+
+        @Override
+        public long uptimeMillis() {
+            return mTimeMillis;
+        }
+    }
+}
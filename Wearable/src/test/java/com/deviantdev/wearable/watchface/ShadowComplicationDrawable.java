@@ -0,0 +1,158 @@
+package com.deviantdev.wearable.watchface;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.ComplicationText;
+import android.support.wearable.complications.rendering.ComplicationDrawable;
+
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.annotation.RealObject;
+
+/**
+ * Draws complications in engine tests in place of the wearable library's renderer, whose output
+ * depends on the library version and the device's fonts and icons.
+ *
+ * It renders the inputs the engine controls, in the colors the engine set for the current mode:
+ * the border, the arc of a ranged value, and the short text and title. Like the library, it
+ * draws nothing without active data, leaves out the background in burn-in protection mode and
+ * turns off anti-aliasing in low-bit ambient mode.
+ */
+@Implements(ComplicationDrawable.class)
+public class ShadowComplicationDrawable {
+
+    @RealObject
+    private ComplicationDrawable mRealDrawable;
+
+    private final Paint mPaint = new Paint();
+    private final RectF mArcBounds = new RectF();
+
+    private ComplicationData mData;
+    private boolean mInAmbientMode;
+    private boolean mLowBitAmbient;
+    private boolean mBurnInProtection;
+
+    private int mBackgroundColorActive = Color.BLACK;
+    private int mBorderColorActive = Color.WHITE;
+    private int mBorderColorAmbient = Color.WHITE;
+    private int mRangedValueColorActive = Color.WHITE;
+    private int mRangedValueColorAmbient = Color.WHITE;
+
+    @Implementation
+    protected void setComplicationData(ComplicationData data) {
+        mData = data;
+    }
+
+    @Implementation
+    protected void setInAmbientMode(boolean inAmbientMode) {
+        mInAmbientMode = inAmbientMode;
+    }
+
+    @Implementation
+    protected void setLowBitAmbient(boolean lowBitAmbient) {
+        mLowBitAmbient = lowBitAmbient;
+    }
+
+    @Implementation
+    protected void setBurnInProtection(boolean burnInProtection) {
+        mBurnInProtection = burnInProtection;
+    }
+
+    @Implementation
+    protected void setBackgroundColorActive(int color) {
+        mBackgroundColorActive = color;
+    }
+
+    @Implementation
+    protected void setBorderColorActive(int color) {
+        mBorderColorActive = color;
+    }
+
+    @Implementation
+    protected void setBorderColorAmbient(int color) {
+        mBorderColorAmbient = color;
+    }
+
+    @Implementation
+    protected void setRangedValuePrimaryColorActive(int color) {
+        mRangedValueColorActive = color;
+    }
+
+    @Implementation
+    protected void setRangedValuePrimaryColorAmbient(int color) {
+        mRangedValueColorAmbient = color;
+    }
+
+    @Implementation
+    protected boolean onTap(int x, int y) {
+        return mData != null && mData.getTapAction() != null
+                && mRealDrawable.getBounds().contains(x, y);
+    }
+
+    @Implementation
+    protected void draw(Canvas canvas, long currentTimeMillis) {
+        if (mData == null || !mData.isActive(currentTimeMillis)) {
+            return;
+        }
+        int type = mData.getType();
+        if (type != ComplicationData.TYPE_SHORT_TEXT
+                && type != ComplicationData.TYPE_RANGED_VALUE) {
+            return;
+        }
+
+        Rect bounds = mRealDrawable.getBounds();
+        float radius = Math.min(bounds.width(), bounds.height()) / 2f;
+        float strokeWidth = Math.max(radius / 16f, 1f);
+        mPaint.reset();
+        mPaint.setAntiAlias(!(mInAmbientMode && mLowBitAmbient));
+
+        if (!mInAmbientMode || !mBurnInProtection) {
+            mPaint.setStyle(Paint.Style.FILL);
+            mPaint.setColor(mInAmbientMode ? Color.BLACK : mBackgroundColorActive);
+            canvas.drawCircle(bounds.exactCenterX(), bounds.exactCenterY(), radius, mPaint);
+        }
+
+        mPaint.setStyle(Paint.Style.STROKE);
+        mPaint.setStrokeWidth(strokeWidth);
+        mPaint.setColor(mInAmbientMode ? mBorderColorAmbient : mBorderColorActive);
+        canvas.drawCircle(bounds.exactCenterX(), bounds.exactCenterY(), radius - strokeWidth / 2,
+                mPaint);
+
+        if (type == ComplicationData.TYPE_RANGED_VALUE) {
+            float range = mData.getMaxValue() - mData.getMinValue();
+            float fraction = range > 0 ? (mData.getValue() - mData.getMinValue()) / range : 0;
+            float inset = strokeWidth * 2.5f;
+            mArcBounds.set(bounds);
+            mArcBounds.inset(inset, inset);
+            mPaint.setStrokeWidth(strokeWidth * 2);
+            mPaint.setColor(mInAmbientMode ? mRangedValueColorAmbient : mRangedValueColorActive);
+            canvas.drawArc(mArcBounds, -90, 360 * Math.max(0, Math.min(fraction, 1)), false,
+                    mPaint);
+        }
+
+        mPaint.setStyle(Paint.Style.FILL);
+        mPaint.setColor(Color.WHITE);
+        mPaint.setTextAlign(Paint.Align.CENTER);
+        mPaint.setTextSize(radius / 2);
+        drawText(canvas, mData.getShortText(), currentTimeMillis, bounds.exactCenterY());
+        mPaint.setTextSize(radius / 3);
+        drawText(canvas, mData.getShortTitle(), currentTimeMillis,
+                bounds.exactCenterY() + radius / 2);
+    }
+
+    private void drawText(Canvas canvas, ComplicationText text, long currentTimeMillis,
+            float baseline) {
+        if (text == null) {
+            return;
+        }
+        CharSequence value = text.getText(RuntimeEnvironment.getApplication(),
+                currentTimeMillis);
+        canvas.drawText(value.toString(), mRealDrawable.getBounds().exactCenterX(), baseline,
+                mPaint);
+    }
+}
@@ -0,0 +1,275 @@
+package com.deviantdev.wearable.watchface;
+
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.graphics.PixelFormat;
+import android.os.Bundle;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.ComplicationText;
+import android.view.SurfaceHolder;
+
+import com.deviantdev.wearable.watchface.time.Clock;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ServiceController;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Drives the watch face engine through its lifecycle without a device and compares the frames it
+ * draws with golden images in {@code src/test/goldens}, for fixed times and every combination of
+ * theme, ambient mode, screen protection and mute mode. Both complication slots show data, drawn
+ * by {@link ShadowComplicationDrawable}. The draw times of every frame are written to
+ * {@code build/reports/frame-times/WatchFaceRenderingTest.csv}.
+ *
+ * One engine renders all combinations in turn, so stale caches between states show up as
+ * differences too. A missing golden image is recorded from the current rendering and the test
+ * fails; to accept an intended change, delete the affected images, run the test, check the new
+ * images and commit them. Frames that do not match are written to
+ * {@code build/goldens-failed}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+@Config(shadows = ShadowComplicationDrawable.class)
+public class WatchFaceRenderingTest {
+
+    private static final int SIZE = 390;
+
+    private static final File GOLDEN_DIR = new File("src/test/goldens");
+    private static final File FAILED_DIR = new File("build/goldens-failed");
+    private static final File REPORT_FILE =
+            new File("build/reports/frame-times/WatchFaceRenderingTest.csv");
+
+    /* A pixel differs if a channel is further off than this, e.g. from another Skia version. */
+    private static final int CHANNEL_TOLERANCE = 16;
+    private static final float MAX_DIFFERING_PIXEL_PERCENT = 0.5f;
+
+    /* 2026-01-15 10:10:30 and 04:47:15 UTC. */
+    private static final long TEN_TEN = 1768471830000L;
+    private static final long FOUR_FORTY_SEVEN = 1768452435000L;
+
+    private static final int MEASURED_FRAMES = 20;
+
+    private static final int MODE_INTERACTIVE = 0;
+    private static final int MODE_AMBIENT = 1;
+    private static final int MODE_LOW_BIT_AMBIENT = 2;
+    private static final int MODE_BURN_IN_AMBIENT = 3;
+    private static final String[] MODE_NAMES = {
+            "interactive", "ambient", "low_bit_ambient", "burn_in_ambient"};
+
+    /* Background and highlight colors. */
+    private static final int[][] THEMES = {{Color.BLACK, Color.RED}, {0xff1a237e, 0xffffeb3b}};
+    private static final String[] THEME_NAMES = {"default", "navy"};
+
+    private final FixedClock mClock = new FixedClock();
+    private TimeZone mDefaultTimeZone;
+    private ServiceController<WatchFaceService> mController;
+    private WatchFaceService mService;
+    private WatchFaceService.Engine mEngine;
+    private Bitmap mFrame;
+
+    private final List<String> mFailures = new ArrayList<>();
+    private final List<String> mFrameTimes = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mDefaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+
+        mController = Robolectric.buildService(WatchFaceService.class);
+        mService = mController.create().get();
+        mService.setClock(mClock);
+        mClock.mTimeMillis = TEN_TEN;
+
+        mEngine = mService.onCreateEngine();
+        SurfaceHolder holder = mEngine.getSurfaceHolder();
+        mEngine.onCreate(holder);
+        mEngine.onSurfaceChanged(holder, PixelFormat.RGBX_8888, SIZE, SIZE);
+        mFrame = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+
+        mEngine.onComplicationDataUpdate(
+                WatchFaceComplicationConfiguration.Complication.LEFT.getId(),
+                new ComplicationData.Builder(ComplicationData.TYPE_SHORT_TEXT)
+                        .setShortText(ComplicationText.plainText("12"))
+                        .setShortTitle(ComplicationText.plainText("Steps"))
+                        .build());
+        mEngine.onComplicationDataUpdate(
+                WatchFaceComplicationConfiguration.Complication.RIGHT.getId(),
+                new ComplicationData.Builder(ComplicationData.TYPE_RANGED_VALUE)
+                        .setValue(3)
+                        .setMinValue(0)
+                        .setMaxValue(10)
+                        .setShortText(ComplicationText.plainText("3"))
+                        .build());
+        // Delivers the (empty) complication snapshot.
+        ShadowLooper.idleMainLooper();
+    }
+
+    @After
+    public void tearDown() {
+        mEngine.onDestroy();
+        mController.destroy();
+        mFrame.recycle();
+        TimeZone.setDefault(mDefaultTimeZone);
+    }
+
+    @Test
+    public void framesMatchGoldenImages() throws IOException {
+        for (int theme = 0; theme < THEMES.length; theme++) {
+            for (int mode = 0; mode < MODE_NAMES.length; mode++) {
+                for (boolean mute : new boolean[] {false, true}) {
+                    render(theme, mode, mute, 0, TEN_TEN);
+                }
+            }
+        }
+
+        // The unread indicator, and other hand positions with the shifted protected frame.
+        render(0, MODE_INTERACTIVE, false, 3, TEN_TEN);
+        render(0, MODE_AMBIENT, false, 3, TEN_TEN);
+        render(0, MODE_INTERACTIVE, false, 0, FOUR_FORTY_SEVEN);
+        render(0, MODE_BURN_IN_AMBIENT, false, 0, FOUR_FORTY_SEVEN);
+
+        writeFrameTimes();
+        assertTrue(mFailures.toString(), mFailures.isEmpty());
+    }
+
+    private void render(int theme, int mode, boolean mute, int unreadCount, long timeMillis)
+            throws IOException {
+        WatchFacePreferences preferences = WatchFacePreferences.getInstance(mService);
+        preferences.setBackgroundColor(THEMES[theme][0]);
+        preferences.setWatchHandHighlightColor(THEMES[theme][1]);
+        // Delivers the change to the engine.
+        ShadowLooper.idleMainLooper();
+
+        Bundle properties = new Bundle();
+        properties.putBoolean(WatchFaceService.PROPERTY_LOW_BIT_AMBIENT,
+                mode == MODE_LOW_BIT_AMBIENT);
+        properties.putBoolean(WatchFaceService.PROPERTY_BURN_IN_PROTECTION,
+                mode == MODE_BURN_IN_AMBIENT);
+        mEngine.onPropertiesChanged(properties);
+        mEngine.onAmbientModeChanged(mode != MODE_INTERACTIVE);
+        mEngine.onInterruptionFilterChanged(mute
+                ? WatchFaceService.INTERRUPTION_FILTER_NONE
+                : WatchFaceService.INTERRUPTION_FILTER_ALL);
+        mEngine.onUnreadCountChanged(unreadCount);
+        mClock.mTimeMillis = timeMillis;
+
+        String name = String.format(Locale.US, "%s_%s%s%s_%s", THEME_NAMES[theme],
+                MODE_NAMES[mode], mute ? "_mute" : "", unreadCount > 0 ? "_unread" : "",
+                timeMillis == TEN_TEN ? "1010" : "0447");
+
+        long firstFrameMicros = mEngine.renderFrame(mFrame);
+        compareWithGolden(name);
+
+        long[] frameMicros = new long[MEASURED_FRAMES];
+        for (int frame = 0; frame < MEASURED_FRAMES; frame++) {
+            frameMicros[frame] = mEngine.renderFrame(mFrame);
+        }
+        Arrays.sort(frameMicros);
+        mFrameTimes.add(String.format(Locale.US, "%s,%d,%d,%d", name, firstFrameMicros,
+                frameMicros[MEASURED_FRAMES / 2], frameMicros[MEASURED_FRAMES - 1]));
+    }
+
+    /* One line per rendering: first frame, then median and maximum of the following frames. */
+    private void writeFrameTimes() throws IOException {
+        REPORT_FILE.getParentFile().mkdirs();
+        PrintWriter writer = new PrintWriter(REPORT_FILE, "UTF-8");
+        try {
+            writer.println("rendering,first_frame_us,median_us,max_us");
+            for (String line : mFrameTimes) {
+                writer.println(line);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void compareWithGolden(String name) throws IOException {
+        File golden = new File(GOLDEN_DIR, name + ".png");
+        if (!golden.exists()) {
+            writePng(mFrame, golden);
+            mFailures.add("Recorded missing golden image " + golden);
+            return;
+        }
+
+        Bitmap expected = BitmapFactory.decodeFile(golden.getPath());
+        int differing = countDifferingPixels(expected, mFrame);
+        expected.recycle();
+        float differingPercent = 100f * differing / (SIZE * SIZE);
+        if (differingPercent > MAX_DIFFERING_PIXEL_PERCENT) {
+            writePng(mFrame, new File(FAILED_DIR, name + ".png"));
+            mFailures.add(String.format(Locale.US, "%s: %.2f%% of the pixels differ", name,
+                    differingPercent));
+        }
+    }
+
+    private static int countDifferingPixels(Bitmap expected, Bitmap actual) {
+        if (expected.getWidth() != actual.getWidth()
+                || expected.getHeight() != actual.getHeight()) {
+            return actual.getWidth() * actual.getHeight();
+        }
+        int width = actual.getWidth();
+        int height = actual.getHeight();
+        int[] expectedPixels = new int[width * height];
+        int[] actualPixels = new int[width * height];
+        expected.getPixels(expectedPixels, 0, width, 0, 0, width, height);
+        actual.getPixels(actualPixels, 0, width, 0, 0, width, height);
+
+        int differing = 0;
+        for (int index = 0; index < actualPixels.length; index++) {
+            for (int shift = 0; shift < 32; shift += 8) {
+                int expectedChannel = (expectedPixels[index] >>> shift) & 0xff;
+                int actualChannel = (actualPixels[index] >>> shift) & 0xff;
+                if (Math.abs(expectedChannel - actualChannel) > CHANNEL_TOLERANCE) {
+                    differing++;
+                    break;
+                }
+            }
+        }
+        return differing;
+    }
+
+    private static void writePng(Bitmap bitmap, File file) throws IOException {
+        file.getParentFile().mkdirs();
+        OutputStream output = new FileOutputStream(file);
+        try {
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, output);
+        } finally {
+            output.close();
+        }
+    }
+
+    private static final class FixedClock implements Clock {
+        private long mTimeMillis;
+
+        @Override
+        public long currentTimeMillis() {
+            return mTimeMillis;
+        }
+
+        @Override
+        public long uptimeMillis() {
+            return mTimeMillis;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.deviantdev.wearable.watchface.complication;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.graphics.drawable.Icon;
+import android.net.Uri;
+import android.os.Build;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.ComplicationText;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.util.ReflectionHelpers;
+
+/**
+ * Compares complication data built twice from the same content, the way a provider resends it,
+ * and with one field changed at a time.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ComplicationDataComparatorTest {
+
+    private static final long START_MILLIS = 1768471830000L;
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.getApplication();
+    }
+
+    @Test
+    public void rebuiltDataIsEqual() {
+        assertTrue(ComplicationDataComparator.contentEquals(shortText("12").build(),
+                shortText("12").build()));
+        assertTrue(ComplicationDataComparator.contentEquals(rangedValue(3).build(),
+                rangedValue(3).build()));
+        assertTrue(ComplicationDataComparator.contentEquals(longText("Meeting").build(),
+                longText("Meeting").build()));
+    }
+
+    @Test
+    public void changedFieldIsDifferent() {
+        ComplicationData data = shortText("12").build();
+        assertFalse(ComplicationDataComparator.contentEquals(data, shortText("13").build()));
+        assertFalse(ComplicationDataComparator.contentEquals(data,
+                shortText("12").setShortTitle(ComplicationText.plainText("Steps")).build()));
+        assertFalse(ComplicationDataComparator.contentEquals(data,
+                shortText("12").setTapAction(tapAction("other")).build()));
+        assertFalse(ComplicationDataComparator.contentEquals(data,
+                shortText("12").setEndDateTimeMillis(START_MILLIS).build()));
+        assertFalse(ComplicationDataComparator.contentEquals(data, null));
+
+        assertFalse(ComplicationDataComparator.contentEquals(rangedValue(3).build(),
+                rangedValue(4).build()));
+        assertFalse(ComplicationDataComparator.contentEquals(rangedValue(3).build(),
+                rangedValue(3).setMaxValue(20).build()));
+        assertFalse(ComplicationDataComparator.contentEquals(longText("Meeting").build(),
+                longText("Lunch").build()));
+    }
+
+    @Test
+    public void typeChangeIsDifferent() {
+        ComplicationData shortText = shortText("12").build();
+        ComplicationData noPermission = new ComplicationData.Builder(
+                ComplicationData.TYPE_NO_PERMISSION)
+                .setShortText(ComplicationText.plainText("12"))
+                .build();
+        assertFalse(ComplicationDataComparator.contentEquals(shortText, noPermission));
+    }
+
+    @Test
+    public void iconsAreComparedBySource() {
+        Icon icon = Icon.createWithResource(mContext, android.R.drawable.ic_menu_add);
+        assertTrue(ComplicationDataComparator.contentEquals(shortText("12").setIcon(icon).build(),
+                shortText("12").setIcon(Icon.createWithResource(mContext,
+                        android.R.drawable.ic_menu_add)).build()));
+        assertFalse(ComplicationDataComparator.contentEquals(shortText("12").setIcon(icon).build(),
+                shortText("12").setIcon(Icon.createWithResource(mContext,
+                        android.R.drawable.ic_menu_delete)).build()));
+        assertFalse(ComplicationDataComparator.contentEquals(shortText("12").setIcon(icon).build(),
+                shortText("12").build()));
+
+        Uri uri = Uri.parse("content://images/1");
+        assertTrue(ComplicationDataComparator.iconEquals(Icon.createWithContentUri(uri),
+                Icon.createWithContentUri(uri)));
+        assertFalse(ComplicationDataComparator.iconEquals(Icon.createWithContentUri(uri),
+                Icon.createWithContentUri(Uri.parse("content://images/2"))));
+    }
+
+    @Test
+    public void bitmapIconsAreOnlyEqualToThemselves() {
+        Bitmap bitmap = Bitmap.createBitmap(8, 8, Bitmap.Config.ARGB_8888);
+        Icon icon = Icon.createWithBitmap(bitmap);
+        assertTrue(ComplicationDataComparator.iconEquals(icon, icon));
+        assertFalse(ComplicationDataComparator.iconEquals(icon, Icon.createWithBitmap(bitmap)));
+    }
+
+    @Test
+    public void iconsBeforeApi28AreOnlyEqualToThemselves() {
+        Icon icon = Icon.createWithResource(mContext, android.R.drawable.ic_menu_add);
+        Icon sameResource = Icon.createWithResource(mContext, android.R.drawable.ic_menu_add);
+        int sdk = Build.VERSION.SDK_INT;
+        ReflectionHelpers.setStaticField(Build.VERSION.class, "SDK_INT",
+                Build.VERSION_CODES.O_MR1);
+        try {
+            assertTrue(ComplicationDataComparator.iconEquals(icon, icon));
+            assertFalse(ComplicationDataComparator.iconEquals(icon, sameResource));
+        } finally {
+            ReflectionHelpers.setStaticField(Build.VERSION.class, "SDK_INT", sdk);
+        }
+    }
+
+    @Test
+    public void timeDependentTextsAreComparedByFormat() {
+        ComplicationText countdown = timeDifference(START_MILLIS);
+        assertTrue(ComplicationDataComparator.textEquals(countdown,
+                timeDifference(START_MILLIS)));
+        assertFalse(ComplicationDataComparator.textEquals(countdown,
+                timeDifference(START_MILLIS + 60000)));
+
+        ComplicationText clock = new ComplicationText.TimeFormatBuilder().setFormat("HH:mm")
+                .build();
+        assertTrue(ComplicationDataComparator.textEquals(clock,
+                new ComplicationText.TimeFormatBuilder().setFormat("HH:mm").build()));
+        assertFalse(ComplicationDataComparator.textEquals(clock,
+                new ComplicationText.TimeFormatBuilder().setFormat("hh:mm").build()));
+
+        assertTrue(ComplicationDataComparator.contentEquals(
+                shortText("").setShortText(countdown).build(),
+                shortText("").setShortText(timeDifference(START_MILLIS)).build()));
+    }
+
+    /* A plain text showing what a time-dependent text shows right now is still different. */
+    @Test
+    public void timeDependentTextDiffersFromItsCurrentText() {
+        ComplicationText countdown = timeDifference(START_MILLIS);
+        ComplicationText plain = ComplicationText.plainText(
+                countdown.getText(mContext, START_MILLIS - 120000));
+        assertFalse(ComplicationDataComparator.textEquals(countdown, plain));
+        assertFalse(ComplicationDataComparator.textEquals(plain, countdown));
+    }
+
+    private ComplicationData.Builder shortText(String text) {
+        return new ComplicationData.Builder(ComplicationData.TYPE_SHORT_TEXT)
+                .setShortText(ComplicationText.plainText(text))
+                .setTapAction(tapAction("tap"));
+    }
+
+    private ComplicationData.Builder rangedValue(float value) {
+        return new ComplicationData.Builder(ComplicationData.TYPE_RANGED_VALUE)
+                .setValue(value)
+                .setMinValue(0)
+                .setMaxValue(10)
+                .setShortText(ComplicationText.plainText(String.valueOf((int) value)));
+    }
+
+    private ComplicationData.Builder longText(String text) {
+        return new ComplicationData.Builder(ComplicationData.TYPE_LONG_TEXT)
+                .setLongText(ComplicationText.plainText(text))
+                .setLongTitle(ComplicationText.plainText("Calendar"));
+    }
+
+    private static ComplicationText timeDifference(long referenceMillis) {
+        return new ComplicationText.TimeDifferenceBuilder()
+                .setReferencePeriodStart(referenceMillis)
+                .setReferencePeriodEnd(referenceMillis)
+                .setStyle(ComplicationText.DIFFERENCE_STYLE_SHORT_DUAL_UNIT)
+                .build();
+    }
+
+    private PendingIntent tapAction(String action) {
+        return PendingIntent.getBroadcast(mContext, 0, new Intent(action), 0);
+    }
+}
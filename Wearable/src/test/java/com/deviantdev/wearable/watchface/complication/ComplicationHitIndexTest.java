@@ -0,0 +1,128 @@
+package com.deviantdev.wearable.watchface.complication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ComplicationHitIndexTest {
+
+    private static final int SIZE = 400;
+    private static final int NONE = -1;
+
+    private ComplicationHitIndex mIndex;
+
+    @Before
+    public void setUp() {
+        mIndex = new ComplicationHitIndex();
+        mIndex.reset(SIZE, SIZE);
+    }
+
+    @Test
+    public void rectangleEdgesAreInclusiveAtTopLeftOnly() {
+        mIndex.addRectangle(7, 100, 120, 200, 180);
+
+        assertEquals(7, findComplicationId(100, 120));
+        assertEquals(7, findComplicationId(199, 179));
+        assertEquals(NONE, findComplicationId(99, 150));
+        assertEquals(NONE, findComplicationId(200, 150));
+        assertEquals(NONE, findComplicationId(150, 119));
+        assertEquals(NONE, findComplicationId(150, 180));
+    }
+
+    @Test
+    public void circleOnlyContainsItsInscribedCircle() {
+        // Radius 50 around (150, 150).
+        mIndex.addCircle(3, 100, 100, 200, 200);
+
+        assertEquals(3, findComplicationId(150, 150));
+        assertEquals(3, findComplicationId(100, 150));
+        assertEquals(3, findComplicationId(150, 100));
+        assertEquals(3, findComplicationId(185, 185));
+        // Inside the bounds, outside the circle.
+        assertEquals(NONE, findComplicationId(100, 100));
+        assertEquals(NONE, findComplicationId(199, 199));
+        assertEquals(NONE, findComplicationId(186, 186));
+    }
+
+    @Test
+    public void circleInWideBoundsUsesShorterSide() {
+        // Radius 20 around (150, 120).
+        mIndex.addCircle(3, 100, 100, 200, 140);
+
+        assertEquals(3, findComplicationId(130, 120));
+        assertEquals(NONE, findComplicationId(129, 120));
+        assertEquals(NONE, findComplicationId(110, 120));
+    }
+
+    @Test
+    public void overlapsGoToSlotAddedFirst() {
+        mIndex.addCircle(1, 100, 100, 200, 200);
+        mIndex.addRectangle(2, 150, 150, 250, 250);
+        mIndex.addRectangle(0, 0, 0, SIZE, SIZE);
+
+        assertEquals(1, findComplicationId(160, 160));
+        assertEquals(2, findComplicationId(240, 240));
+        // In the rectangle's corner the circle does not count.
+        assertEquals(2, findComplicationId(195, 195));
+        assertEquals(0, findComplicationId(105, 105));
+        assertEquals(0, findComplicationId(SIZE - 1, 0));
+    }
+
+    @Test
+    public void candidatesAreLimitedToCellAndScreen() {
+        mIndex.addRectangle(1, 0, 0, 50, 50);
+        mIndex.addRectangle(2, 350, 350, 400, 400);
+        // Reaches past the screen edges.
+        mIndex.addRectangle(3, -30, 380, 30, 430);
+
+        assertEquals(1L, mIndex.getCandidates(10, 10));
+        assertEquals(2L, mIndex.getCandidates(360, 360));
+        assertEquals(4L, mIndex.getCandidates(0, SIZE - 1));
+        assertEquals(0L, mIndex.getCandidates(200, 200));
+        assertEquals(0L, mIndex.getCandidates(-1, 10));
+        assertEquals(0L, mIndex.getCandidates(10, SIZE));
+    }
+
+    @Test
+    public void holdsSixtyFourSlots() {
+        // One column of 4 x 4 pixel slots per bit; the last one uses the sign bit.
+        for (int slot = 0; slot < ComplicationHitIndex.MAX_SLOTS; slot++) {
+            int left = slot * 6;
+            mIndex.addRectangle(1000 + slot, left, 0, left + 4, 4);
+        }
+        for (int slot = 0; slot < ComplicationHitIndex.MAX_SLOTS; slot++) {
+            int x = slot * 6 + 2;
+            assertTrue(slot + "", (mIndex.getCandidates(x, 2) & 1L << slot) != 0);
+            assertEquals(1000 + slot, findComplicationId(x, 2));
+            assertFalse(mIndex.contains(slot, x, 4));
+        }
+
+        try {
+            mIndex.addRectangle(2000, 0, 0, 10, 10);
+            fail("Added a slot past the maximum");
+        } catch (IllegalStateException expected) {
+        }
+
+        mIndex.reset(SIZE, SIZE);
+        assertEquals(0L, mIndex.getCandidates(2, 2));
+        mIndex.addRectangle(5, 0, 0, 10, 10);
+        assertEquals(5, findComplicationId(2, 2));
+    }
+
+    /* Resolves a tap like WatchFaceService: the first candidate that contains it wins. */
+    private int findComplicationId(int x, int y) {
+        long candidates = mIndex.getCandidates(x, y);
+        while (candidates != 0) {
+            int slot = Long.numberOfTrailingZeros(candidates);
+            candidates &= candidates - 1;
+            if (mIndex.contains(slot, x, y)) {
+                return mIndex.getComplicationId(slot);
+            }
+        }
+        return NONE;
+    }
+}
@@ -0,0 +1,162 @@
+package com.deviantdev.wearable.watchface.complication;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import com.deviantdev.wearable.watchface.R;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+/**
+ * Compiles the app's {@code res/xml/complication_layout.xml} and checks the bounds and taps the
+ * watch face gets from it.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ComplicationLayoutTest {
+
+    private static final int BACKGROUND_ID = 0;
+    private static final int LEFT_ID = 100;
+    private static final int RIGHT_ID = 101;
+
+    private ComplicationLayout mLayout;
+
+    @Before
+    public void setUp() {
+        mLayout = ComplicationLayout.inflate(RuntimeEnvironment.getApplication().getResources(),
+                R.xml.complication_layout);
+    }
+
+    @Test
+    public void readsSlotsInDrawingOrder() {
+        assertEquals(3, mLayout.getSlotCount());
+        assertEquals(BACKGROUND_ID, mLayout.getId(0));
+        assertEquals(LEFT_ID, mLayout.getId(1));
+        assertEquals(RIGHT_ID, mLayout.getId(2));
+    }
+
+    /* The bounds the watch face placed by hand before the layout file existed. */
+    @Test
+    public void compilesHandPlacedBoundsAt390() {
+        CompiledComplicationLayout compiled = mLayout.compile(390, 390, true, 0);
+
+        assertEquals(390, compiled.getWidth());
+        assertEquals(390, compiled.getHeight());
+        assertBounds(compiled, 0, ComplicationLayout.SHAPE_FILL, 0, 0, 390, 390);
+        assertBounds(compiled, 1, ComplicationLayout.SHAPE_CIRCLE, 49, 147, 146, 244);
+        assertBounds(compiled, 2, ComplicationLayout.SHAPE_CIRCLE, 244, 147, 341, 244);
+    }
+
+    @Test
+    public void compiledLayoutsAreKeptPerConfiguration() {
+        CompiledComplicationLayout compiled = mLayout.compile(390, 390, true, 0);
+
+        assertSame(compiled, mLayout.compile(390, 390, true, 0));
+        assertNotSame(compiled, mLayout.compile(390, 390, false, 0));
+        assertNotSame(compiled, mLayout.compile(390, 390, true, 30));
+        assertNotSame(compiled, mLayout.compile(454, 454, true, 0));
+    }
+
+    @Test
+    public void tapsGoToTopmostSlot() {
+        CompiledComplicationLayout compiled = mLayout.compile(390, 390, true, 0);
+
+        // Centers and edges of the circles.
+        assertEquals(LEFT_ID, findComplicationId(compiled, 97, 195));
+        assertEquals(LEFT_ID, findComplicationId(compiled, 50, 195));
+        assertEquals(RIGHT_ID, findComplicationId(compiled, 292, 195));
+        assertEquals(RIGHT_ID, findComplicationId(compiled, 292, 148));
+        assertEquals(RIGHT_ID, findComplicationId(compiled, 340, 195));
+        // Bounds corners lie outside the circles, and on the background.
+        assertEquals(BACKGROUND_ID, findComplicationId(compiled, 49, 147));
+        assertEquals(BACKGROUND_ID, findComplicationId(compiled, 340, 243));
+        assertEquals(BACKGROUND_ID, findComplicationId(compiled, 341, 195));
+        assertEquals(BACKGROUND_ID, findComplicationId(compiled, 0, 0));
+        assertEquals(-1, findComplicationId(compiled, 390, 195));
+    }
+
+    @Test
+    public void roundScreensPullSlotsInside() {
+        int[] bounds = compute(ComplicationBounds.SHAPE_CIRCLE, 0.95f, 0.5f, 0.25f, 1f, 400,
+                400, true, 0);
+        // Radius 50 circle touching the screen circle of radius 200 on the right.
+        assertArrayEquals(new int[] {300, 150, 400, 250}, bounds);
+
+        bounds = compute(ComplicationBounds.SHAPE_CIRCLE, 0.95f, 0.5f, 0.25f, 1f, 400, 400,
+                false, 0);
+        assertArrayEquals(new int[] {300, 150, 400, 250}, bounds);
+        bounds = compute(ComplicationBounds.SHAPE_CIRCLE, 0.8f, 0.2f, 0.25f, 1f, 400, 400,
+                false, 0);
+        assertArrayEquals(new int[] {270, 30, 370, 130}, bounds);
+        bounds = compute(ComplicationBounds.SHAPE_CIRCLE, 0.8f, 0.2f, 0.25f, 1f, 400, 400,
+                true, 0);
+        assertEquals(200 * 200, squaredDistanceToFarthestPoint(bounds), 200 * 2);
+    }
+
+    @Test
+    public void slotsAreMovedAboveChin() {
+        // A rectangle of 100 x 50 at the bottom; the chin covers the last 30 pixels.
+        int[] bounds = compute(ComplicationBounds.SHAPE_RECTANGLE, 0.5f, 0.9f, 0.125f, 2f, 400,
+                400, false, 30);
+        assertArrayEquals(new int[] {150, 320, 250, 370}, bounds);
+
+        bounds = compute(ComplicationBounds.SHAPE_RECTANGLE, 0.5f, 0.9f, 0.125f, 2f, 400, 400,
+                false, 0);
+        assertArrayEquals(new int[] {150, 335, 250, 385}, bounds);
+
+        // Slots clear of the chin stay in place.
+        assertArrayEquals(getBounds(mLayout.compile(390, 390, true, 0), 1),
+                getBounds(mLayout.compile(390, 390, true, 30), 1));
+    }
+
+    private static void assertBounds(CompiledComplicationLayout compiled, int slot, int shape,
+            int left, int top, int right, int bottom) {
+        assertEquals(shape, compiled.getShape(slot));
+        assertArrayEquals(new int[] {left, top, right, bottom}, getBounds(compiled, slot));
+    }
+
+    private static int[] getBounds(CompiledComplicationLayout compiled, int slot) {
+        return new int[] {compiled.getLeft(slot), compiled.getTop(slot), compiled.getRight(slot),
+                compiled.getBottom(slot)};
+    }
+
+    private static int[] compute(int shape, float centerX, float centerY, float size,
+            float aspectRatio, int width, int height, boolean round, int chinHeight) {
+        int[] left = new int[1];
+        int[] top = new int[1];
+        int[] right = new int[1];
+        int[] bottom = new int[1];
+        ComplicationBounds.compute(new int[] {shape}, new float[] {centerX},
+                new float[] {centerY}, new float[] {size}, new float[] {aspectRatio}, width,
+                height, round, chinHeight, left, top, right, bottom);
+        return new int[] {left[0], top[0], right[0], bottom[0]};
+    }
+
+    /* Squared distance from the center of a 400 px screen to the far edge of a circular slot. */
+    private static float squaredDistanceToFarthestPoint(int[] bounds) {
+        float radius = (bounds[2] - bounds[0]) / 2f;
+        float dx = (bounds[0] + bounds[2]) / 2f - 200;
+        float dy = (bounds[1] + bounds[3]) / 2f - 200;
+        float distance = (float) Math.hypot(dx, dy) + radius;
+        return distance * distance;
+    }
+
+    /* Resolves a tap like WatchFaceService: the first candidate that contains it wins. */
+    private static int findComplicationId(CompiledComplicationLayout compiled, int x, int y) {
+        ComplicationHitIndex index = compiled.getHitIndex();
+        long candidates = index.getCandidates(x, y);
+        while (candidates != 0) {
+            int slot = Long.numberOfTrailingZeros(candidates);
+            candidates &= candidates - 1;
+            if (index.contains(slot, x, y)) {
+                return index.getComplicationId(slot);
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,256 @@
+package com.deviantdev.wearable.watchface.complication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.ComplicationText;
+import android.support.wearable.complications.rendering.ComplicationDrawable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.util.Arrays;
+
+/**
+ * Draws a slot through the cache and straight from its drawable, and checks that both frames
+ * match after every change of the slot's key, and that nothing is rendered while the key stays
+ * the same.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class ComplicationRenderCacheTest {
+
+    private static final int SIZE = 100;
+    private static final int ID = 100;
+
+    private static final long START_MILLIS = 1768471830000L;
+
+    private ComplicationRenderCache mCache;
+    private FakeComplicationDrawable mDrawable;
+    private ComplicationData mData;
+    private long mVersion;
+    private long mTime;
+
+    private Bitmap mCachedFrame;
+    private Bitmap mDirectFrame;
+
+    @Before
+    public void setUp() {
+        mCache = new ComplicationRenderCache();
+        mDrawable = new FakeComplicationDrawable(RuntimeEnvironment.getApplication());
+        mDrawable.setBounds(20, 30, 60, 70);
+        mData = plainData();
+        mVersion = 1;
+        mTime = START_MILLIS;
+        mCachedFrame = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        mDirectFrame = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+    }
+
+    @After
+    public void tearDown() {
+        mCache.release();
+        mCachedFrame.recycle();
+        mDirectFrame.recycle();
+    }
+
+    @Test
+    public void unchangedKeyIsDrawnFromCache() {
+        assertRendersAndMatches(1);
+        mTime += 59000;
+        assertRendersAndMatches(0);
+        assertRendersAndMatches(0);
+    }
+
+    @Test
+    public void dataVersionRendersAgain() {
+        assertRendersAndMatches(1);
+
+        mDrawable.mColor = Color.GREEN;
+        mVersion++;
+        assertRendersAndMatches(1);
+        assertRendersAndMatches(0);
+    }
+
+    @Test
+    public void renderStateRendersAgain() {
+        assertRendersAndMatches(1);
+
+        boolean[][] states = {{true, false, false}, {true, true, false}, {true, true, true},
+                {false, false, true}, {false, false, false}};
+        for (boolean[] state : states) {
+            mCache.setRenderState(state[0], state[1], state[2]);
+            mDrawable.mColor = Color.rgb(state[0] ? 255 : 0, state[1] ? 255 : 0,
+                    state[2] ? 255 : 0);
+            assertRendersAndMatches(1);
+            assertRendersAndMatches(0);
+        }
+    }
+
+    @Test
+    public void boundsRenderAgain() {
+        assertRendersAndMatches(1);
+
+        // Moved, then resized.
+        mDrawable.setBounds(30, 30, 70, 70);
+        assertRendersAndMatches(1);
+        mDrawable.setBounds(30, 30, 80, 70);
+        assertRendersAndMatches(1);
+        assertRendersAndMatches(0);
+    }
+
+    @Test
+    public void endOfActivePeriodRendersAgain() {
+        mData = new ComplicationData.Builder(ComplicationData.TYPE_SHORT_TEXT)
+                .setShortText(ComplicationText.plainText("12"))
+                .setEndDateTimeMillis(START_MILLIS + 10000)
+                .build();
+        assertRendersAndMatches(1);
+        mTime += 9999;
+        assertRendersAndMatches(0);
+
+        mTime += 1;
+        assertRendersAndMatches(1);
+        mTime += 60000;
+        assertRendersAndMatches(0);
+    }
+
+    @Test
+    public void timeDependentTextRendersEverySecond() {
+        mData = new ComplicationData.Builder(ComplicationData.TYPE_SHORT_TEXT)
+                .setShortText(new ComplicationText.TimeDifferenceBuilder()
+                        .setReferencePeriodStart(START_MILLIS + 600000)
+                        .setReferencePeriodEnd(START_MILLIS + 600000)
+                        .build())
+                .build();
+        assertTrue(ComplicationRenderCache.hasTimeDependentText(mData));
+
+        assertRendersAndMatches(1);
+        mTime += 999;
+        assertRendersAndMatches(0);
+        mTime += 1;
+        assertRendersAndMatches(1);
+        mTime += 1000;
+        assertRendersAndMatches(1);
+    }
+
+    @Test
+    public void tappedSlotIsDrawnDirectlyWhileHighlighted() {
+        assertRendersAndMatches(1);
+
+        mCache.onTap(ID, mTime);
+        mDrawable.mColor = Color.YELLOW;
+        for (int frame = 0; frame < 3; frame++) {
+            assertRendersAndMatches(1);
+            mTime += 100;
+        }
+
+        // The highlight is over; the slot is cached again.
+        mDrawable.mColor = Color.RED;
+        assertRendersAndMatches(1);
+        assertRendersAndMatches(0);
+    }
+
+    @Test
+    public void invalidatedSlotsRenderAgain() {
+        assertRendersAndMatches(1);
+
+        mDrawable.mColor = Color.MAGENTA;
+        mCache.invalidate(ID);
+        assertRendersAndMatches(1);
+
+        mDrawable.mColor = Color.CYAN;
+        mCache.invalidateAll();
+        assertRendersAndMatches(1);
+        assertRendersAndMatches(0);
+
+        // Other slots are left alone.
+        mCache.invalidate(ID + 1);
+        assertRendersAndMatches(0);
+    }
+
+    @Test
+    public void emptyDataIsNotDrawn() {
+        mData = new ComplicationData.Builder(ComplicationData.TYPE_EMPTY).build();
+        drawCached();
+        mData = null;
+        drawCached();
+
+        assertEquals(0, mDrawable.mDrawCount);
+        int[] pixels = new int[SIZE * SIZE];
+        mCachedFrame.getPixels(pixels, 0, SIZE, 0, 0, SIZE, SIZE);
+        for (int pixel : pixels) {
+            assertEquals(0, pixel);
+        }
+    }
+
+    /* Draws the slot both ways, checks both frames match and how often the drawable drew. */
+    private void assertRendersAndMatches(int expectedRenders) {
+        int drawCount = mDrawable.mDrawCount;
+        drawCached();
+        assertEquals(expectedRenders, mDrawable.mDrawCount - drawCount);
+
+        mDirectFrame.eraseColor(Color.BLACK);
+        mDrawable.draw(new Canvas(mDirectFrame), mTime);
+        mDrawable.mDrawCount--;
+
+        int[] cached = new int[SIZE * SIZE];
+        int[] direct = new int[SIZE * SIZE];
+        mCachedFrame.getPixels(cached, 0, SIZE, 0, 0, SIZE, SIZE);
+        mDirectFrame.getPixels(direct, 0, SIZE, 0, 0, SIZE, SIZE);
+        assertTrue("Cached frame differs from direct drawing", Arrays.equals(direct, cached));
+    }
+
+    private void drawCached() {
+        mCachedFrame.eraseColor(mData == null ? 0 : Color.BLACK);
+        mCache.draw(new Canvas(mCachedFrame), ID, mDrawable, mData, mVersion, mTime);
+    }
+
+    private static ComplicationData plainData() {
+        return new ComplicationData.Builder(ComplicationData.TYPE_SHORT_TEXT)
+                .setShortText(ComplicationText.plainText("12"))
+                .build();
+    }
+
+    /*
+     * Fills its bounds with a color while the data is active, and marks the current second for
+     * time-dependent texts, so a stale cache entry shows up as different pixels.
+     */
+    private final class FakeComplicationDrawable extends ComplicationDrawable {
+        private final Paint mPaint = new Paint();
+        private int mColor = Color.BLUE;
+        private int mDrawCount;
+
+        private FakeComplicationDrawable(Context context) {
+            super(context);
+        }
+
+        @Override
+        public void draw(Canvas canvas, long currentTimeMillis) {
+            mDrawCount++;
+            if (!mData.isActive(currentTimeMillis)) {
+                return;
+            }
+            mPaint.setColor(mColor);
+            canvas.drawRect(getBounds(), mPaint);
+            if (!ComplicationRenderCache.hasTimeDependentText(mData)) {
+                return;
+            }
+
+            mPaint.setColor(Color.WHITE);
+            int second = (int) (currentTimeMillis / 1000 % getBounds().height());
+            canvas.drawRect(getBounds().left, getBounds().top + second, getBounds().right,
+                    getBounds().top + second + 1, mPaint);
+        }
+    }
+}
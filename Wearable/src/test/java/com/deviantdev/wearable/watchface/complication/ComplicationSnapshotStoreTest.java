@@ -0,0 +1,195 @@
+package com.deviantdev.wearable.watchface.complication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.ComplicationText;
+import android.util.SparseArray;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.ReflectionHelpers;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Saves complication data, reads it back with a new store, like after a restart, and checks what
+ * survives.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ComplicationSnapshotStoreTest {
+
+    private static final long START_MILLIS = 1768471830000L;
+
+    private Context mContext;
+    private ComplicationSnapshotStore mStore;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.getApplication();
+        mStore = new ComplicationSnapshotStore(mContext);
+    }
+
+    @After
+    public void tearDown() {
+        mStore.release();
+    }
+
+    @Test
+    public void dataSurvivesRestartWithoutTapAction() throws Exception {
+        mStore.save(1, shortText("12").setTapAction(tapAction()).build(), START_MILLIS);
+        mStore.save(2, new ComplicationData.Builder(ComplicationData.TYPE_RANGED_VALUE)
+                .setValue(3)
+                .setMinValue(0)
+                .setMaxValue(10)
+                .setShortText(ComplicationText.plainText("3"))
+                .setTapAction(tapAction())
+                .build(), START_MILLIS);
+        mStore.awaitBackgroundWork();
+
+        SparseArray<ComplicationData> snapshot = restart(START_MILLIS + 1000);
+
+        assertEquals(2, snapshot.size());
+        ComplicationData shortText = snapshot.get(1);
+        assertEquals(ComplicationData.TYPE_SHORT_TEXT, shortText.getType());
+        assertEquals("12", shortText.getShortText().getText(mContext, START_MILLIS));
+        assertNull(shortText.getTapAction());
+
+        ComplicationData rangedValue = snapshot.get(2);
+        assertEquals(3, rangedValue.getValue(), 0);
+        assertEquals(10, rangedValue.getMaxValue(), 0);
+        assertNull(rangedValue.getTapAction());
+    }
+
+    @Test
+    public void endedAndOldEntriesAreDropped() throws Exception {
+        mStore.save(1, shortText("ends").setEndDateTimeMillis(START_MILLIS + 60000).build(),
+                START_MILLIS);
+        mStore.save(2, shortText("open").build(), START_MILLIS);
+        mStore.awaitBackgroundWork();
+
+        SparseArray<ComplicationData> snapshot = restart(START_MILLIS + 59999);
+        assertNotNull(snapshot.get(1));
+        assertNotNull(snapshot.get(2));
+
+        snapshot = restart(START_MILLIS + 60000);
+        assertNull(snapshot.get(1));
+        assertNotNull(snapshot.get(2));
+
+        // Data without an end is dropped a day after it was saved.
+        snapshot = restart(START_MILLIS + TimeUnit.DAYS.toMillis(1) + 1);
+        assertEquals(0, snapshot.size());
+    }
+
+    @Test
+    public void snapshotOfOtherPlatformVersionIsDropped() throws Exception {
+        mStore.save(1, shortText("12").build(), START_MILLIS);
+        mStore.awaitBackgroundWork();
+
+        int sdk = Build.VERSION.SDK_INT;
+        ReflectionHelpers.setStaticField(Build.VERSION.class, "SDK_INT", sdk - 1);
+        try {
+            assertEquals(0, restart(START_MILLIS).size());
+        } finally {
+            ReflectionHelpers.setStaticField(Build.VERSION.class, "SDK_INT", sdk);
+        }
+        assertEquals(1, restart(START_MILLIS).size());
+    }
+
+    @Test
+    public void slotsWithoutContentAreRemoved() throws Exception {
+        mStore.save(1, shortText("12").build(), START_MILLIS);
+        mStore.save(2, shortText("13").build(), START_MILLIS);
+        mStore.awaitBackgroundWork();
+        mStore.save(1, new ComplicationData.Builder(ComplicationData.TYPE_EMPTY).build(),
+                START_MILLIS);
+        mStore.awaitBackgroundWork();
+
+        SparseArray<ComplicationData> snapshot = restart(START_MILLIS);
+        assertEquals(1, snapshot.size());
+        assertNotNull(snapshot.get(2));
+    }
+
+    /* Live data that arrives while the snapshot is read is newer and wins. */
+    @Test
+    public void slotsSavedBeforeLoadKeepTheirData() throws Exception {
+        mStore.save(1, shortText("old").build(), START_MILLIS);
+        mStore.save(2, shortText("old").build(), START_MILLIS);
+        mStore.awaitBackgroundWork();
+
+        ComplicationSnapshotStore store = new ComplicationSnapshotStore(mContext);
+        try {
+            store.save(1, shortText("live").build(), START_MILLIS + 1000);
+            store.save(2, new ComplicationData.Builder(ComplicationData.TYPE_EMPTY).build(),
+                    START_MILLIS + 1000);
+            assertEquals(0, load(store, START_MILLIS + 1000).size());
+        } finally {
+            store.release();
+        }
+
+        SparseArray<ComplicationData> snapshot = restart(START_MILLIS + 2000);
+        assertEquals(1, snapshot.size());
+        assertEquals("live", snapshot.get(1).getShortText().getText(mContext, START_MILLIS));
+    }
+
+    @Test
+    public void corruptSnapshotIsDropped() throws Exception {
+        File file = new File(mContext.getNoBackupFilesDir(), "complication_snapshot.bin");
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.write(new byte[] {1, 2, 3});
+        } finally {
+            output.close();
+        }
+        assertEquals(0, restart(START_MILLIS).size());
+    }
+
+    /* Reads the saved snapshot with a new store, like the watch face does after a restart. */
+    private SparseArray<ComplicationData> restart(long currentTimeMillis) throws Exception {
+        ComplicationSnapshotStore store = new ComplicationSnapshotStore(mContext);
+        try {
+            return load(store, currentTimeMillis);
+        } finally {
+            store.release();
+        }
+    }
+
+    private static SparseArray<ComplicationData> load(ComplicationSnapshotStore store,
+            long currentTimeMillis) throws InterruptedException {
+        final AtomicReference<SparseArray<ComplicationData>> result = new AtomicReference<>();
+        store.load(currentTimeMillis, new ComplicationSnapshotStore.Listener() {
+            @Override
+            public void onSnapshotLoaded(SparseArray<ComplicationData> snapshot) {
+                result.set(snapshot);
+            }
+        });
+        store.awaitBackgroundWork();
+        assertNull("Delivered before the main thread ran", result.get());
+        ShadowLooper.idleMainLooper();
+        assertNotNull(result.get());
+        return result.get();
+    }
+
+    private static ComplicationData.Builder shortText(String text) {
+        return new ComplicationData.Builder(ComplicationData.TYPE_SHORT_TEXT)
+                .setShortText(ComplicationText.plainText(text));
+    }
+
+    private PendingIntent tapAction() {
+        return PendingIntent.getBroadcast(mContext, 0, new Intent("tap"), 0);
+    }
+}
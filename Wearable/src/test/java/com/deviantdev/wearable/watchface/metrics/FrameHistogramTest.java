@@ -0,0 +1,107 @@
+package com.deviantdev.wearable.watchface.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FrameHistogramTest {
+
+    private static final int TOP_BUCKET = FrameHistogram.BUCKET_COUNT - 1;
+
+    @Test
+    public void smallValuesHaveOneBucketEach() {
+        for (int micros = 0; micros < 4; micros++) {
+            assertEquals(micros, FrameHistogram.getBucketIndex(micros));
+            assertEquals(micros + 1, FrameHistogram.getBucketUpperBound(micros));
+        }
+    }
+
+    @Test
+    public void powersOfTwoStartNewBuckets() {
+        // Every power of two is split into four buckets: [8, 10), [10, 12), [12, 14), [14, 16).
+        assertEquals(8, FrameHistogram.getBucketIndex(8));
+        assertEquals(8, FrameHistogram.getBucketIndex(9));
+        assertEquals(9, FrameHistogram.getBucketIndex(10));
+        assertEquals(11, FrameHistogram.getBucketIndex(15));
+        assertEquals(12, FrameHistogram.getBucketIndex(16));
+        assertEquals(10, FrameHistogram.getBucketUpperBound(8));
+        assertEquals(16, FrameHistogram.getBucketUpperBound(11));
+
+        // 1000 us lies in [896, 1024), 20000 us in [16384, 20480).
+        int index = FrameHistogram.getBucketIndex(1000);
+        assertEquals(896, FrameHistogram.getBucketUpperBound(index - 1));
+        assertEquals(1024, FrameHistogram.getBucketUpperBound(index));
+        assertEquals(20480,
+                FrameHistogram.getBucketUpperBound(FrameHistogram.getBucketIndex(20000)));
+    }
+
+    @Test
+    public void everyValueLiesWithinItsBucket() {
+        long topLowerBound = FrameHistogram.getBucketUpperBound(TOP_BUCKET - 1);
+        int previousIndex = 0;
+        for (long micros = 0; micros < topLowerBound; micros++) {
+            int index = FrameHistogram.getBucketIndex(micros);
+            assertTrue(micros + " us", index == previousIndex || index == previousIndex + 1);
+            previousIndex = index;
+
+            long upperBound = FrameHistogram.getBucketUpperBound(index);
+            long lowerBound = index == 0 ? 0 : FrameHistogram.getBucketUpperBound(index - 1);
+            assertTrue(micros + " us", lowerBound <= micros && micros < upperBound);
+            // At most 25% error above the exact bucket range.
+            if (micros >= 4) {
+                assertTrue(micros + " us", upperBound - lowerBound <= lowerBound / 4);
+            }
+        }
+        assertEquals(TOP_BUCKET - 1, previousIndex);
+    }
+
+    @Test
+    public void valuesPastTopBucketAreKeptInIt() {
+        long topUpperBound = FrameHistogram.getBucketUpperBound(TOP_BUCKET);
+        assertEquals(TOP_BUCKET, FrameHistogram.getBucketIndex(topUpperBound - 1));
+        assertEquals(TOP_BUCKET, FrameHistogram.getBucketIndex(topUpperBound));
+        assertEquals(TOP_BUCKET, FrameHistogram.getBucketIndex(Long.MAX_VALUE));
+
+        FrameHistogram histogram = new FrameHistogram(16000);
+        histogram.record(1000);
+        histogram.record(10 * topUpperBound);
+        assertEquals(2, histogram.getCount());
+        assertEquals(1, histogram.getOverBudgetCount());
+        assertEquals(topUpperBound, histogram.getPercentileMicros(100));
+    }
+
+    @Test
+    public void percentilePicksBucketOfRank() {
+        FrameHistogram histogram = new FrameHistogram(16000);
+        for (int frame = 0; frame < 90; frame++) {
+            histogram.record(1000);
+        }
+        for (int frame = 0; frame < 10; frame++) {
+            histogram.record(20000);
+        }
+
+        assertEquals(1024, histogram.getPercentileMicros(0));
+        assertEquals(1024, histogram.getPercentileMicros(50));
+        assertEquals(1024, histogram.getPercentileMicros(90));
+        // Rank 91 of 100 is the first slow frame.
+        assertEquals(20480, histogram.getPercentileMicros(90.5));
+        assertEquals(20480, histogram.getPercentileMicros(99));
+        assertEquals(20480, histogram.getPercentileMicros(100));
+        assertEquals(10, histogram.getOverBudgetCount());
+    }
+
+    @Test
+    public void emptyAndResetHistogramsReportZero() {
+        FrameHistogram histogram = new FrameHistogram(16000);
+        assertEquals(0, histogram.getPercentileMicros(50));
+
+        histogram.record(-5);
+        assertEquals(1, histogram.getPercentileMicros(50));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getOverBudgetCount());
+        assertEquals(0, histogram.getPercentileMicros(99));
+    }
+}
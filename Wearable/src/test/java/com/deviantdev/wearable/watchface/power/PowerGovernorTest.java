@@ -0,0 +1,193 @@
+package com.deviantdev.wearable.watchface.power;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Drives the governor through a fake battery source, the way the battery broadcasts would.
+ */
+public class PowerGovernorTest {
+
+    private FakeBatterySource mSource;
+    private PowerGovernor mGovernor;
+    // Tiers passed to the listener, in order.
+    private final List<Integer> mChanges = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        mSource = new FakeBatterySource();
+        mGovernor = new PowerGovernor(mSource, new PowerGovernor.Listener() {
+            @Override
+            public void onPowerTierChanged(int tier) {
+                mChanges.add(tier);
+            }
+        });
+    }
+
+    @Test
+    public void startAppliesCurrentLevel() {
+        mSource.mLevelPercent = 35;
+        mGovernor.start();
+
+        assertTrue(mSource.mStarted);
+        assertEquals(PowerGovernor.TIER_NO_SHADOWS, mGovernor.getTier());
+        assertEquals(Arrays.asList(PowerGovernor.TIER_NO_SHADOWS), mChanges);
+
+        mGovernor.stop();
+        assertFalse(mSource.mStarted);
+    }
+
+    @Test
+    public void drainingEntersEachTierAtItsLevel() {
+        mSource.mLevelPercent = 100;
+        mGovernor.start();
+
+        int[] entryLevels = new int[PowerGovernor.TIER_AMBIENT_STYLE + 1];
+        for (int level = 100; level >= 0; level--) {
+            int tier = setLevel(level);
+            if (entryLevels[tier] == 0) {
+                entryLevels[tier] = level;
+            }
+        }
+
+        assertEquals(Arrays.asList(PowerGovernor.TIER_NO_SHADOWS, PowerGovernor.TIER_NO_SWEEP,
+                PowerGovernor.TIER_FROZEN_BACKGROUND, PowerGovernor.TIER_AMBIENT_STYLE),
+                mChanges);
+        assertEquals(40, entryLevels[PowerGovernor.TIER_NO_SHADOWS]);
+        assertEquals(30, entryLevels[PowerGovernor.TIER_NO_SWEEP]);
+        assertEquals(20, entryLevels[PowerGovernor.TIER_FROZEN_BACKGROUND]);
+        assertEquals(10, entryLevels[PowerGovernor.TIER_AMBIENT_STYLE]);
+    }
+
+    @Test
+    public void risingLevelLeavesEachTierFivePercentAboveItsLevel() {
+        mSource.mLevelPercent = 0;
+        mGovernor.start();
+        mChanges.clear();
+
+        int[] exitLevels = new int[PowerGovernor.TIER_AMBIENT_STYLE + 1];
+        int previousTier = mGovernor.getTier();
+        for (int level = 0; level <= 100; level++) {
+            int tier = setLevel(level);
+            if (tier != previousTier) {
+                exitLevels[previousTier] = level;
+                previousTier = tier;
+            }
+        }
+
+        assertEquals(PowerGovernor.TIER_FULL, previousTier);
+        assertEquals(4, mChanges.size());
+        assertEquals(16, exitLevels[PowerGovernor.TIER_AMBIENT_STYLE]);
+        assertEquals(26, exitLevels[PowerGovernor.TIER_FROZEN_BACKGROUND]);
+        assertEquals(36, exitLevels[PowerGovernor.TIER_NO_SWEEP]);
+        assertEquals(46, exitLevels[PowerGovernor.TIER_NO_SHADOWS]);
+        assertEquals(5, PowerGovernor.HYSTERESIS_PERCENT);
+    }
+
+    @Test
+    public void levelHoveringAroundThresholdKeepsTier() {
+        mSource.mLevelPercent = 30;
+        mGovernor.start();
+        mChanges.clear();
+
+        int[] levels = {30, 31, 33, 35, 32, 30, 29, 34};
+        for (int level : levels) {
+            assertEquals(level + "%", PowerGovernor.TIER_NO_SWEEP, setLevel(level));
+        }
+        assertTrue(mChanges.isEmpty());
+
+        assertEquals(PowerGovernor.TIER_NO_SHADOWS, setLevel(36));
+        assertEquals(PowerGovernor.TIER_NO_SHADOWS, setLevel(31));
+        assertEquals(PowerGovernor.TIER_NO_SWEEP, setLevel(30));
+    }
+
+    @Test
+    public void largeDropSkipsTiersAtOnce() {
+        mSource.mLevelPercent = 80;
+        mGovernor.start();
+
+        assertEquals(PowerGovernor.TIER_AMBIENT_STYLE, setLevel(5));
+        assertEquals(PowerGovernor.TIER_NO_SHADOWS, setLevel(44));
+        assertEquals(Arrays.asList(PowerGovernor.TIER_AMBIENT_STYLE,
+                PowerGovernor.TIER_NO_SHADOWS), mChanges);
+    }
+
+    @Test
+    public void chargingAndUnknownLevelUseFullQuality() {
+        mSource.mLevelPercent = 5;
+        mGovernor.start();
+        assertEquals(PowerGovernor.TIER_AMBIENT_STYLE, mGovernor.getTier());
+
+        mSource.mCharging = true;
+        mGovernor.onBatteryChanged();
+        assertEquals(PowerGovernor.TIER_FULL, mGovernor.getTier());
+
+        mSource.mCharging = false;
+        assertEquals(PowerGovernor.TIER_AMBIENT_STYLE, setLevel(5));
+        assertEquals(PowerGovernor.TIER_FULL, setLevel(BatterySource.UNKNOWN_LEVEL));
+    }
+
+    @Test
+    public void tiersIncludeSavingsOfLowerTiers() {
+        mSource.mLevelPercent = 100;
+        mGovernor.start();
+        assertTrue(mGovernor.isShadowEnabled());
+        assertTrue(mGovernor.isSweepEnabled());
+        assertFalse(mGovernor.isBackgroundFrozen());
+        assertFalse(mGovernor.isAmbientStyle());
+
+        setLevel(30);
+        assertFalse(mGovernor.isShadowEnabled());
+        assertFalse(mGovernor.isSweepEnabled());
+        assertFalse(mGovernor.isBackgroundFrozen());
+
+        setLevel(10);
+        assertFalse(mGovernor.isShadowEnabled());
+        assertFalse(mGovernor.isSweepEnabled());
+        assertTrue(mGovernor.isBackgroundFrozen());
+        assertTrue(mGovernor.isAmbientStyle());
+    }
+
+    /* Reports a new level to the governor and returns the resulting tier. */
+    private int setLevel(int levelPercent) {
+        mSource.mLevelPercent = levelPercent;
+        mSource.mListener.onBatteryChanged();
+        return mGovernor.getTier();
+    }
+
+    private static final class FakeBatterySource implements BatterySource {
+        private Listener mListener;
+        private boolean mStarted;
+        private int mLevelPercent = UNKNOWN_LEVEL;
+        private boolean mCharging;
+
+        @Override
+        public void start(Listener listener) {
+            mListener = listener;
+            mStarted = true;
+        }
+
+        @Override
+        public void stop() {
+            mStarted = false;
+        }
+
+        @Override
+        public int getLevelPercent() {
+            return mLevelPercent;
+        }
+
+        @Override
+        public boolean isCharging() {
+            return mCharging;
+        }
+    }
+}
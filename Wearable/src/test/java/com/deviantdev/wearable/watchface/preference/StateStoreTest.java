@@ -0,0 +1,229 @@
+package com.deviantdev.wearable.watchface.preference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.FileObserver;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+@RunWith(RobolectricTestRunner.class)
+public class StateStoreTest {
+
+    private static final String NO_LEGACY = "no_legacy_preferences";
+
+    private Context mContext;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.getApplication();
+    }
+
+    @Test
+    public void valuesSurviveReopening() throws Exception {
+        StateStore store = StateStore.open(mContext, "written", NO_LEGACY);
+        store.putInt("int", -7);
+        store.putLong("long", 1L << 40);
+        store.putBoolean("boolean", true);
+        store.apply();
+        StateStore.awaitBackgroundWork();
+
+        // A copy under another name is read cold, like after a restart.
+        copy(stateFile("written"), stateFile("reopened"));
+        StateStore reopened = StateStore.open(mContext, "reopened", NO_LEGACY);
+
+        assertEquals(-7, reopened.getInt("int", 0));
+        assertEquals(1L << 40, reopened.getLong("long", 0));
+        assertTrue(reopened.getBoolean("boolean", false));
+        assertEquals(3, reopened.getInt("missing", 3));
+    }
+
+    @Test
+    public void migratesXmlPreferences() throws Exception {
+        SharedPreferences legacy = mContext.getSharedPreferences("legacy", Context.MODE_PRIVATE);
+        assertTrue(legacy.edit().putInt("color", 0xff00ff00).putBoolean("unread", false)
+                .putString("unsupported", "text").commit());
+
+        StateStore store = StateStore.open(mContext, "migrated", "legacy");
+
+        assertEquals(0xff00ff00, store.getInt("color", 0));
+        assertFalse(store.getBoolean("unread", true));
+        assertTrue(stateFile("migrated").exists());
+        assertFalse(new File(mContext.getDataDir(), "shared_prefs/legacy.xml").exists());
+    }
+
+    @Test
+    public void corruptFileIsDiscarded() throws Exception {
+        StateStore store = StateStore.open(mContext, "intact", NO_LEGACY);
+        store.putInt("int", 42);
+        store.apply();
+        StateStore.awaitBackgroundWork();
+
+        byte[] bytes = read(stateFile("intact"));
+        bytes[bytes.length / 2] ^= 1;
+        write(stateFile("corrupt"), bytes);
+
+        assertEquals(0, StateStore.open(mContext, "corrupt", NO_LEGACY).getInt("int", 0));
+    }
+
+    @Test
+    public void reloadsFileReplacedByAnotherProcess() throws Exception {
+        StateStore store = StateStore.open(mContext, "shared", NO_LEGACY);
+        store.putInt("int", 1);
+        store.apply();
+        StateStore other = StateStore.open(mContext, "other_process", NO_LEGACY);
+        other.putInt("int", 2);
+        other.apply();
+        StateStore.awaitBackgroundWork();
+
+        final AtomicBoolean reloaded = new AtomicBoolean();
+        Runnable onReloaded = new Runnable() {
+            @Override
+            public void run() {
+                reloaded.set(true);
+            }
+        };
+
+        // Unchanged since this process wrote it.
+        store.reloadIfChanged(onReloaded);
+        StateStore.awaitBackgroundWork();
+        ShadowLooper.idleMainLooper();
+        assertFalse(reloaded.get());
+
+        copy(stateFile("other_process"), stateFile("shared"));
+        store.reloadIfChanged(onReloaded);
+        StateStore.awaitBackgroundWork();
+        ShadowLooper.idleMainLooper();
+        assertTrue(reloaded.get());
+        assertEquals(2, store.getInt("int", 0));
+    }
+
+    /* The file observer is fed the kernel's events by hand; Robolectric does not report them. */
+    @Test
+    public void watchingReloadsWhenFileIsWritten() throws Exception {
+        StateStore store = StateStore.open(mContext, "watched", NO_LEGACY);
+        store.putInt("int", 1);
+        store.apply();
+        StateStore other = StateStore.open(mContext, "other_writer", NO_LEGACY);
+        other.putInt("int", 3);
+        other.apply();
+        StateStore.awaitBackgroundWork();
+
+        final AtomicBoolean reloaded = new AtomicBoolean();
+        Runnable onReloaded = new Runnable() {
+            @Override
+            public void run() {
+                reloaded.set(true);
+            }
+        };
+        store.startWatching(onReloaded);
+        store.startWatching(onReloaded);
+        FileObserver observer = store.getFileObserver();
+        assertNotNull(observer);
+
+        // Written by this process.
+        observer.onEvent(FileObserver.CLOSE_WRITE, "watched.state");
+        StateStore.awaitBackgroundWork();
+        ShadowLooper.idleMainLooper();
+        assertFalse(reloaded.get());
+
+        copy(stateFile("other_writer"), stateFile("watched"));
+        observer.onEvent(FileObserver.CLOSE_WRITE, "other_writer.state");
+        StateStore.awaitBackgroundWork();
+        ShadowLooper.idleMainLooper();
+        assertFalse(reloaded.get());
+
+        observer.onEvent(FileObserver.MOVED_TO, "watched.state");
+        StateStore.awaitBackgroundWork();
+        ShadowLooper.idleMainLooper();
+        assertTrue(reloaded.get());
+        assertEquals(3, store.getInt("int", 0));
+
+        // Every start needs its stop.
+        store.stopWatching();
+        assertSame(observer, store.getFileObserver());
+        store.stopWatching();
+        assertNull(store.getFileObserver());
+        store.stopWatching();
+        assertNull(store.getFileObserver());
+    }
+
+    /*
+     * Compares the bytes written per change with the XML preferences the state store replaces,
+     * for the watch face settings (4 values) and the tap counters of a few providers (24 values).
+     */
+    @Test
+    public void writesLessThanXmlPreferences() throws Exception {
+        for (int valueCount : new int[] {4, 24}) {
+            String name = "compare_" + valueCount;
+            SharedPreferences.Editor editor =
+                    mContext.getSharedPreferences(name, Context.MODE_PRIVATE).edit();
+            StateStore store = StateStore.open(mContext, name, NO_LEGACY);
+            for (int index = 0; index < valueCount; index++) {
+                String key = String.format(Locale.US, "saved_value_%02d", index);
+                editor.putInt(key, 0xff000000 | index * 7919);
+                store.putInt(key, 0xff000000 | index * 7919);
+            }
+            assertTrue(editor.commit());
+            store.apply();
+            StateStore.awaitBackgroundWork();
+
+            File xmlFile = new File(mContext.getDataDir(), "shared_prefs/" + name + ".xml");
+            long stateBytes = stateFile(name).length();
+            assertTrue(valueCount + " values: state=" + stateBytes + " xml=" + xmlFile.length(),
+                    stateBytes * 2 < xmlFile.length());
+        }
+    }
+
+    private File stateFile(String name) {
+        return new File(mContext.getFilesDir(), name + ".state");
+    }
+
+    private static void copy(File from, File to) throws IOException {
+        write(to, read(from));
+    }
+
+    private static byte[] read(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        InputStream input = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < bytes.length) {
+                offset += input.read(bytes, offset, bytes.length - offset);
+            }
+        } finally {
+            input.close();
+        }
+        return bytes;
+    }
+
+    private static void write(File file, byte[] bytes) throws IOException {
+        file.getParentFile().mkdirs();
+        OutputStream output = new FileOutputStream(file);
+        try {
+            output.write(bytes);
+        } finally {
+            output.close();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.deviantdev.wearable.watchface.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.content.ComponentName;
+import android.support.wearable.complications.ComplicationData;
+import android.support.wearable.complications.ComplicationManager;
+import android.util.SparseArray;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ServiceController;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.Locale;
+
+/**
+ * Runs updates through the provider and its background loads, answered to an in-memory
+ * {@link ComplicationManager}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class IncrementingNumberComplicationProviderServiceTest {
+
+    private static final long LOAD_WAIT_MS = 5000;
+
+    private ServiceController<IncrementingNumberComplicationProviderService> mController;
+    private IncrementingNumberComplicationProviderService mService;
+    private ComponentName mProvider;
+    private InMemoryComplicationManager mManager;
+
+    @Before
+    public void setUp() {
+        mController = Robolectric.buildService(IncrementingNumberComplicationProviderService.class);
+        mService = mController.create().get();
+        mProvider = new ComponentName(mService, IncrementingNumberComplicationProviderService.class);
+        mManager = new InMemoryComplicationManager();
+    }
+
+    @After
+    public void tearDown() {
+        mController.destroy();
+    }
+
+    @Test
+    public void sendsCurrentNumber() {
+        int number = TapCounterStore.getInstance(mService).get(mProvider, 1);
+
+        update(1, ComplicationData.TYPE_SHORT_TEXT);
+
+        ComplicationData data = mManager.awaitUpdate(1);
+        assertEquals(ComplicationData.TYPE_SHORT_TEXT, data.getType());
+        assertEquals(IncrementingNumberText.getShortText(number, Locale.getDefault()),
+                data.getShortText().getText(mService, 0).toString());
+        assertNotNull(data.getTapAction());
+    }
+
+    @Test
+    public void sendsRangedValue() {
+        int number = TapCounterStore.getInstance(mService).get(mProvider, 2);
+
+        update(2, ComplicationData.TYPE_RANGED_VALUE);
+
+        ComplicationData data = mManager.awaitUpdate(2);
+        assertEquals(number, data.getValue(), 0);
+        assertEquals(ComplicationToggleReceiver.MAX_NUMBER, data.getMaxValue(), 0);
+    }
+
+    @Test
+    public void unchangedNumberIsNotSentAgain() {
+        update(3, ComplicationData.TYPE_LONG_TEXT);
+        mManager.awaitUpdate(3);
+
+        mService.onComplicationUpdate(3, ComplicationData.TYPE_LONG_TEXT, mManager);
+        mManager.awaitNoUpdateRequired(3);
+        assertEquals(1, mManager.mUpdateCount);
+    }
+
+    @Test
+    public void tappedNumberIsSent() {
+        update(4, ComplicationData.TYPE_SHORT_TEXT);
+        ComplicationData first = mManager.awaitUpdate(4);
+
+        int number = TapCounterStore.getInstance(mService)
+                .increment(mProvider, 4, ComplicationToggleReceiver.MAX_NUMBER);
+        mService.onComplicationUpdate(4, ComplicationData.TYPE_SHORT_TEXT, mManager);
+
+        ComplicationData second = mManager.awaitUpdate(4);
+        assertEquals(IncrementingNumberText.getShortText(number, Locale.getDefault()),
+                second.getShortText().getText(mService, 0).toString());
+        // The tap action is kept while the complication is active.
+        assertTrue(first.getTapAction() == second.getTapAction());
+    }
+
+    @Test
+    public void reactivatedComplicationIsSentAgain() {
+        update(5, ComplicationData.TYPE_SHORT_TEXT);
+        mManager.awaitUpdate(5);
+        mService.onComplicationDeactivated(5);
+
+        update(5, ComplicationData.TYPE_SHORT_TEXT);
+        mManager.awaitUpdate(5);
+        assertEquals(2, mManager.mUpdateCount);
+    }
+
+    @Test
+    public void batchOfComplicationsIsAnswered() {
+        int[] complicationIds = {10, 11, 12, 13, 14, 15};
+        for (int complicationId : complicationIds) {
+            mService.onComplicationActivated(
+                    complicationId, ComplicationData.TYPE_SHORT_TEXT, mManager);
+        }
+        for (int complicationId : complicationIds) {
+            mService.onComplicationUpdate(
+                    complicationId, ComplicationData.TYPE_SHORT_TEXT, mManager);
+        }
+
+        for (int complicationId : complicationIds) {
+            mManager.awaitUpdate(complicationId);
+        }
+    }
+
+    private void update(int complicationId, int dataType) {
+        mService.onComplicationActivated(complicationId, dataType, mManager);
+        mService.onComplicationUpdate(complicationId, dataType, mManager);
+    }
+
+    /*
+     * Records the answers. The service answers on the main thread, so waiting means running the
+     * paused main looper until the background load posted its result.
+     */
+    private static final class InMemoryComplicationManager extends ComplicationManager {
+        private final SparseArray<ComplicationData> mUpdates = new SparseArray<>();
+        private final SparseArray<Boolean> mNoUpdates = new SparseArray<>();
+        private int mUpdateCount;
+
+        private InMemoryComplicationManager() {
+            super(null);
+        }
+
+        @Override
+        public void updateComplicationData(int complicationId, ComplicationData data) {
+            mUpdates.put(complicationId, data);
+            mUpdateCount++;
+        }
+
+        @Override
+        public void noUpdateRequired(int complicationId) {
+            mNoUpdates.put(complicationId, true);
+        }
+
+        private ComplicationData awaitUpdate(int complicationId) {
+            awaitAnswer(complicationId);
+            ComplicationData data = mUpdates.get(complicationId);
+            assertNotNull("Complication " + complicationId + " was not updated", data);
+            mUpdates.remove(complicationId);
+            return data;
+        }
+
+        private void awaitNoUpdateRequired(int complicationId) {
+            awaitAnswer(complicationId);
+            assertTrue(mUpdates.get(complicationId) == null);
+            mNoUpdates.remove(complicationId);
+        }
+
+        private void awaitAnswer(int complicationId) {
+            long end = System.currentTimeMillis() + LOAD_WAIT_MS;
+            while (mUpdates.get(complicationId) == null && mNoUpdates.get(complicationId) == null) {
+                waitForMainLooper(end);
+            }
+        }
+
+        private static void waitForMainLooper(long end) {
+            if (System.currentTimeMillis() > end) {
+                fail("Timed out waiting for the provider");
+            }
+            ShadowLooper.idleMainLooper();
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
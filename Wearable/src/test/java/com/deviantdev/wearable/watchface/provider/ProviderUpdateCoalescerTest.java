@@ -0,0 +1,206 @@
+package com.deviantdev.wearable.watchface.provider;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.shadows.ShadowBroadcastPendingResult;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.shadow.api.Shadow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives the coalescer with Robolectric's paused main looper as the clock and a fake requester.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class ProviderUpdateCoalescerTest {
+
+    private static final long WINDOW_MS = ProviderUpdateCoalescer.COALESCING_WINDOW_MS;
+
+    private Context mContext;
+    private ComponentName mProvider;
+    private ComponentName mOtherProvider;
+    private FakeRequester mRequester;
+    private ProviderUpdateCoalescer mCoalescer;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.getApplication();
+        mProvider = new ComponentName(mContext, "Provider");
+        mOtherProvider = new ComponentName(mContext, "OtherProvider");
+        mRequester = new FakeRequester();
+        mCoalescer = new ProviderUpdateCoalescer(mRequester, new Handler(Looper.getMainLooper()));
+    }
+
+    @Test
+    public void burstOfTapsSendsOneRequest() {
+        for (int tap = 0; tap < 5; tap++) {
+            mCoalescer.requestUpdate(mProvider, 7, null);
+            advance(40);
+        }
+        assertEquals(0, mRequester.mRequests.size());
+
+        advance(WINDOW_MS);
+        assertEquals(1, mRequester.mRequests.size());
+        mRequester.assertRequest(0, mProvider, 7);
+    }
+
+    @Test
+    public void windowStartsWithFirstRequest() {
+        long start = SystemClock.uptimeMillis();
+        mCoalescer.requestUpdate(mProvider, 1, null);
+        advance(200);
+        mCoalescer.requestUpdate(mProvider, 1, null);
+        advance(100);
+        mCoalescer.requestUpdate(mProvider, 1, null);
+        advance(1000);
+
+        assertEquals(2, mRequester.mRequests.size());
+        assertEquals(start + WINDOW_MS, (long) mRequester.mUptimes.get(0));
+        assertEquals(start + 300 + WINDOW_MS, (long) mRequester.mUptimes.get(1));
+    }
+
+    @Test
+    public void requestsAreGroupedPerProvider() {
+        mCoalescer.requestUpdate(mProvider, 3, null);
+        mCoalescer.requestUpdate(mOtherProvider, 9, null);
+        mCoalescer.requestUpdate(mProvider, 1, null);
+        mCoalescer.requestUpdate(mProvider, 3, null);
+        advance(WINDOW_MS);
+
+        assertEquals(2, mRequester.mRequests.size());
+        for (int index = 0; index < 2; index++) {
+            if (mRequester.mProviders.get(index).equals(mProvider)) {
+                mRequester.assertRequest(index, mProvider, 1, 3);
+            } else {
+                mRequester.assertRequest(index, mOtherProvider, 9);
+            }
+        }
+    }
+
+    @Test
+    public void broadcastsAreFinishedWithTheBatch() {
+        BroadcastReceiver.PendingResult first = receiveAsync();
+        BroadcastReceiver.PendingResult second = receiveAsync();
+        mCoalescer.requestUpdate(mProvider, 1, first);
+        mCoalescer.requestUpdate(mProvider, 1, second);
+        assertFalse(isFinished(first));
+
+        advance(WINDOW_MS);
+        assertTrue(isFinished(first));
+        assertTrue(isFinished(second));
+    }
+
+    @Test
+    public void broadcastsAreFinishedWhenSendingFails() {
+        mRequester.mFailure = new IllegalStateException("Provider gone");
+        BroadcastReceiver.PendingResult result = receiveAsync();
+        mCoalescer.requestUpdate(mProvider, 1, result);
+
+        try {
+            mCoalescer.flush();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        assertTrue(isFinished(result));
+
+        // Nothing is left over for the next batch.
+        mRequester.mFailure = null;
+        advance(WINDOW_MS);
+        assertEquals(0, mRequester.mRequests.size());
+    }
+
+    @Test
+    public void rejectsOtherThreads() throws Exception {
+        final Throwable[] thrown = new Throwable[1];
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mCoalescer.requestUpdate(mProvider, 1, null);
+                } catch (Throwable t) {
+                    thrown[0] = t;
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+
+        assertTrue(thrown[0] instanceof IllegalStateException);
+    }
+
+    @Test
+    public void getInstanceReturnsOneInstance() {
+        assertTrue(ProviderUpdateCoalescer.getInstance(mContext)
+                == ProviderUpdateCoalescer.getInstance(mContext));
+    }
+
+    private static void advance(long millis) {
+        ShadowLooper.idleMainLooper(millis, TimeUnit.MILLISECONDS);
+    }
+
+    /* Delivers a broadcast to a receiver that keeps it alive with goAsync(). */
+    private BroadcastReceiver.PendingResult receiveAsync() {
+        final BroadcastReceiver.PendingResult[] result = new BroadcastReceiver.PendingResult[1];
+        BroadcastReceiver receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                result[0] = goAsync();
+            }
+        };
+        String action = "test.action." + System.nanoTime();
+        mContext.registerReceiver(receiver, new IntentFilter(action));
+        mContext.sendBroadcast(new Intent(action));
+        ShadowLooper.idleMainLooper();
+        mContext.unregisterReceiver(receiver);
+        return result[0];
+    }
+
+    private static boolean isFinished(BroadcastReceiver.PendingResult result) {
+        ShadowBroadcastPendingResult shadow = Shadow.extract(result);
+        return shadow.getFuture().isDone();
+    }
+
+    private static final class FakeRequester implements ProviderUpdateCoalescer.Requester {
+        private final ArrayList<ComponentName> mProviders = new ArrayList<>();
+        private final ArrayList<int[]> mRequests = new ArrayList<>();
+        private final ArrayList<Long> mUptimes = new ArrayList<>();
+        private RuntimeException mFailure;
+
+        @Override
+        public void requestUpdate(ComponentName provider, int... complicationIds) {
+            if (mFailure != null) {
+                throw mFailure;
+            }
+            mProviders.add(provider);
+            mRequests.add(complicationIds);
+            mUptimes.add(SystemClock.uptimeMillis());
+        }
+
+        private void assertRequest(int index, ComponentName provider, int... complicationIds) {
+            assertEquals(provider, mProviders.get(index));
+            int[] sorted = mRequests.get(index).clone();
+            Arrays.sort(sorted);
+            assertArrayEquals(complicationIds, sorted);
+        }
+    }
+}
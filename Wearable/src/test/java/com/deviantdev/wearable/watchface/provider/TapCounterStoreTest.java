@@ -0,0 +1,141 @@
+package com.deviantdev.wearable.watchface.provider;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.ComponentName;
+import android.content.Context;
+
+import com.deviantdev.wearable.watchface.preference.StateStore;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hammers the tap counters from many threads at once, as concurrent taps and provider updates do.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TapCounterStoreTest {
+
+    private static final int THREADS = 8;
+    private static final int INCREMENTS_PER_THREAD = 5000;
+    private static final int COMPLICATION_IDS = 3;
+
+    private Context mContext;
+    private TapCounterStore mStore;
+
+    @Before
+    public void setUp() {
+        mContext = RuntimeEnvironment.getApplication();
+        mStore = TapCounterStore.getInstance(mContext);
+    }
+
+    @Test
+    public void concurrentIncrementsAreNeverLost() throws Exception {
+        final ComponentName provider = new ComponentName(mContext, "StressProvider");
+        final int modulo = Integer.MAX_VALUE;
+
+        runConcurrently(new Increment() {
+            @Override
+            public void run(int thread, int iteration) {
+                mStore.increment(provider, iteration % COMPLICATION_IDS, modulo);
+            }
+        });
+        mStore.awaitWrites();
+
+        for (int complicationId = 0; complicationId < COMPLICATION_IDS; complicationId++) {
+            int perThread = (INCREMENTS_PER_THREAD - complicationId + COMPLICATION_IDS - 1)
+                    / COMPLICATION_IDS;
+            assertEquals(THREADS * perThread, mStore.get(provider, complicationId));
+        }
+    }
+
+    /* Every increment returns a distinct value; with wraparound each value shows up equally. */
+    @Test
+    public void wrappingIncrementsReturnEveryValueOnce() throws Exception {
+        final ComponentName provider = new ComponentName(mContext, "WrappingProvider");
+        final int modulo = THREADS * INCREMENTS_PER_THREAD / 4;
+        final int[] returned = new int[THREADS * INCREMENTS_PER_THREAD];
+
+        runConcurrently(new Increment() {
+            @Override
+            public void run(int thread, int iteration) {
+                returned[thread * INCREMENTS_PER_THREAD + iteration] =
+                        mStore.increment(provider, 0, modulo);
+            }
+        });
+        mStore.awaitWrites();
+
+        int[] counts = new int[modulo];
+        for (int value : returned) {
+            counts[value]++;
+        }
+        for (int value = 0; value < modulo; value++) {
+            assertEquals("value " + value, 4, counts[value]);
+        }
+        assertEquals(0, mStore.get(provider, 0));
+    }
+
+    /* The state store must end up with the final values, whatever order the writes ran in. */
+    @Test
+    public void lastWriteSavesFinalValues() throws Exception {
+        final ComponentName provider = new ComponentName(mContext, "PersistedProvider");
+
+        runConcurrently(new Increment() {
+            @Override
+            public void run(int thread, int iteration) {
+                mStore.increment(provider, thread, Integer.MAX_VALUE);
+            }
+        });
+        mStore.awaitWrites();
+
+        StateStore stateStore = StateStore.open(mContext,
+                ComplicationToggleReceiver.COMPLICATION_PROVIDER_STATE_NAME,
+                ComplicationToggleReceiver.COMPLICATION_PROVIDER_PREFERENCES_FILE_KEY);
+        for (int thread = 0; thread < THREADS; thread++) {
+            assertEquals(INCREMENTS_PER_THREAD, stateStore.getInt(
+                    ComplicationToggleReceiver.getPreferenceKey(provider, thread), 0));
+        }
+    }
+
+    private interface Increment {
+        void run(int thread, int iteration);
+    }
+
+    /* Starts all threads at once and rethrows the first failure. */
+    private static void runConcurrently(final Increment increment) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        for (int thread = 0; thread < THREADS; thread++) {
+            final int threadIndex = thread;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int iteration = 0; iteration < INCREMENTS_PER_THREAD; iteration++) {
+                            increment.run(threadIndex, iteration);
+                        }
+                    } catch (Throwable t) {
+                        failure.compareAndSet(null, t);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        start.countDown();
+        done.await();
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.deviantdev.wearable.watchface.render;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.GraphicsMode;
+
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class DialLayerTest {
+
+    private static final int[] SIZES = {320, 390, 454};
+
+    private static final int[] STATES = {
+            0,
+            WatchFaceTheme.STATE_MUTE,
+            WatchFaceTheme.STATE_NO_SHADOWS,
+            WatchFaceTheme.STATE_AMBIENT,
+            WatchFaceTheme.STATE_AMBIENT | WatchFaceTheme.STATE_LOW_BIT_AMBIENT,
+            WatchFaceTheme.STATE_AMBIENT | WatchFaceTheme.STATE_BURN_IN_PROTECTION};
+
+    private final WatchFaceThemeCache mThemes = new WatchFaceThemeCache(5f, 3f, 2f, 6);
+
+    @Test
+    public void cachedLayerMatchesDirectDrawing() {
+        int[][] colors = {{Color.BLACK, Color.RED}, {Color.WHITE, Color.BLUE},
+                {Color.DKGRAY, Color.GREEN}};
+        for (int[] color : colors) {
+            mThemes.setColors(color[0], color[1]);
+            for (int state : STATES) {
+                WatchFaceTheme theme = mThemes.get(state);
+                for (int size : SIZES) {
+                    assertLayerMatches(theme, size);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void rebuiltLayerMatchesDirectDrawing() {
+        mThemes.setColors(Color.BLACK, Color.RED);
+        DialLayer layer = new DialLayer();
+        Bitmap bitmap = Bitmap.createBitmap(390, 390, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+
+        // Switch to another theme and size, as on entering ambient mode or a surface change.
+        WatchFaceTheme interactive = mThemes.get(0);
+        layer.draw(canvas, interactive.getBackgroundColor(), 195, 195,
+                interactive.getTickAndCirclePaint());
+        WatchFaceTheme ambient = mThemes.get(WatchFaceTheme.STATE_AMBIENT);
+        layer.invalidate();
+        layer.draw(canvas, ambient.getBackgroundColor(), 195, 195,
+                ambient.getTickAndCirclePaint());
+        assertTrue(bitmap.sameAs(drawDirectly(ambient, 390)));
+
+        Bitmap smaller = Bitmap.createBitmap(320, 320, Bitmap.Config.ARGB_8888);
+        layer.draw(new Canvas(smaller), ambient.getBackgroundColor(), 160, 160,
+                ambient.getTickAndCirclePaint());
+        assertTrue(smaller.sameAs(drawDirectly(ambient, 320)));
+        layer.release();
+    }
+
+    @Test
+    public void muteModeKeepsDial() {
+        mThemes.setColors(Color.BLACK, Color.RED);
+        WatchFaceTheme theme = mThemes.get(0);
+        WatchFaceTheme muted = mThemes.get(WatchFaceTheme.STATE_MUTE);
+
+        assertTrue(muted.differsOnlyInAlpha(theme));
+        assertTrue(muted.hasSameDial(theme));
+        assertFalse(mThemes.get(WatchFaceTheme.STATE_AMBIENT).hasSameDial(theme));
+    }
+
+    private static void assertLayerMatches(WatchFaceTheme theme, int size) {
+        float center = size / 2f;
+        DialLayer layer = new DialLayer();
+        Bitmap expected = drawDirectly(theme, size);
+
+        // The first draw renders the layer, the second one only blits it.
+        for (int frame = 0; frame < 2; frame++) {
+            Bitmap actual = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+            layer.draw(new Canvas(actual), theme.getBackgroundColor(), center, center,
+                    theme.getTickAndCirclePaint());
+            assertTrue("state " + theme.getState() + ", size " + size + ", frame " + frame,
+                    actual.sameAs(expected));
+        }
+        layer.release();
+    }
+
+    /*
+     * The background and ticks as drawWatchFace() drew them on every frame before the layer.
+     */
+    private static Bitmap drawDirectly(WatchFaceTheme theme, int size) {
+        Bitmap bitmap = Bitmap.createBitmap(size, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.drawColor(theme.getBackgroundColor());
+
+        float centerX = size / 2f;
+        float centerY = size / 2f;
+        Paint tickPaint = theme.getTickAndCirclePaint();
+        float innerTickRadius = centerX - 10;
+        float outerTickRadius = centerX;
+        for (int tickIndex = 0; tickIndex < 12; tickIndex++) {
+            float tickRot = (float) (tickIndex * Math.PI * 2 / 12);
+            float innerX = (float) Math.sin(tickRot) * innerTickRadius;
+            float innerY = (float) -Math.cos(tickRot) * innerTickRadius;
+            float outerX = (float) Math.sin(tickRot) * outerTickRadius;
+            float outerY = (float) -Math.cos(tickRot) * outerTickRadius;
+            canvas.drawLine(centerX + innerX, centerY + innerY, centerX + outerX,
+                    centerY + outerY, tickPaint);
+        }
+        return bitmap;
+    }
+}
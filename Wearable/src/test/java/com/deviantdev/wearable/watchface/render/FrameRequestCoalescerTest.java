@@ -0,0 +1,225 @@
+package com.deviantdev.wearable.watchface.render;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Drives a {@link FrameRequestCoalescer} with a fake clock and a fake engine that draws every
+ * invalidated frame a few milliseconds later, like the next vsync would.
+ */
+public class FrameRequestCoalescerTest {
+
+    private static final long WINDOW_MS = 100;
+    private static final long DRAW_LATENCY_MS = 8;
+
+    private static final int COMPLICATION_LEFT = 100;
+    private static final int COMPLICATION_RIGHT = 101;
+    private static final int COMPLICATION_BACKGROUND = 0;
+
+    private FakeHost mHost;
+    private FrameRequestCoalescer mCoalescer;
+
+    @Before
+    public void setUp() {
+        mHost = new FakeHost();
+        mCoalescer = new FrameRequestCoalescer(mHost, WINDOW_MS);
+        mHost.mCoalescer = mCoalescer;
+        mHost.advanceTo(10_000);
+    }
+
+    @Test
+    public void firstRequestDrawsRightAway() {
+        mCoalescer.requestComplicationFrame(COMPLICATION_LEFT);
+        mHost.advanceTo(mHost.mNow + DRAW_LATENCY_MS);
+
+        assertEquals(1, mHost.mFrames);
+        assertEquals(FrameRequestCoalescer.REASON_COMPLICATION, mHost.mLastReasons);
+        assertEquals(COMPLICATION_LEFT, mCoalescer.getLastFrameComplicationId());
+    }
+
+    @Test
+    public void burstOfComplicationUpdatesDrawsOneFrame() {
+        long start = mHost.mNow;
+        mCoalescer.requestComplicationFrame(COMPLICATION_LEFT);
+        mHost.advanceTo(start + 2);
+        mCoalescer.requestComplicationFrame(COMPLICATION_RIGHT);
+        mHost.advanceTo(start + 5);
+        mCoalescer.requestComplicationFrame(COMPLICATION_BACKGROUND);
+        mHost.advanceTo(start + 40);
+        mCoalescer.requestFrame(FrameRequestCoalescer.REASON_UNREAD_COUNT);
+        mHost.advanceTo(start + 1000);
+
+        // The first three share one frame, the last one waits for the window.
+        assertEquals(2, mHost.mFrames);
+        assertEquals(2, mCoalescer.getCoalescedCount());
+        assertEquals(FrameRequestCoalescer.REASON_UNREAD_COUNT, mHost.mLastReasons);
+        assertEquals(start + DRAW_LATENCY_MS + WINDOW_MS + DRAW_LATENCY_MS, mHost.mLastFrameTime);
+    }
+
+    @Test
+    public void requestsWithinWindowAreMergedIntoOneDeferredFrame() {
+        mCoalescer.requestFrame(FrameRequestCoalescer.REASON_STYLE);
+        mHost.advanceTo(mHost.mNow + DRAW_LATENCY_MS);
+        long frameTime = mHost.mNow;
+
+        mHost.advanceTo(frameTime + 10);
+        mCoalescer.requestComplicationFrame(COMPLICATION_LEFT);
+        mHost.advanceTo(frameTime + 50);
+        mCoalescer.requestFrame(FrameRequestCoalescer.REASON_UNREAD_COUNT);
+        mHost.advanceTo(frameTime + 500);
+
+        assertEquals(2, mHost.mFrames);
+        assertEquals(FrameRequestCoalescer.REASON_COMPLICATION
+                | FrameRequestCoalescer.REASON_UNREAD_COUNT, mHost.mLastReasons);
+        assertEquals(frameTime + WINDOW_MS + DRAW_LATENCY_MS, mHost.mLastFrameTime);
+    }
+
+    @Test
+    public void urgentRequestFlushesDeferredFrame() {
+        mCoalescer.requestFrame(FrameRequestCoalescer.REASON_STYLE);
+        mHost.advanceTo(mHost.mNow + DRAW_LATENCY_MS);
+        long frameTime = mHost.mNow;
+
+        mHost.advanceTo(frameTime + 10);
+        mCoalescer.requestComplicationFrame(COMPLICATION_LEFT);
+        mHost.advanceTo(frameTime + 20);
+        mCoalescer.requestFrame(FrameRequestCoalescer.REASON_TAP);
+        mHost.advanceTo(frameTime + 500);
+
+        assertEquals(2, mHost.mFrames);
+        assertEquals(FrameRequestCoalescer.REASON_COMPLICATION
+                | FrameRequestCoalescer.REASON_TAP, mHost.mLastReasons);
+        assertEquals(frameTime + 20 + DRAW_LATENCY_MS, mHost.mLastFrameTime);
+    }
+
+    @Test
+    public void requestsWhileHiddenAreDropped() {
+        mHost.mVisible = false;
+        mCoalescer.onVisibilityChanged(false);
+        for (int update = 0; update < 10; update++) {
+            mCoalescer.requestComplicationFrame(COMPLICATION_LEFT);
+            mHost.advanceTo(mHost.mNow + 1000);
+        }
+
+        assertEquals(0, mHost.mFrames);
+        assertEquals(10, mCoalescer.getDroppedCount());
+    }
+
+    @Test
+    public void deferredFrameIsDroppedWhenHidden() {
+        mCoalescer.requestFrame(FrameRequestCoalescer.REASON_STYLE);
+        mHost.advanceTo(mHost.mNow + DRAW_LATENCY_MS);
+        mCoalescer.requestComplicationFrame(COMPLICATION_LEFT);
+
+        mHost.mVisible = false;
+        mCoalescer.onVisibilityChanged(false);
+        mHost.advanceTo(mHost.mNow + 1000);
+
+        assertEquals(1, mHost.mFrames);
+    }
+
+    /*
+     * An hour of interactive mode with a ticking second hand. Every 30 seconds all three
+     * complications and the unread count update within 40 ms, as after the phone reconnects.
+     */
+    @Test
+    public void updateStormsSaveFrames() {
+        long start = mHost.mNow;
+        long end = start + 60 * 60 * 1000;
+        long requests = 0;
+        for (long second = start; second < end; second += 1000) {
+            mHost.advanceTo(second);
+            mCoalescer.requestFrame(FrameRequestCoalescer.REASON_TIMER);
+            requests++;
+
+            if ((second - start) % 30_000 == 0) {
+                // The storm starts a little after the tick.
+                mHost.advanceTo(second + 30);
+                mCoalescer.requestComplicationFrame(COMPLICATION_LEFT);
+                mHost.advanceTo(second + 45);
+                mCoalescer.requestComplicationFrame(COMPLICATION_RIGHT);
+                mHost.advanceTo(second + 60);
+                mCoalescer.requestComplicationFrame(COMPLICATION_BACKGROUND);
+                mHost.advanceTo(second + 70);
+                mCoalescer.requestFrame(FrameRequestCoalescer.REASON_UNREAD_COUNT);
+                requests += 4;
+            }
+        }
+        mHost.advanceTo(end);
+
+        long ticks = 60 * 60;
+        long storms = 60 * 2;
+        assertEquals(requests, mCoalescer.getRequestCount());
+        // Each storm costs one extra frame, instead of four.
+        assertEquals(ticks + storms, mHost.mFrames);
+        assertEquals(requests - mHost.mFrames, mCoalescer.getCoalescedCount());
+    }
+
+    /* A fake engine: a clock, one delayed message and a surface that draws after a delay. */
+    private static final class FakeHost implements FrameRequestCoalescer.Host {
+        private static final long NONE = Long.MIN_VALUE;
+
+        private FrameRequestCoalescer mCoalescer;
+        private long mNow;
+        private boolean mVisible = true;
+        private long mScheduledFrameTime = NONE;
+        private long mDrawTime = NONE;
+
+        private int mFrames;
+        private int mLastReasons;
+        private long mLastFrameTime;
+
+        @Override
+        public long uptimeMillis() {
+            return mNow;
+        }
+
+        @Override
+        public boolean isVisible() {
+            return mVisible;
+        }
+
+        @Override
+        public void scheduleFrame(long delayMillis) {
+            mScheduledFrameTime = mNow + delayMillis;
+        }
+
+        @Override
+        public void cancelScheduledFrame() {
+            mScheduledFrameTime = NONE;
+        }
+
+        @Override
+        public void invalidate() {
+            if (mDrawTime == NONE) {
+                mDrawTime = mNow + DRAW_LATENCY_MS;
+            }
+        }
+
+        /* Moves the clock forward, handling scheduled frames and draws in order. */
+        private void advanceTo(long time) {
+            while (true) {
+                long next = Math.min(mScheduledFrameTime == NONE ? Long.MAX_VALUE
+                        : mScheduledFrameTime, mDrawTime == NONE ? Long.MAX_VALUE : mDrawTime);
+                if (next > time) {
+                    break;
+                }
+                mNow = next;
+                if (next == mDrawTime) {
+                    mDrawTime = NONE;
+                    if (mVisible) {
+                        mLastReasons = mCoalescer.onFrameDrawn();
+                        mLastFrameTime = mNow;
+                        mFrames++;
+                    }
+                } else {
+                    mScheduledFrameTime = NONE;
+                    mCoalescer.onScheduledFrameDue();
+                }
+            }
+            mNow = time;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.deviantdev.wearable.watchface.render;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+public class FrameSchedulerTest {
+
+    private static final long SECOND_START = 1_500_000_000_000L;
+
+    @Test
+    public void targetsNextSlotBoundary() {
+        FrameScheduler scheduler = new FrameScheduler();
+        scheduler.setMode(FrameScheduler.MODE_FIXED);
+
+        // 15 fps: slots at 67, 134, 200, ... ms into the second.
+        assertEquals(67, scheduler.getDelayToNextFrame(SECOND_START));
+        assertEquals(67, scheduler.getDelayToNextFrame(SECOND_START + 67));
+        assertEquals(1000 - 990, scheduler.getDelayToNextFrame(SECOND_START + 990));
+    }
+
+    @Test
+    public void lateFrameDoesNotSkipSlot() {
+        FrameScheduler scheduler = new FrameScheduler();
+        scheduler.setMode(FrameScheduler.MODE_FIXED);
+
+        // Drawn 50 ms after the slot at 67 ms, i.e. well past half an interval.
+        assertEquals(134 - 117, scheduler.getDelayToNextFrame(SECOND_START + 117));
+    }
+
+    @Test
+    public void earlyTimerTargetsFollowingSlot() {
+        FrameScheduler scheduler = new FrameScheduler();
+        scheduler.setMode(FrameScheduler.MODE_FIXED);
+
+        // The timer for the slot at 67 ms fired 1 ms early; that frame is this one.
+        assertEquals(134 - 66, scheduler.getDelayToNextFrame(SECOND_START + 66));
+    }
+
+    @Test
+    public void delayIsNeverBelowMinimum() {
+        FrameScheduler scheduler = new FrameScheduler();
+        scheduler.setMode(FrameScheduler.MODE_FIXED);
+
+        for (long time = SECOND_START; time < SECOND_START + 2000; time++) {
+            long delay = scheduler.getDelayToNextFrame(time);
+            assertTrue(delay >= FrameScheduler.MINIMUM_FRAME_DELAY_MS);
+            assertTrue(delay < 67 + FrameScheduler.MINIMUM_FRAME_DELAY_MS);
+        }
+    }
+
+    /* Timers fire up to 2 ms early or 30 ms late; every slot still gets one frame. */
+    @Test
+    public void jitteryTimerKeepsFrameRate() {
+        int[] modes = {FrameScheduler.MODE_TICK, FrameScheduler.MODE_FIXED};
+        for (int mode : modes) {
+            FrameScheduler scheduler = new FrameScheduler();
+            scheduler.setMode(mode);
+            int framesPerSecond = scheduler.getFramesPerSecond();
+
+            Random random = new Random(mode);
+            long seconds = 60;
+            long now = SECOND_START;
+            long frames = 0;
+            while (now < SECOND_START + seconds * 1000) {
+                frames++;
+                long delay = scheduler.getDelayToNextFrame(now);
+                now += delay + random.nextInt(33) - 2;
+            }
+            assertEquals(seconds * framesPerSecond, frames, 1);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.deviantdev.wearable.watchface.render;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renders every minute of twelve hours through the protected ambient renderer and checks the
+ * final frames: lit pixels stay within the budget, pixels are either off or fully lit, and the
+ * rotated hand outlines stay connected.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+public class ProtectedAmbientRendererTest {
+
+    private static final int SIZE = 390;
+    private static final float CENTER = SIZE / 2f;
+    private static final float CENTER_GAP = 4f;
+    private static final float HOUR_HAND_LENGTH = CENTER * 0.5f;
+    private static final float MINUTE_HAND_LENGTH = CENTER * 0.75f;
+    private static final int COLOR = Color.WHITE;
+
+    /* Burn-in protected screens should keep almost all pixels off. */
+    private static final float LIT_PIXEL_BUDGET_PERCENT = 5f;
+
+    private static final int MINUTES = 12 * 60;
+    private static final long MINUTE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private ProtectedAmbientRenderer mRenderer;
+    private Bitmap mFrame;
+    private Canvas mCanvas;
+
+    @Before
+    public void setUp() {
+        mRenderer = new ProtectedAmbientRenderer();
+        mRenderer.setHandGeometry(CENTER_GAP, HOUR_HAND_LENGTH, MINUTE_HAND_LENGTH);
+        mFrame = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        mCanvas = new Canvas(mFrame);
+    }
+
+    @After
+    public void tearDown() {
+        mRenderer.release();
+        mFrame.recycle();
+    }
+
+    @Test
+    public void litPixelsStayWithinBudget() {
+        int budget = (int) (SIZE * SIZE * LIT_PIXEL_BUDGET_PERCENT / 100);
+        for (int minute = 0; minute < MINUTES; minute++) {
+            renderFrame(minute, true);
+            int litPixels = ProtectedAmbientRenderer.countLitPixels(mFrame);
+            assertTrue("minute " + minute + ": " + litPixels + " lit pixels",
+                    litPixels > 0 && litPixels <= budget);
+        }
+    }
+
+    @Test
+    public void pixelsAreOffOrFullyLit() {
+        int[] pixels = new int[SIZE * SIZE];
+        for (int minute = 0; minute < MINUTES; minute += 7) {
+            renderFrame(minute, true);
+            mFrame.getPixels(pixels, 0, SIZE, 0, 0, SIZE, SIZE);
+            for (int pixel : pixels) {
+                assertTrue("minute " + minute + ": pixel " + Integer.toHexString(pixel),
+                        pixel == Color.BLACK || pixel == COLOR);
+            }
+        }
+    }
+
+    /* Two hand outlines and the center circle, at most; a broken outline has many more parts. */
+    @Test
+    public void handOutlinesStayConnected() {
+        for (int minute = 0; minute < MINUTES; minute++) {
+            renderFrame(minute, false);
+            int parts = countConnectedParts(mFrame);
+            assertTrue("minute " + minute + ": " + parts + " parts", parts <= 3);
+
+            // Each outline runs up and down the full length of its hand.
+            int minLitPixels = (int) (2 * (HOUR_HAND_LENGTH + MINUTE_HAND_LENGTH - 2 * CENTER_GAP));
+            assertTrue(ProtectedAmbientRenderer.countLitPixels(mFrame) >= minLitPixels / 2);
+        }
+    }
+
+    @Test
+    public void ticksStayConnectedAtEveryShift() {
+        for (int minute = 0; minute < 9; minute++) {
+            mRenderer.beginFrame(mCanvas, minute * MINUTE_MILLIS, COLOR);
+            mRenderer.drawDial(mCanvas);
+            mRenderer.endFrame(mCanvas);
+            assertEquals(DialGeometry.TICK_COUNT, countConnectedParts(mFrame));
+        }
+    }
+
+    @Test
+    public void dumpCountsLastFrame() {
+        renderFrame(123, true);
+        int litPixels = ProtectedAmbientRenderer.countLitPixels(mFrame);
+
+        StringWriter output = new StringWriter();
+        mRenderer.dump(new PrintWriter(output));
+        assertTrue(output.toString(), output.toString().contains("litPixels=" + litPixels + " "));
+    }
+
+    private void renderFrame(int minute, boolean withDial) {
+        float minutesRotation = HandAngles.getMinuteRotation(minute % 60);
+        float hoursRotation = HandAngles.getHourRotation(minute / 60, minute % 60);
+
+        mRenderer.beginFrame(mCanvas, minute * MINUTE_MILLIS, COLOR);
+        if (withDial) {
+            mRenderer.drawDial(mCanvas);
+        }
+        mRenderer.drawHands(mCanvas, hoursRotation, minutesRotation);
+        mRenderer.endFrame(mCanvas);
+    }
+
+    /* Counts the groups of lit pixels that touch each other, diagonally included. */
+    private static int countConnectedParts(Bitmap frame) {
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int[] pixels = new int[width * height];
+        frame.getPixels(pixels, 0, width, 0, 0, width, height);
+
+        boolean[] visited = new boolean[pixels.length];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        int parts = 0;
+        for (int start = 0; start < pixels.length; start++) {
+            if (visited[start] || (pixels[start] & 0xffffff) == 0) {
+                continue;
+            }
+            parts++;
+            visited[start] = true;
+            queue.add(start);
+            while (!queue.isEmpty()) {
+                int index = queue.poll();
+                int x = index % width;
+                int y = index / width;
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dx = -1; dx <= 1; dx++) {
+                        int nx = x + dx;
+                        int ny = y + dy;
+                        if (nx < 0 || ny < 0 || nx >= width || ny >= height) {
+                            continue;
+                        }
+                        int neighbor = ny * width + nx;
+                        if (!visited[neighbor] && (pixels[neighbor] & 0xffffff) != 0) {
+                            visited[neighbor] = true;
+                            queue.add(neighbor);
+                        }
+                    }
+                }
+            }
+        }
+        return parts;
+    }
+}
@@ -0,0 +1,234 @@
+package com.deviantdev.wearable.watchface.time;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.deviantdev.wearable.watchface.render.HandAngles;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks {@link WallClock} against {@link Calendar} over a simulated year, including every DST
+ * transition of the zones below and switches between zones.
+ */
+public class WallClockTest {
+
+    private static final String[] ZONES = {
+            "UTC",
+            "Europe/Berlin",
+            "America/New_York",
+            "America/Sao_Paulo",
+            // Half-hour DST shift.
+            "Australia/Lord_Howe",
+            // Quarter-hour offset without DST.
+            "Asia/Kathmandu",
+            // Offset changes by a whole day at the end of 2011.
+            "Pacific/Apia"};
+
+    /* Not a divisor of any unit, so the steps hit every hour, minute and second of a day. */
+    private static final long STEP_MS = TimeUnit.MINUTES.toMillis(7) + 13_017;
+
+    private static final long YEAR_MS = TimeUnit.DAYS.toMillis(366);
+
+    @Test
+    public void matchesCalendarForAFullYear() {
+        for (String zone : ZONES) {
+            TimeZone timeZone = TimeZone.getTimeZone(zone);
+            long start = startOfYear(2017, timeZone);
+            WallClock wallClock = new WallClock(timeZone);
+            for (long time = start; time < start + YEAR_MS; time += STEP_MS) {
+                wallClock.setTimeInMillis(time);
+                assertMatchesCalendar(wallClock, timeZone, time);
+            }
+        }
+    }
+
+    @Test
+    public void matchesCalendarAroundEveryTransition() {
+        for (String zone : ZONES) {
+            TimeZone timeZone = TimeZone.getTimeZone(zone);
+            WallClock wallClock = new WallClock(timeZone);
+            long start = startOfYear(2011, timeZone);
+            long[] transitions = findTransitions(timeZone, start, start + 7 * YEAR_MS);
+            if (!zone.equals("UTC") && !zone.equals("Asia/Kathmandu")) {
+                assertTrue(zone, transitions.length > 0);
+            }
+            for (long transition : transitions) {
+                // Frames of a smooth second hand on both sides of the transition.
+                for (long time = transition - 1000; time <= transition + 1000; time += 16) {
+                    wallClock.setTimeInMillis(time);
+                    assertMatchesCalendar(wallClock, timeZone, time);
+                }
+                wallClock.setTimeInMillis(transition - 1);
+                assertMatchesCalendar(wallClock, timeZone, transition - 1);
+                wallClock.setTimeInMillis(transition);
+                assertMatchesCalendar(wallClock, timeZone, transition);
+            }
+        }
+    }
+
+    @Test
+    public void matchesCalendarAfterTimeZoneChanges() {
+        TimeZone first = TimeZone.getTimeZone("America/New_York");
+        WallClock wallClock = new WallClock(first);
+        long start = startOfYear(2017, first);
+        for (long time = start; time < start + YEAR_MS; time += 97 * STEP_MS) {
+            // A time zone broadcast at some point of the year, e.g. after a flight.
+            String zone = ZONES[(int) ((time / STEP_MS) % ZONES.length)];
+            TimeZone timeZone = TimeZone.getTimeZone(zone);
+            wallClock.setTimeZone(timeZone);
+            for (long frame = time; frame < time + 10 * STEP_MS; frame += STEP_MS) {
+                wallClock.setTimeInMillis(frame);
+                assertMatchesCalendar(wallClock, timeZone, frame);
+            }
+        }
+    }
+
+    @Test
+    public void keepsCachedOffsetWhenClockStepsBack() {
+        TimeZone berlin = TimeZone.getTimeZone("Europe/Berlin");
+        CountingTimeZone timeZone = new CountingTimeZone(berlin);
+        WallClock wallClock = new WallClock(timeZone);
+        long start = startOfYear(2017, berlin) + TimeUnit.DAYS.toMillis(30);
+        wallClock.setTimeInMillis(start);
+        long validUntil = wallClock.getOffsetValidUntil();
+
+        // Corrections of a few seconds up to a few hours take one lookup and keep the interval.
+        long[] steps = {TimeUnit.SECONDS.toMillis(5), TimeUnit.MINUTES.toMillis(3),
+                TimeUnit.HOURS.toMillis(11)};
+        for (long step : steps) {
+            int lookups = timeZone.mLookups;
+            wallClock.setTimeInMillis(start - step);
+            assertEquals(lookups + 1, timeZone.mLookups);
+            assertEquals(validUntil, wallClock.getOffsetValidUntil());
+            assertMatchesCalendar(wallClock, berlin, start - step);
+        }
+
+        // Going forward again within the interval takes no lookup at all.
+        int lookups = timeZone.mLookups;
+        wallClock.setTimeInMillis(start);
+        assertEquals(lookups, timeZone.mLookups);
+        assertMatchesCalendar(wallClock, berlin, start);
+    }
+
+    @Test
+    public void refreshesOffsetWhenClockStepsBackOverTransition() {
+        TimeZone berlin = TimeZone.getTimeZone("Europe/Berlin");
+        long start = startOfYear(2017, berlin);
+        long transition = findTransitions(berlin, start, start + YEAR_MS)[0];
+        WallClock wallClock = new WallClock(berlin);
+
+        wallClock.setTimeInMillis(transition + TimeUnit.MINUTES.toMillis(30));
+        assertMatchesCalendar(wallClock, berlin, transition + TimeUnit.MINUTES.toMillis(30));
+        for (long step = TimeUnit.MINUTES.toMillis(31); step < TimeUnit.DAYS.toMillis(2);
+                step += TimeUnit.HOURS.toMillis(5)) {
+            wallClock.setTimeInMillis(transition + TimeUnit.MINUTES.toMillis(30));
+            wallClock.setTimeInMillis(transition + TimeUnit.MINUTES.toMillis(30) - step);
+            assertMatchesCalendar(wallClock, berlin, transition + TimeUnit.MINUTES.toMillis(30)
+                    - step);
+        }
+    }
+
+    private static void assertMatchesCalendar(WallClock wallClock, TimeZone timeZone, long time) {
+        Calendar calendar = new GregorianCalendar(timeZone);
+        calendar.setTimeInMillis(time);
+        String message = timeZone.getID() + " at " + time;
+
+        assertEquals(message, calendar.get(Calendar.HOUR), wallClock.getHour());
+        assertEquals(message, calendar.get(Calendar.MINUTE), wallClock.getMinute());
+        assertEquals(message, calendar.get(Calendar.SECOND), wallClock.getSecond());
+        assertEquals(message, calendar.get(Calendar.MILLISECOND), wallClock.getMillisecond());
+        assertEquals(message, timeZone.getOffset(time), wallClock.getZoneOffset());
+
+        // The hand angles as drawWatchFace() computed them from the calendar.
+        float seconds = calendar.get(Calendar.SECOND) + calendar.get(Calendar.MILLISECOND) / 1000f;
+        assertEquals(message, seconds * 6f, HandAngles.getSecondRotation(
+                wallClock.getSecond(), wallClock.getMillisecond()), 0f);
+        assertEquals(message, calendar.get(Calendar.MINUTE) * 6f,
+                HandAngles.getMinuteRotation(wallClock.getMinute()), 0f);
+        assertEquals(message, calendar.get(Calendar.HOUR) * 30 + calendar.get(Calendar.MINUTE) / 2f,
+                HandAngles.getHourRotation(wallClock.getHour(), wallClock.getMinute()), 0f);
+    }
+
+    private static long startOfYear(int year, TimeZone timeZone) {
+        Calendar calendar = new GregorianCalendar(timeZone);
+        calendar.clear();
+        calendar.set(year, Calendar.JANUARY, 1);
+        return calendar.getTimeInMillis();
+    }
+
+    /* First milliseconds with a new offset, found by stepping hourly and bisecting. */
+    private static long[] findTransitions(TimeZone timeZone, long from, long until) {
+        long[] transitions = new long[64];
+        int count = 0;
+        long step = TimeUnit.HOURS.toMillis(1);
+        for (long time = from; time < until && count < transitions.length; time += step) {
+            if (timeZone.getOffset(time) != timeZone.getOffset(time + step)) {
+                long low = time;
+                long high = time + step;
+                while (high - low > 1) {
+                    long middle = low + (high - low) / 2;
+                    if (timeZone.getOffset(middle) == timeZone.getOffset(low)) {
+                        low = middle;
+                    } else {
+                        high = middle;
+                    }
+                }
+                transitions[count++] = high;
+            }
+        }
+        long[] result = new long[count];
+        System.arraycopy(transitions, 0, result, 0, count);
+        return result;
+    }
+
+    /* Counts the offset lookups of another time zone. */
+    private static final class CountingTimeZone extends TimeZone {
+        private final TimeZone mTimeZone;
+        private int mLookups;
+
+        private CountingTimeZone(TimeZone timeZone) {
+            mTimeZone = timeZone;
+            setID(timeZone.getID());
+        }
+
+        @Override
+        public int getOffset(long date) {
+            mLookups++;
+            return mTimeZone.getOffset(date);
+        }
+
+        @Override
+        public int getOffset(int era, int year, int month, int day, int dayOfWeek,
+                int milliseconds) {
+            mLookups++;
+            return mTimeZone.getOffset(era, year, month, day, dayOfWeek, milliseconds);
+        }
+
+        @Override
+        public void setRawOffset(int offsetMillis) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int getRawOffset() {
+            return mTimeZone.getRawOffset();
+        }
+
+        @Override
+        public boolean useDaylightTime() {
+            return mTimeZone.useDaylightTime();
+        }
+
+        @Override
+        public boolean inDaylightTime(Date date) {
+            return mTimeZone.inDaylightTime(date);
+        }
+    }
+}
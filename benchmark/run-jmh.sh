@@ -0,0 +1,52 @@
+#!/bin/sh
+#
+# Runs the benchmarks without Gradle, with the same settings as the jmh task in build.gradle, and
+# writes the results to results/results.json. The jmh plugin only works with the Gradle version
+# of the wrapper; use this script where that version is not available.
+#
+# Needs a JDK and curl. The JMH jars are downloaded from Maven Central into build/jmh-manual/.
+
+set -e
+
+cd "$(dirname "$0")"
+
+JMH_VERSION=1.21
+MAVEN_CENTRAL=https://repo.maven.apache.org/maven2
+WORK_DIR=build/jmh-manual
+LIB_DIR=$WORK_DIR/lib
+MAIN_SRC=../Wearable/src/main/java/com/deviantdev/wearable/watchface
+
+mkdir -p "$LIB_DIR"
+for artifact in \
+        org/openjdk/jmh/jmh-core/$JMH_VERSION/jmh-core-$JMH_VERSION.jar \
+        org/openjdk/jmh/jmh-generator-annprocess/$JMH_VERSION/jmh-generator-annprocess-$JMH_VERSION.jar \
+        net/sf/jopt-simple/jopt-simple/4.6/jopt-simple-4.6.jar \
+        org/apache/commons/commons-math3/3.2/commons-math3-3.2.jar; do
+    jar="$LIB_DIR/$(basename "$artifact")"
+    if [ ! -f "$jar" ]; then
+        curl -sSfL -o "$jar" "$MAVEN_CENTRAL/$artifact"
+    fi
+done
+LIBS="$LIB_DIR/jmh-core-$JMH_VERSION.jar:$LIB_DIR/jopt-simple-4.6.jar"
+LIBS="$LIBS:$LIB_DIR/commons-math3-3.2.jar"
+
+rm -rf "$WORK_DIR/main" "$WORK_DIR/jmh"
+mkdir -p "$WORK_DIR/main" "$WORK_DIR/jmh"
+
+# The same sources as the main source set in build.gradle.
+javac -nowarn -d "$WORK_DIR/main" \
+        "$MAIN_SRC/complication/ComplicationBounds.java" \
+        "$MAIN_SRC/provider/IncrementingNumberText.java" \
+        "$MAIN_SRC/render/DialGeometry.java" \
+        "$MAIN_SRC/render/HandAngles.java" \
+        "$MAIN_SRC/time/WallClock.java"
+
+javac -nowarn -d "$WORK_DIR/jmh" \
+        -cp "$WORK_DIR/main:$LIBS" \
+        -processorpath "$LIB_DIR/jmh-generator-annprocess-$JMH_VERSION.jar:$LIBS" \
+        $(find src/jmh/java -name '*.java')
+cp ../Wearable/src/main/res/xml/complication_layout.xml "$WORK_DIR/jmh/"
+
+mkdir -p results
+java -cp "$WORK_DIR/jmh:$WORK_DIR/main:$LIBS" org.openjdk.jmh.Main \
+        -f 1 -wi 5 -w 1s -i 10 -r 1s -rf json -rff results/results.json "$@"
@@ -0,0 +1,112 @@
+package com.deviantdev.wearable.watchface.benchmark;
+
+import com.deviantdev.wearable.watchface.complication.ComplicationBounds;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+/**
+ * Bounds of the complication slots of {@code res/xml/complication_layout.xml}, computed in
+ * {@code onSurfaceChanged} for every new screen configuration.
+ *
+ * The slots are read from the app's layout file, which is on the benchmark classpath, with the
+ * rules of {@code ComplicationLayout}, so the benchmark follows changes to the layout.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ComplicationBoundsBenchmark {
+
+    private static final String LAYOUT = "/complication_layout.xml";
+
+    @Param({"320", "454"})
+    public int size;
+
+    @Param({"true", "false"})
+    public boolean round;
+
+    @Param({"0", "30"})
+    public int chinHeight;
+
+    private int[] mShapes;
+    private float[] mCenterX;
+    private float[] mCenterY;
+    private float[] mSize;
+    private float[] mAspectRatio;
+
+    private int[] mLeft;
+    private int[] mTop;
+    private int[] mRight;
+    private int[] mBottom;
+
+    @Setup
+    public void setUp() throws Exception {
+        InputStream input = ComplicationBoundsBenchmark.class.getResourceAsStream(LAYOUT);
+        if (input == null) {
+            throw new IllegalStateException(LAYOUT + " is not on the classpath.");
+        }
+        NodeList slots;
+        try {
+            slots = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(input)
+                    .getDocumentElement().getElementsByTagName("slot");
+        } finally {
+            input.close();
+        }
+
+        int count = slots.getLength();
+        mShapes = new int[count];
+        mCenterX = new float[count];
+        mCenterY = new float[count];
+        mSize = new float[count];
+        mAspectRatio = new float[count];
+        for (int index = 0; index < count; index++) {
+            readSlot((Element) slots.item(index), index);
+        }
+
+        mLeft = new int[count];
+        mTop = new int[count];
+        mRight = new int[count];
+        mBottom = new int[count];
+    }
+
+    private void readSlot(Element slot, int index) {
+        mAspectRatio[index] = 1f;
+        String shape = slot.getAttribute("shape");
+        if ("fill".equals(shape)) {
+            mShapes[index] = ComplicationBounds.SHAPE_FILL;
+            return;
+        } else if ("circle".equals(shape)) {
+            mShapes[index] = ComplicationBounds.SHAPE_CIRCLE;
+        } else if ("rectangle".equals(shape)) {
+            mShapes[index] = ComplicationBounds.SHAPE_RECTANGLE;
+            if (slot.hasAttribute("aspectRatio")) {
+                mAspectRatio[index] = Float.parseFloat(slot.getAttribute("aspectRatio"));
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown slot shape \"" + shape + "\"");
+        }
+        mCenterX[index] = Float.parseFloat(slot.getAttribute("centerX"));
+        mCenterY[index] = Float.parseFloat(slot.getAttribute("centerY"));
+        mSize[index] = Float.parseFloat(slot.getAttribute("size"));
+    }
+
+    @Benchmark
+    public int[] bounds() {
+        ComplicationBounds.compute(mShapes, mCenterX, mCenterY, mSize, mAspectRatio, size, size,
+                round, chinHeight, mLeft, mTop, mRight, mBottom);
+        return mBottom;
+    }
+}
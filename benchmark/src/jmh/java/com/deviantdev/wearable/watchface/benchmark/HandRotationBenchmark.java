@@ -0,0 +1,48 @@
+package com.deviantdev.wearable.watchface.benchmark;
+
+import com.deviantdev.wearable.watchface.render.HandAngles;
+import com.deviantdev.wearable.watchface.time.WallClock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-frame time and hand math of {@code drawWatchFace}: decomposing the frame time and
+ * computing the rotation of all three hands.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HandRotationBenchmark {
+
+    private static final long FRAME_MILLIS = 16;
+
+    private WallClock mWallClock;
+    private long mTimeInMillis;
+
+    @Setup
+    public void setUp() {
+        mWallClock = new WallClock(TimeZone.getTimeZone("Europe/Berlin"));
+        mTimeInMillis = 1490486400000L;
+    }
+
+    @Benchmark
+    public void handRotations(Blackhole blackhole) {
+        mTimeInMillis += FRAME_MILLIS;
+        mWallClock.setTimeInMillis(mTimeInMillis);
+        blackhole.consume(HandAngles.getSecondRotation(mWallClock.getSecond(),
+                mWallClock.getMillisecond()));
+        blackhole.consume(HandAngles.getMinuteRotation(mWallClock.getMinute()));
+        blackhole.consume(HandAngles.getHourRotation(mWallClock.getHour(),
+                mWallClock.getMinute()));
+    }
+}
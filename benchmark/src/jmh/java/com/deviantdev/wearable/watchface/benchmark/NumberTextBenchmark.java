@@ -0,0 +1,41 @@
+package com.deviantdev.wearable.watchface.benchmark;
+
+import com.deviantdev.wearable.watchface.provider.IncrementingNumberText;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting the texts of the incrementing number complication, done whenever a number is shown
+ * for the first time after an activation or a locale change.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class NumberTextBenchmark {
+
+    /* Same as ComplicationToggleReceiver.MAX_NUMBER. */
+    private static final int MAX_NUMBER = 20;
+
+    private final Locale mLocale = Locale.US;
+    private int mNumber;
+
+    @Benchmark
+    public String shortText() {
+        mNumber = (mNumber + 1) % MAX_NUMBER;
+        return IncrementingNumberText.getShortText(mNumber, mLocale);
+    }
+
+    @Benchmark
+    public String longText() {
+        mNumber = (mNumber + 1) % MAX_NUMBER;
+        return IncrementingNumberText.getLongText(mNumber, mLocale);
+    }
+}
@@ -0,0 +1,37 @@
+package com.deviantdev.wearable.watchface.benchmark;
+
+import com.deviantdev.wearable.watchface.render.DialGeometry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Positions of the twelve tick marks, computed on every frame drawn over a background photo and
+ * whenever the dial layer is rebuilt.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TickGeometryBenchmark {
+
+    private static final float TICK_LENGTH = 10f;
+
+    @Param({"320", "454"})
+    public int size;
+
+    private final float[] mTickLines = new float[DialGeometry.TICK_LINES_SIZE];
+
+    @Benchmark
+    public float[] tickLines() {
+        float center = size / 2f;
+        DialGeometry.getTickLines(center, center, center - TICK_LENGTH, center, mTickLines);
+        return mTickLines;
+    }
+}
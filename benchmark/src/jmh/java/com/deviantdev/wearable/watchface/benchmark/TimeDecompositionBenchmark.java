@@ -0,0 +1,65 @@
+package com.deviantdev.wearable.watchface.benchmark;
+
+import com.deviantdev.wearable.watchface.time.WallClock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turning the frame time into hour, minute, second and millisecond, with {@link WallClock} as
+ * the engine does and with {@link Calendar} as before.
+ *
+ * Every call advances the time by one interactive frame, so the cost of leaving the cached zone
+ * offset interval is included where a transition is crossed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TimeDecompositionBenchmark {
+
+    private static final long FRAME_MILLIS = 16;
+
+    /* 2017-03-26 00:00 UTC, one hour before the European DST transition. */
+    private static final long START_MILLIS = 1490486400000L;
+
+    @Param({"UTC", "Europe/Berlin"})
+    public String timeZone;
+
+    private WallClock mWallClock;
+    private Calendar mCalendar;
+    private long mTimeInMillis;
+
+    @Setup
+    public void setUp() {
+        TimeZone zone = TimeZone.getTimeZone(timeZone);
+        mWallClock = new WallClock(zone);
+        mCalendar = Calendar.getInstance(zone);
+        mTimeInMillis = START_MILLIS;
+    }
+
+    @Benchmark
+    public int wallClock() {
+        mTimeInMillis += FRAME_MILLIS;
+        mWallClock.setTimeInMillis(mTimeInMillis);
+        return mWallClock.getHour() + mWallClock.getMinute() + mWallClock.getSecond()
+                + mWallClock.getMillisecond();
+    }
+
+    @Benchmark
+    public int calendar() {
+        mTimeInMillis += FRAME_MILLIS;
+        mCalendar.setTimeInMillis(mTimeInMillis);
+        return mCalendar.get(Calendar.HOUR) + mCalendar.get(Calendar.MINUTE)
+                + mCalendar.get(Calendar.SECOND) + mCalendar.get(Calendar.MILLISECOND);
+    }
+}